@@ -0,0 +1,420 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a compiled Bounding Volume Hierarchy (BVH) over a collection of geometries.<br/>
+ * Unlike the object tree of {@link CBR}, the hierarchy is flattened into primitive arrays of
+ * node boxes and links, which are walked with an explicit stack visiting the near child first
+ * and skipping every node that starts beyond the closest intersection found so far.<br/>
+ * Nested {@link Geometries} (including {@link CBR}s) are flattened into their leaf geometries.
+ * Unbounded geometries (such as planes) are kept in a separate short list tested by every ray,
+ * so that their infinite boxes don't spoil the boxes of the tree.
+ * The hierarchy must be (re)built with {@link #build()} after adding geometries - until then
+ * the collection is searched linearly.<br/>
+ * The nodes are split at the median by default, or optionally by the binned Surface Area
+ * Heuristic (SAH), which costs more to build but needs far fewer box and primitive tests per ray.
+ * The boxes of the nodes may be kept in single precision for previews, halving the memory
+ * they take and the bandwidth of walking them.<br/>
+ * The binary hierarchy may be collapsed into a 4-wide one, testing a ray against four child boxes
+ * at once for about half the traversal steps on deep hierarchies of many small geometries.<br/>
+ * A built hierarchy can be written to a binary snapshot and restored from it without rebuilding.
+ */
+public class BVH extends Geometries {
+    /**
+     * Methods of splitting the nodes of the hierarchy
+     */
+    public enum SplitMethod {
+        /** Split at the median of the centroids along the longest axis */
+        MEDIAN,
+        /** Split at the bin boundary with the lowest surface area heuristic cost */
+        SAH
+    }
+
+    /**
+     * Precisions of the compiled geometry data
+     */
+    public enum Precision {
+        /** Keep the data in double precision */
+        DOUBLE,
+        /** Keep the data in single precision, rounded conservatively */
+        FLOAT
+    }
+
+    /**
+     * Layouts of the compiled hierarchy
+     */
+    public enum Layout {
+        /** Two children per node */
+        BINARY,
+        /**
+         * Up to four children per node, with their boxes stored together and tested at once by the
+         * Vector API - the run needs the {@code jdk.incubator.vector} module
+         */
+        WIDE
+    }
+
+    /** The method of splitting the nodes */
+    private SplitMethod splitMethod = SplitMethod.MEDIAN;
+    /** The precision of the boxes of the nodes */
+    private Precision precision = Precision.DOUBLE;
+    /** The layout of the hierarchy */
+    private Layout layout = Layout.BINARY;
+    /** The leaf geometries of the hierarchy, indexed by the tree */
+    private Intersectable[] primitives;
+    /** The unbounded geometries, kept outside the tree */
+    private Intersectable[] unbounded;
+    /** The flattened hierarchy, {@code null} until it is built */
+    private Hierarchy tree;
+    /** Intersects the primitives stored in the leaves of the tree */
+    private final BVHTree.Primitives leaves = new BVHTree.Primitives() {
+        @Override
+        public boolean findClosestHit(int index, Ray ray, Hit hit) {
+            return primitives[index].findClosestHit(ray, hit);
+        }
+
+        @Override
+        public Double3 findTransmittance(int index, Ray ray, double maxDistance, Double3 ktr) {
+            return primitives[index].findTransmittanceHelper(ray, maxDistance, ktr);
+        }
+
+        @Override
+        public List<GeoPoint> findGeoIntersections(int index, Ray ray, double maxDistance) {
+            return primitives[index].findGeoIntersections(ray, maxDistance);
+        }
+    };
+
+    /**
+     * Constructs an empty BVH.
+     */
+    public BVH() {
+    }
+
+    /**
+     * Constructs a BVH over the given geometries. The hierarchy is not built yet.
+     *
+     * @param geometries the geometries to include in the hierarchy
+     */
+    public BVH(Intersectable... geometries) {
+        super(geometries);
+    }
+
+    @Override
+    public void add(Intersectable... geometries) {
+        super.add(geometries);
+        // the hierarchy no longer covers all the geometries
+        tree = null;
+        primitives = null;
+        unbounded = null;
+    }
+
+    /**
+     * Sets the method of splitting the nodes used by the next {@link #build()}.
+     *
+     * @param splitMethod the split method
+     * @return the BVH itself
+     */
+    public BVH setSplitMethod(SplitMethod splitMethod) {
+        this.splitMethod = splitMethod;
+        return this;
+    }
+
+    /**
+     * Sets the precision of the boxes of the nodes used by the next {@link #build()}.
+     * Single precision boxes are rounded outwards, so they never miss an intersection,
+     * but they may let a ray test a few more primitives.
+     *
+     * @param precision the precision
+     * @return the BVH itself
+     */
+    public BVH setPrecision(Precision precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    /**
+     * Sets the layout of the hierarchy used by the next {@link #build()}.
+     * The wide layout is collapsed from the binary hierarchy built by the split method, and a ray
+     * takes about two thirds of the time to trace through it.
+     *
+     * @param layout the layout
+     * @return the BVH itself
+     */
+    public BVH setLayout(Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * Gets the method of splitting the nodes.
+     *
+     * @return the split method
+     */
+    public SplitMethod getSplitMethod() {
+        return splitMethod;
+    }
+
+    /**
+     * Gets the precision of the boxes of the nodes.
+     *
+     * @return the precision
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Gets the layout of the hierarchy.
+     *
+     * @return the layout
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Builds the flattened hierarchy over all the geometries of the collection.
+     * Large hierarchies are built in parallel on the common fork/join pool.
+     *
+     * @return the BVH itself
+     */
+    public BVH build() {
+        List<Intersectable> leafList = new ArrayList<>();
+        collectLeaves(geometries, leafList);
+
+        List<Intersectable> boundedList = new ArrayList<>();
+        List<Intersectable> unboundedList = new ArrayList<>();
+        for (Intersectable geo : leafList)
+            (geo.isBounded() ? boundedList : unboundedList).add(geo);
+
+        Intersectable[] leafArray = boundedList.toArray(new Intersectable[0]);
+        double[] bounds = new double[6 * leafArray.length];
+        // every geometry's bounds are fetched exactly once, into its own slots of the array
+        IntStream.range(0, leafArray.length).parallel()
+                .forEach(i -> setBounds(bounds, i, leafArray[i].minMaxPoints()));
+
+        primitives = leafArray;
+        unbounded = unboundedList.toArray(new Intersectable[0]);
+        BVHTree binary = BVHBuilder.build(bounds, splitMethod);
+        if (precision == Precision.FLOAT) binary = binary.toFloat();
+        tree = layout == Layout.WIDE ? WideBVHTree.collapse(binary) : binary;
+        return this;
+    }
+
+    /**
+     * Creates a copy of the collection, with the same geometries and settings. A built hierarchy
+     * is shared with the copy, as a tree is never changed once built, and the arrays of its
+     * geometries are copied - so adding geometries to either collection does not affect the other.
+     *
+     * @return the copy
+     */
+    public BVH copy() {
+        BVH copy = new BVH(geometries.toArray(new Intersectable[0]));
+        copy.splitMethod = splitMethod;
+        copy.precision = precision;
+        copy.layout = layout;
+        if (tree != null) {
+            copy.primitives = primitives.clone();
+            copy.unbounded = unbounded.clone();
+            copy.tree = tree;
+        }
+        return copy;
+    }
+
+    /**
+     * Checks whether the hierarchy is built and up to date.
+     *
+     * @return true if the hierarchy is built
+     */
+    public boolean isBuilt() {
+        return tree != null;
+    }
+
+    /**
+     * Gets the amount of nodes in the built hierarchy.
+     *
+     * @return the amount of nodes, 0 if the hierarchy is not built
+     */
+    public int getNodeCount() {
+        return tree == null ? 0 : tree.size();
+    }
+
+    /**
+     * Gets the depth of the built hierarchy.
+     *
+     * @return the depth of the deepest leaf, 0 if the hierarchy is not built
+     */
+    public int getDepth() {
+        return tree == null ? 0 : tree.depth();
+    }
+
+    /**
+     * Gets the estimated cost of tracing a ray through the built hierarchy by the surface area
+     * heuristic - the expected amount of box tests and primitive intersections per ray hitting it.
+     * The unbounded geometries are outside the hierarchy and not included.
+     *
+     * @return the estimated cost, {@link Double#NaN} if the hierarchy is not built
+     */
+    public double getCost() {
+        return tree == null ? Double.NaN : tree.cost();
+    }
+
+    /**
+     * Gets the amount of unbounded geometries kept outside the built hierarchy.
+     *
+     * @return the amount of unbounded geometries, 0 if the hierarchy is not built
+     */
+    public int getUnboundedCount() {
+        return tree == null ? 0 : unbounded.length;
+    }
+
+    /**
+     * Gets the bounded leaf geometries of the built hierarchy, in the order the tree indexes them.
+     *
+     * @return the geometries, empty if the hierarchy is not built
+     */
+    public List<Intersectable> getPrimitives() {
+        return tree == null ? List.of() : List.of(primitives);
+    }
+
+    /**
+     * Gets the unbounded geometries kept outside the built hierarchy.
+     *
+     * @return the geometries, empty if the hierarchy is not built
+     */
+    public List<Intersectable> getUnbounded() {
+        return tree == null ? List.of() : List.of(unbounded);
+    }
+
+    /**
+     * Writes the settings and the flattened tree of the built hierarchy to a binary snapshot.
+     * The geometries themselves are not written - they are given back on reading, in the order of
+     * {@link #getPrimitives()} and {@link #getUnbounded()}.
+     *
+     * @param out the output
+     * @throws IOException           if the output fails
+     * @throws IllegalStateException if the hierarchy is not built
+     */
+    public void writeHierarchy(DataOutput out) throws IOException {
+        if (tree == null) throw new IllegalStateException("The hierarchy is not built");
+        out.writeByte(splitMethod.ordinal());
+        out.writeByte(precision.ordinal());
+        out.writeByte(layout.ordinal());
+        out.writeBoolean(tree instanceof WideBVHTree);
+        tree.write(out);
+    }
+
+    /**
+     * Restores a built hierarchy written by {@link #writeHierarchy(DataOutput)}, without rebuilding it.
+     *
+     * @param in         the buffer, positioned at the hierarchy and advanced past it
+     * @param primitives the bounded leaf geometries, in the order the tree indexes them
+     * @param unbounded  the unbounded geometries
+     * @return the built hierarchy
+     * @throws IllegalArgumentException if the tree does not match the amount of geometries
+     */
+    public static BVH readHierarchy(ByteBuffer in, Intersectable[] primitives, Intersectable[] unbounded) {
+        BVH bvh = new BVH(primitives);
+        bvh.add(unbounded);
+        bvh.splitMethod = SplitMethod.values()[in.get()];
+        bvh.precision = Precision.values()[in.get()];
+        bvh.layout = Layout.values()[in.get()];
+        Hierarchy tree = in.get() != 0 ? WideBVHTree.read(in) : BVHTree.read(in);
+        for (int index : tree.order())
+            if (index < 0 || index >= primitives.length)
+                throw new IllegalArgumentException("The hierarchy refers to a missing geometry " + index);
+        bvh.primitives = primitives.clone();
+        bvh.unbounded = unbounded.clone();
+        bvh.tree = tree;
+        return bvh;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double distance) {
+        if (tree == null) return super.findGeoIntersectionsHelper(ray, distance);
+
+        List<GeoPoint> result = tree.findGeoIntersections(ray, distance, leaves);
+        for (Intersectable geo : unbounded) {
+            List<GeoPoint> geoPoints = geo.findGeoIntersections(ray, distance);
+            if (geoPoints != null) {
+                if (result == null) result = new LinkedList<>();
+                result.addAll(geoPoints);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        if (tree == null) return super.findClosestHitHelper(ray, hit);
+
+        boolean found = false;
+        for (Intersectable geo : unbounded)
+            if (geo.findClosestHit(ray, hit))
+                found = true;
+        // the closest unbounded hit already limits the walk of the tree
+        return tree.findClosestHit(ray, hit, leaves) || found;
+    }
+
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        if (tree == null) return super.findTransmittanceHelper(ray, maxDistance, ktr);
+
+        for (Intersectable geo : unbounded) {
+            ktr = geo.findTransmittanceHelper(ray, maxDistance, ktr);
+            if (ktr.lowerThan(MIN_TRANSMITTANCE))
+                return Double3.ZERO;
+        }
+        return tree.findTransmittance(ray, maxDistance, ktr, leaves);
+    }
+
+    @Override
+    public List<Point> minMaxPoints() {
+        if (tree == null) return super.minMaxPoints();
+        if (unbounded.length > 0) return List.of(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
+        return List.of(tree.getMin(), tree.getMax());
+    }
+
+    /**
+     * Recursively collects the leaf geometries of nested collections.
+     *
+     * @param geometries the geometries to collect from
+     * @param leaves     the list to add the leaf geometries to
+     */
+    private static void collectLeaves(List<Intersectable> geometries, List<Intersectable> leaves) {
+        for (Intersectable geo : geometries) {
+            if (geo instanceof Geometries collection)
+                collectLeaves(collection.geometries, leaves);
+            else
+                leaves.add(geo);
+        }
+    }
+
+    /**
+     * Stores the bounding box of a geometry in the primitive bounds array.
+     *
+     * @param bounds the bounds array - 6 values per primitive
+     * @param index  the index of the primitive
+     * @param minMax the minimum and maximum points of the geometry
+     */
+    private static void setBounds(double[] bounds, int index, List<Point> minMax) {
+        Point min = minMax.get(0);
+        Point max = minMax.get(1);
+        bounds[6 * index] = min.getX();
+        bounds[6 * index + 1] = min.getY();
+        bounds[6 * index + 2] = min.getZ();
+        bounds[6 * index + 3] = max.getX();
+        bounds[6 * index + 4] = max.getY();
+        bounds[6 * index + 5] = max.getZ();
+    }
+}
@@ -0,0 +1,452 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a bounding volume hierarchy over a set of primitives given only by their bounding boxes,
+ * and flattens it into the primitive node arrays of a {@link BVHTree}.<br/>
+ * The hierarchy is first built as a small temporary tree of nodes which is then laid out
+ * depth-first, so the left child of every inner node directly follows its parent.<br/>
+ * Nodes are split either at the median of the longest axis, or by the binned Surface Area
+ * Heuristic (SAH) which chooses the axis and position with the lowest estimated traversal cost.<br/>
+ * The bounds and centroids of the primitives are computed once up front. Large subtrees are built
+ * as fork/join tasks - every task owns a disjoint range of the order array, so no locking is needed.
+ */
+final class BVHBuilder {
+    /** Maximum amount of primitives in a leaf */
+    static final int MAX_LEAF_SIZE = 4;
+    /** Amount of bins per axis for the surface area heuristic */
+    private static final int BIN_COUNT = 16;
+    /** Estimated cost of visiting a node (one box test) */
+    static final double TRAVERSAL_COST = 1;
+    /** Estimated cost of intersecting a primitive */
+    static final double INTERSECTION_COST = 1;
+
+    /** Minimal amount of primitives in a range for building its children in parallel */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /** Split position meaning the range should become a leaf */
+    private static final int MAKE_LEAF = -1;
+    /** Split position meaning the range should be split at the median */
+    private static final int SPLIT_AT_MEDIAN = 0;
+
+    /** The method of splitting the nodes */
+    private final BVH.SplitMethod splitMethod;
+
+    /** Bounding boxes of the primitives - 6 values per primitive: min x,y,z and max x,y,z */
+    private final double[] primitiveBounds;
+    /** Centers of the primitives' bounding boxes - 3 values per primitive */
+    private final double[] centroids;
+    /** Primitive indices, reordered during the build so that every node owns a contiguous range */
+    private final int[] order;
+
+    /**
+     * Temporary node of the hierarchy under construction
+     */
+    private static final class Node {
+        /** Bounding box of the node - min x,y,z and max x,y,z */
+        final double[] box = new double[6];
+        /** First primitive (in the order array) of a leaf */
+        int start;
+        /** Amount of primitives of a leaf, 0 for an inner node */
+        int count;
+        /** Split axis of an inner node */
+        int axis;
+        /** Children of an inner node */
+        Node left, right;
+        /** Amount of nodes in the subtree of the node */
+        int size = 1;
+    }
+
+    /**
+     * Fork/join task building the node of a range of primitives
+     */
+    private final class BuildTask extends RecursiveTask<Node> {
+        /** Serialization version - the tasks are never serialized */
+        private static final long serialVersionUID = 1L;
+        /** First primitive of the range */
+        private final int start;
+        /** End (exclusive) of the range */
+        private final int end;
+
+        /**
+         * Constructs a task for a range of primitives.
+         *
+         * @param start first primitive of the range (in the order array)
+         * @param end   end (exclusive) of the range
+         */
+        BuildTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Node compute() {
+            return buildNode(start, end);
+        }
+    }
+
+    /**
+     * Initializes the builder for the given primitive bounds.
+     *
+     * @param primitiveBounds bounding boxes of the primitives - 6 values per primitive
+     * @param splitMethod     the method of splitting the nodes
+     */
+    private BVHBuilder(double[] primitiveBounds, BVH.SplitMethod splitMethod) {
+        this.primitiveBounds = primitiveBounds;
+        this.splitMethod = splitMethod;
+        int count = primitiveBounds.length / 6;
+        centroids = new double[3 * count];
+        order = new int[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+            for (int axis = 0; axis < 3; ++axis) {
+                double center = (primitiveBounds[6 * i + axis] + primitiveBounds[6 * i + 3 + axis]) / 2;
+                // an unbounded primitive has no meaningful center, it is kept at the origin
+                centroids[3 * i + axis] = Double.isFinite(center) ? center : 0;
+            }
+        }
+    }
+
+    /**
+     * Builds the hierarchy over the primitives and flattens it into arrays.
+     *
+     * @param primitiveBounds bounding boxes of the primitives - 6 values per primitive:
+     *                        min x,y,z and max x,y,z
+     * @param splitMethod     the method of splitting the nodes
+     * @return the flattened hierarchy
+     */
+    static BVHTree build(double[] primitiveBounds, BVH.SplitMethod splitMethod) {
+        BVHBuilder builder = new BVHBuilder(primitiveBounds, splitMethod);
+        int count = builder.order.length;
+        if (count == 0)
+            return new BVHTree(new double[0], new int[0], builder.order, 0, 0);
+
+        Node root = count < PARALLEL_THRESHOLD
+                ? builder.buildNode(0, count)
+                : ForkJoinPool.commonPool().invoke(builder.new BuildTask(0, count));
+        double[] bounds = new double[6 * root.size];
+        int[] links = new int[2 * root.size];
+        int depth = builder.flatten(root, 0, bounds, links, 1);
+        return new BVHTree(bounds, links, builder.order, depth, cost(root, halfArea(root.box)));
+    }
+
+    /**
+     * Recursively builds the node for a range of primitives. The range is split
+     * by the surface area heuristic if it is chosen and applicable, and otherwise
+     * at the median of the centroids along the longest axis of the centroids' bounds.
+     * The left child of a large range is forked as a separate task.
+     *
+     * @param start first primitive of the range (in the order array)
+     * @param end   end (exclusive) of the range
+     * @return the node of the range
+     */
+    private Node buildNode(int start, int end) {
+        Node node = new Node();
+        setBox(node.box, start, end);
+
+        int count = end - start;
+        int middle;
+        if (splitMethod == BVH.SplitMethod.SAH && count > 1)
+            middle = splitSah(node, start, end);
+        else
+            middle = count > MAX_LEAF_SIZE ? SPLIT_AT_MEDIAN : MAKE_LEAF;
+
+        if (middle == MAKE_LEAF) {
+            node.start = start;
+            node.count = count;
+            return node;
+        }
+
+        if (middle == SPLIT_AT_MEDIAN) {
+            node.axis = longestCentroidAxis(start, end);
+            middle = (start + end) / 2;
+            select(start, end, middle, node.axis);
+        }
+        if (count < PARALLEL_THRESHOLD) {
+            node.left = buildNode(start, middle);
+            node.right = buildNode(middle, end);
+        } else {
+            BuildTask left = new BuildTask(start, middle);
+            left.fork();
+            node.right = buildNode(middle, end);
+            node.left = left.join();
+        }
+        node.size += node.left.size + node.right.size;
+        return node;
+    }
+
+    /**
+     * Splits a range of primitives by the binned surface area heuristic: the centroids are
+     * binned along every axis, and the bin boundary with the lowest estimated cost
+     * (the children's surface areas weighted by their primitive counts) is chosen.
+     *
+     * @param node  the node of the range, its box must be set
+     * @param start first primitive of the range
+     * @param end   end (exclusive) of the range
+     * @return the position in the order array where the range was split (the node's axis is set),
+     *         {@link #MAKE_LEAF} if a leaf is cheaper, or {@link #SPLIT_AT_MEDIAN} if the heuristic
+     *         is not applicable and the range should be split at the median
+     */
+    private int splitSah(Node node, int start, int end) {
+        int count = end - start;
+        double area = halfArea(node.box);
+        // the heuristic is meaningless for unbounded boxes
+        if (!Double.isFinite(area))
+            return count > MAX_LEAF_SIZE ? SPLIT_AT_MEDIAN : MAKE_LEAF;
+
+        double[] centroidMin = new double[3];
+        double[] centroidMax = new double[3];
+        centroidBounds(start, end, centroidMin, centroidMax);
+
+        int[] binCounts = new int[BIN_COUNT];
+        double[] binBoxes = new double[6 * BIN_COUNT];
+        double[] rightAreas = new double[BIN_COUNT];
+        double[] box = new double[6];
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = 0;
+        for (int axis = 0; axis < 3; ++axis) {
+            double extent = centroidMax[axis] - centroidMin[axis];
+            if (extent <= 0) continue;
+
+            // put every primitive in the bin of its centroid
+            Arrays.fill(binCounts, 0);
+            for (int b = 0; b < BIN_COUNT; ++b)
+                emptyBox(binBoxes, 6 * b);
+            for (int i = start; i < end; ++i) {
+                int b = bin(order[i], axis, centroidMin[axis], extent);
+                ++binCounts[b];
+                includeBox(binBoxes, 6 * b, primitiveBounds, 6 * order[i]);
+            }
+
+            // sweep from the right to find the areas of all the right sides
+            emptyBox(box, 0);
+            for (int b = BIN_COUNT - 1; b > 0; --b) {
+                includeBox(box, 0, binBoxes, 6 * b);
+                rightAreas[b] = halfArea(box);
+            }
+
+            // sweep from the left and evaluate every split between bin b-1 and bin b
+            emptyBox(box, 0);
+            int leftCount = 0;
+            for (int b = 1; b < BIN_COUNT; ++b) {
+                includeBox(box, 0, binBoxes, 6 * (b - 1));
+                leftCount += binCounts[b - 1];
+                int rightCount = count - leftCount;
+                if (leftCount == 0 || rightCount == 0) continue;
+
+                double cost = TRAVERSAL_COST + INTERSECTION_COST
+                        * (halfArea(box) * leftCount + rightAreas[b] * rightCount) / area;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = b;
+                }
+            }
+        }
+
+        // all the centroids coincide - the primitives can't be separated by the heuristic
+        if (bestAxis < 0)
+            return count > MAX_LEAF_SIZE ? SPLIT_AT_MEDIAN : MAKE_LEAF;
+        if (count <= MAX_LEAF_SIZE && count * INTERSECTION_COST <= bestCost)
+            return MAKE_LEAF;
+
+        // partition the range by the chosen bin boundary
+        double extent = centroidMax[bestAxis] - centroidMin[bestAxis];
+        int middle = start;
+        for (int i = start; i < end; ++i) {
+            if (bin(order[i], bestAxis, centroidMin[bestAxis], extent) < bestBin) {
+                int tmp = order[i];
+                order[i] = order[middle];
+                order[middle++] = tmp;
+            }
+        }
+        node.axis = bestAxis;
+        return middle;
+    }
+
+    /**
+     * Finds the bin of a primitive's centroid along an axis.
+     *
+     * @param primitive the index of the primitive
+     * @param axis      the axis
+     * @param min       the minimum centroid coordinate along the axis
+     * @param extent    the extent of the centroids along the axis
+     * @return the bin index
+     */
+    private int bin(int primitive, int axis, double min, double extent) {
+        int b = (int) (BIN_COUNT * (centroids[3 * primitive + axis] - min) / extent);
+        return Math.min(b, BIN_COUNT - 1);
+    }
+
+    /**
+     * Calculates the bounds of the centroids of a range of primitives.
+     *
+     * @param start first primitive of the range
+     * @param end   end (exclusive) of the range
+     * @param min   the array to fill with the minimum coordinates
+     * @param max   the array to fill with the maximum coordinates
+     */
+    private void centroidBounds(int start, int end, double[] min, double[] max) {
+        for (int axis = 0; axis < 3; ++axis) {
+            min[axis] = Double.POSITIVE_INFINITY;
+            max[axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; ++i) {
+            for (int axis = 0; axis < 3; ++axis) {
+                double c = centroids[3 * order[i] + axis];
+                min[axis] = Math.min(min[axis], c);
+                max[axis] = Math.max(max[axis], c);
+            }
+        }
+    }
+
+    /**
+     * Sets a box to be empty (inverted infinite bounds).
+     *
+     * @param boxes  the array of boxes
+     * @param offset the offset of the box in the array
+     */
+    private static void emptyBox(double[] boxes, int offset) {
+        for (int axis = 0; axis < 3; ++axis) {
+            boxes[offset + axis] = Double.POSITIVE_INFINITY;
+            boxes[offset + axis + 3] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Grows a box to include another box.
+     *
+     * @param boxes       the array of the box to grow
+     * @param offset      the offset of the box to grow
+     * @param other       the array of the box to include
+     * @param otherOffset the offset of the box to include
+     */
+    private static void includeBox(double[] boxes, int offset, double[] other, int otherOffset) {
+        for (int axis = 0; axis < 3; ++axis) {
+            boxes[offset + axis] = Math.min(boxes[offset + axis], other[otherOffset + axis]);
+            boxes[offset + axis + 3] = Math.max(boxes[offset + axis + 3], other[otherOffset + axis + 3]);
+        }
+    }
+
+    /**
+     * Calculates half of the surface area of a box - enough for comparing areas.
+     *
+     * @param box the box - min x,y,z and max x,y,z
+     * @return half of the surface area, 0 for an empty box
+     */
+    private static double halfArea(double[] box) {
+        double dx = box[3] - box[0];
+        double dy = box[4] - box[1];
+        double dz = box[5] - box[2];
+        if (dx < 0 || dy < 0 || dz < 0) return 0;
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    /**
+     * Estimates the cost of tracing a ray through a subtree, by the surface area heuristic:
+     * the probability of visiting a node is the ratio of its surface area to the root's.
+     *
+     * @param node     the root of the subtree
+     * @param rootArea the half surface area of the whole tree
+     * @return the estimated cost, {@link Double#POSITIVE_INFINITY} for an unbounded tree
+     */
+    private static double cost(Node node, double rootArea) {
+        if (!Double.isFinite(rootArea)) return Double.POSITIVE_INFINITY;
+        double probability = rootArea == 0 ? 1 : halfArea(node.box) / rootArea;
+        if (node.left == null)
+            return probability * node.count * INTERSECTION_COST;
+        return probability * TRAVERSAL_COST + cost(node.left, rootArea) + cost(node.right, rootArea);
+    }
+
+    /**
+     * Calculates the bounding box of a range of primitives.
+     *
+     * @param box   the box to fill - min x,y,z and max x,y,z
+     * @param start first primitive of the range
+     * @param end   end (exclusive) of the range
+     */
+    private void setBox(double[] box, int start, int end) {
+        emptyBox(box, 0);
+        for (int i = start; i < end; ++i)
+            includeBox(box, 0, primitiveBounds, 6 * order[i]);
+    }
+
+    /**
+     * Finds the axis along which the centroids of a range of primitives are spread the most.
+     *
+     * @param start first primitive of the range
+     * @param end   end (exclusive) of the range
+     * @return the axis index - 0 for x, 1 for y, 2 for z
+     */
+    private int longestCentroidAxis(int start, int end) {
+        double[] min = new double[3];
+        double[] max = new double[3];
+        centroidBounds(start, end, min, max);
+        int longest = 0;
+        for (int axis = 1; axis < 3; ++axis)
+            if (max[axis] - min[axis] > max[longest] - min[longest])
+                longest = axis;
+        return longest;
+    }
+
+    /**
+     * Partially sorts a range of primitives (quick select) so that the k-th primitive is in its
+     * sorted place by the centroid coordinate, all the smaller ones before it and the rest after it.
+     *
+     * @param start first primitive of the range
+     * @param end   end (exclusive) of the range
+     * @param k     the position to put in place
+     * @param axis  the axis of the centroid coordinate to sort by
+     */
+    private void select(int start, int end, int k, int axis) {
+        int lo = start;
+        int hi = end - 1;
+        while (lo < hi) {
+            double pivot = centroids[3 * order[(lo + hi) >>> 1] + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centroids[3 * order[i] + axis] < pivot) ++i;
+                while (centroids[3 * order[j] + axis] > pivot) --j;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    /**
+     * Lays out a subtree depth-first into the node arrays.
+     *
+     * @param node   the root of the subtree
+     * @param index  the index of the node in the arrays
+     * @param bounds the node bounds array to fill
+     * @param links  the node links array to fill
+     * @param depth  the depth of the node (the root is at depth 1)
+     * @return the depth of the deepest leaf of the subtree
+     */
+    private int flatten(Node node, int index, double[] bounds, int[] links, int depth) {
+        System.arraycopy(node.box, 0, bounds, 6 * index, 6);
+        if (node.left == null) {
+            links[2 * index] = node.start;
+            links[2 * index + 1] = node.count;
+            return depth;
+        }
+
+        int leftDepth = flatten(node.left, index + 1, bounds, links, depth + 1);
+        int rightIndex = index + 1 + node.left.size;
+        links[2 * index] = rightIndex;
+        links[2 * index + 1] = -1 - node.axis;
+        return Math.max(leftDepth, flatten(node.right, rightIndex, bounds, links, depth + 1));
+    }
+}
@@ -0,0 +1,637 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Intersectable.Hit;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Flattened bounding volume hierarchy kept in primitive arrays and walked with an explicit stack.<br/>
+ * The nodes are laid out depth-first: the left child of an inner node directly follows it,
+ * and the index of the right child is stored in the node's links.
+ * The tree only knows the indices of its primitives, the primitives themselves are
+ * intersected through a {@link Primitives} callback.<br/>
+ * The boxes are kept either in double precision, or in single precision (rounded outwards,
+ * so a box never shrinks) for half the memory bandwidth of the traversal.
+ */
+final class BVHTree implements Hierarchy {
+    /**
+     * Callback for intersecting the primitives stored in the leaves of the tree
+     */
+    interface Primitives {
+        /**
+         * Finds the closest intersection of the ray with a primitive.
+         *
+         * @param index the index of the primitive
+         * @param ray   the ray to intersect
+         * @param hit   the hit record to update
+         * @return true if a closer intersection was found and recorded
+         */
+        boolean findClosestHit(int index, Ray ray, Hit hit);
+
+        /**
+         * Accumulates the transmittance of a primitive along the ray.
+         *
+         * @param index       the index of the primitive
+         * @param ray         the ray to intersect
+         * @param maxDistance the maximum distance to consider intersections
+         * @param ktr         the transmittance accumulated so far
+         * @return the accumulated transmittance
+         */
+        Double3 findTransmittance(int index, Ray ray, double maxDistance, Double3 ktr);
+
+        /**
+         * Finds all the intersections of the ray with a primitive.
+         *
+         * @param index       the index of the primitive
+         * @param ray         the ray to intersect
+         * @param maxDistance the maximum distance to consider intersections
+         * @return the intersections, or {@code null} if there are none
+         */
+        List<GeoPoint> findGeoIntersections(int index, Ray ray, double maxDistance);
+    }
+
+    /** Node bounding boxes - 6 values per node: min x,y,z and max x,y,z, {@code null} in single precision */
+    private final double[] bounds;
+    /** Node bounding boxes in single precision, {@code null} in double precision */
+    private final float[] floatBounds;
+    /**
+     * Node links - 2 values per node. For a leaf: the first primitive in the order array and
+     * the (positive) amount of primitives. For an inner node: the index of the right child and
+     * the split axis encoded as {@code -1 - axis}
+     */
+    private final int[] links;
+    /** Primitive indices in the order of the leaves */
+    private final int[] order;
+    /** Depth of the tree - bounds the size of the traversal stack */
+    private final int depth;
+    /** Estimated cost of tracing a ray through the tree by the surface area heuristic */
+    private final double cost;
+
+    /**
+     * Constructs a tree from its flattened arrays - used by the {@link BVHBuilder}.
+     *
+     * @param bounds node bounding boxes
+     * @param links  node links
+     * @param order  primitive indices in the order of the leaves
+     * @param depth  depth of the tree
+     * @param cost   estimated cost of tracing a ray through the tree
+     */
+    BVHTree(double[] bounds, int[] links, int[] order, int depth, double cost) {
+        this(bounds, null, links, order, depth, cost);
+    }
+
+    /**
+     * Constructs a tree from its flattened arrays, with the boxes in either precision.
+     *
+     * @param bounds      node bounding boxes in double precision, or {@code null}
+     * @param floatBounds node bounding boxes in single precision, or {@code null}
+     * @param links       node links
+     * @param order       primitive indices in the order of the leaves
+     * @param depth       depth of the tree
+     * @param cost        estimated cost of tracing a ray through the tree
+     */
+    private BVHTree(double[] bounds, float[] floatBounds, int[] links, int[] order, int depth, double cost) {
+        this.bounds = bounds;
+        this.floatBounds = floatBounds;
+        this.links = links;
+        this.order = order;
+        this.depth = depth;
+        this.cost = cost;
+    }
+
+    /**
+     * Converts the tree to single precision boxes. The minimums are rounded down and the
+     * maximums up, so every box still encloses its primitives.
+     *
+     * @return the tree in single precision (the tree itself if it already is)
+     */
+    BVHTree toFloat() {
+        if (bounds == null) return this;
+        float[] rounded = new float[bounds.length];
+        for (int i = 0; i < bounds.length; ++i) {
+            float f = (float) bounds[i];
+            if (i % 6 < 3) {
+                if (f > bounds[i]) f = Math.nextDown(f);
+            } else if (f < bounds[i]) f = Math.nextUp(f);
+            rounded[i] = f;
+        }
+        return new BVHTree(null, rounded, links, order, depth, cost);
+    }
+
+    /**
+     * Checks whether the boxes of the tree are kept in single precision.
+     *
+     * @return true for single precision, false for double precision
+     */
+    boolean isFloat() {
+        return bounds == null;
+    }
+
+    /**
+     * Gets the amount of nodes in the tree.
+     *
+     * @return the amount of nodes
+     */
+    @Override
+    public int size() {
+        return links.length / 2;
+    }
+
+    /**
+     * Gets the depth of the tree.
+     *
+     * @return the depth of the deepest leaf, 0 for an empty tree
+     */
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Gets the estimated cost of tracing a ray through the tree.
+     *
+     * @return the expected amount of box tests and primitive intersections for a ray hitting the root
+     */
+    @Override
+    public double cost() {
+        return cost;
+    }
+
+    /**
+     * Gets the minimum point of the tree's bounding box.
+     *
+     * @return the minimum point of the root's box
+     */
+    @Override
+    public Point getMin() {
+        return links.length == 0 ? Point.POSITIVE_INFINITE : new Point(bound(0), bound(1), bound(2));
+    }
+
+    /**
+     * Gets the maximum point of the tree's bounding box.
+     *
+     * @return the maximum point of the root's box
+     */
+    @Override
+    public Point getMax() {
+        return links.length == 0 ? Point.NEGATIVE_INFINITE : new Point(bound(3), bound(4), bound(5));
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives. Children are visited
+     * near first, and nodes starting beyond the closest intersection found so far are skipped.
+     *
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    @Override
+    public boolean findClosestHit(Ray ray, Hit hit, Primitives primitives) {
+        if (links.length == 0) return false;
+        return bounds != null
+                ? findClosestHit(bounds, ray, hit, primitives)
+                : findClosestHit(floatBounds, ray, hit, primitives);
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives, over double precision boxes.
+     *
+     * @param box        the node bounding boxes
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    private boolean findClosestHit(double[] box, Ray ray, Hit hit, Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+
+        boolean found = false;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(depth);
+        try {
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int node = stack[--top];
+                if (boxEntry(box, node, ray, ox, oy, oz, hit.t) == Double.POSITIVE_INFINITY)
+                    continue;
+
+                int first = links[2 * node];
+                int count = links[2 * node + 1];
+                if (count > 0) {
+                    for (int i = first; i < first + count; ++i)
+                        if (primitives.findClosestHit(order[i], ray, hit))
+                            found = true;
+                } else
+                    top = pushChildren(node, first, -1 - count, ray, stack, top);
+            }
+            return found;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives, over single precision boxes.
+     *
+     * @param box        the node bounding boxes
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    private boolean findClosestHit(float[] box, Ray ray, Hit hit, Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+
+        boolean found = false;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(depth);
+        try {
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int node = stack[--top];
+                if (boxEntry(box, node, ray, ox, oy, oz, hit.t) == Double.POSITIVE_INFINITY)
+                    continue;
+
+                int first = links[2 * node];
+                int count = links[2 * node + 1];
+                if (count > 0) {
+                    for (int i = first; i < first + count; ++i)
+                        if (primitives.findClosestHit(order[i], ray, hit))
+                            found = true;
+                } else
+                    top = pushChildren(node, first, -1 - count, ray, stack, top);
+            }
+            return found;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Pushes the children of an inner node, the far child first so that the near child is visited first.
+     *
+     * @param node  the index of the node
+     * @param right the index of the right child
+     * @param axis  the split axis of the node
+     * @param ray   the ray
+     * @param stack the traversal stack
+     * @param top   the top of the stack
+     * @return the new top of the stack
+     */
+    private static int pushChildren(int node, int right, int axis, Ray ray, int[] stack, int top) {
+        int sign = axis == 0 ? ray.getSignX() : axis == 1 ? ray.getSignY() : ray.getSignZ();
+        if (sign == 1) {
+            stack[top++] = node + 1;
+            stack[top++] = right;
+        } else {
+            stack[top++] = right;
+            stack[top++] = node + 1;
+        }
+        return top;
+    }
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, stopping as soon
+     * as the ray is blocked.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the tree
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    @Override
+    public Double3 findTransmittance(Ray ray, double maxDistance, Double3 ktr, Primitives primitives) {
+        if (links.length == 0) return ktr;
+
+        return bounds != null
+                ? findTransmittance(bounds, ray, maxDistance, ktr, primitives)
+                : findTransmittance(floatBounds, ray, maxDistance, ktr, primitives);
+    }
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, over double precision boxes.
+     *
+     * @param box         the node bounding boxes
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the tree
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    private Double3 findTransmittance(double[] box, Ray ray, double maxDistance, Double3 ktr, Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(depth);
+        try {
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int node = stack[--top];
+                if (boxEntry(box, node, ray, ox, oy, oz, maxDistance) == Double.POSITIVE_INFINITY)
+                    continue;
+
+                int first = links[2 * node];
+                int count = links[2 * node + 1];
+                if (count > 0) {
+                    for (int i = first; i < first + count; ++i) {
+                        ktr = primitives.findTransmittance(order[i], ray, maxDistance, ktr);
+                        if (ktr.lowerThan(Intersectable.MIN_TRANSMITTANCE))
+                            return Double3.ZERO;
+                    }
+                } else {
+                    stack[top++] = first;
+                    stack[top++] = node + 1;
+                }
+            }
+            return ktr;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, over single precision boxes.
+     *
+     * @param box         the node bounding boxes
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the tree
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    private Double3 findTransmittance(float[] box, Ray ray, double maxDistance, Double3 ktr, Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(depth);
+        try {
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int node = stack[--top];
+                if (boxEntry(box, node, ray, ox, oy, oz, maxDistance) == Double.POSITIVE_INFINITY)
+                    continue;
+
+                int first = links[2 * node];
+                int count = links[2 * node + 1];
+                if (count > 0) {
+                    for (int i = first; i < first + count; ++i) {
+                        ktr = primitives.findTransmittance(order[i], ray, maxDistance, ktr);
+                        if (ktr.lowerThan(Intersectable.MIN_TRANSMITTANCE))
+                            return Double3.ZERO;
+                    }
+                } else {
+                    stack[top++] = first;
+                    stack[top++] = node + 1;
+                }
+            }
+            return ktr;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Finds all the intersections of the ray with the primitives.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param primitives  the primitives of the tree
+     * @return the intersections, or {@code null} if there are none
+     */
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance, Primitives primitives) {
+        if (links.length == 0) return null;
+
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+
+        List<GeoPoint> result = null;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(depth);
+        try {
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int node = stack[--top];
+                double entry = bounds != null
+                        ? boxEntry(bounds, node, ray, ox, oy, oz, maxDistance)
+                        : boxEntry(floatBounds, node, ray, ox, oy, oz, maxDistance);
+                if (entry == Double.POSITIVE_INFINITY)
+                    continue;
+
+                int first = links[2 * node];
+                int count = links[2 * node + 1];
+                if (count > 0) {
+                    for (int i = first; i < first + count; ++i) {
+                        List<GeoPoint> geoPoints = primitives.findGeoIntersections(order[i], ray, maxDistance);
+                        if (geoPoints != null) {
+                            if (result == null) result = new LinkedList<>();
+                            result.addAll(geoPoints);
+                        }
+                    }
+                } else {
+                    stack[top++] = first;
+                    stack[top++] = node + 1;
+                }
+            }
+            return result;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Calculates the distance along the ray at which it enters the box of a node (slab method).
+     * The near and far side of every slab are picked by the ray's cached direction signs and the
+     * distances are found by multiplying with its cached reciprocal direction, so there are
+     * no divisions and no swaps. A slab whose distance is undefined (a ray parallel to it starting
+     * exactly on its side) does not restrict the result.<br/>
+     * There is a copy of the test for each precision, so that reading a box never checks the precision.
+     *
+     * @param box   the node bounding boxes
+     * @param node  the index of the node
+     * @param ray   the ray
+     * @param ox    x of the ray's head
+     * @param oy    y of the ray's head
+     * @param oz    z of the ray's head
+     * @param limit the distance beyond which the box is of no interest
+     * @return the entry distance, or {@link Double#POSITIVE_INFINITY} if the box is missed
+     *         or starts beyond the limit
+     */
+    private static double boxEntry(double[] box, int node, Ray ray, double ox, double oy, double oz, double limit) {
+        int b = 6 * node;
+        int sx = 3 * ray.getSignX();
+        int sy = 3 * ray.getSignY();
+        int sz = 3 * ray.getSignZ();
+        double ix = ray.getInverseX();
+        double iy = ray.getInverseY();
+        double iz = ray.getInverseZ();
+
+        double tmin = Double.NEGATIVE_INFINITY;
+        double tmax = Double.POSITIVE_INFINITY;
+        double t = (box[b + sx] - ox) * ix;
+        if (t > tmin) tmin = t;
+        t = (box[b + 3 - sx] - ox) * ix;
+        if (t < tmax) tmax = t;
+
+        t = (box[b + 1 + sy] - oy) * iy;
+        if (t > tmin) tmin = t;
+        t = (box[b + 4 - sy] - oy) * iy;
+        if (t < tmax) tmax = t;
+
+        t = (box[b + 2 + sz] - oz) * iz;
+        if (t > tmin) tmin = t;
+        t = (box[b + 5 - sz] - oz) * iz;
+        if (t < tmax) tmax = t;
+
+        return tmax < tmin || tmax < 0 || tmin >= limit ? Double.POSITIVE_INFINITY : tmin;
+    }
+
+    /**
+     * Calculates the distance along the ray at which it enters the box of a node, over single
+     * precision boxes - see {@link #boxEntry(double[], int, Ray, double, double, double, double)}.
+     *
+     * @param box   the node bounding boxes
+     * @param node  the index of the node
+     * @param ray   the ray
+     * @param ox    x of the ray's head
+     * @param oy    y of the ray's head
+     * @param oz    z of the ray's head
+     * @param limit the distance beyond which the box is of no interest
+     * @return the entry distance, or {@link Double#POSITIVE_INFINITY} if the box is missed
+     *         or starts beyond the limit
+     */
+    private static double boxEntry(float[] box, int node, Ray ray, double ox, double oy, double oz, double limit) {
+        int b = 6 * node;
+        int sx = 3 * ray.getSignX();
+        int sy = 3 * ray.getSignY();
+        int sz = 3 * ray.getSignZ();
+        double ix = ray.getInverseX();
+        double iy = ray.getInverseY();
+        double iz = ray.getInverseZ();
+
+        double tmin = Double.NEGATIVE_INFINITY;
+        double tmax = Double.POSITIVE_INFINITY;
+        double t = (box[b + sx] - ox) * ix;
+        if (t > tmin) tmin = t;
+        t = (box[b + 3 - sx] - ox) * ix;
+        if (t < tmax) tmax = t;
+
+        t = (box[b + 1 + sy] - oy) * iy;
+        if (t > tmin) tmin = t;
+        t = (box[b + 4 - sy] - oy) * iy;
+        if (t < tmax) tmax = t;
+
+        t = (box[b + 2 + sz] - oz) * iz;
+        if (t > tmin) tmin = t;
+        t = (box[b + 5 - sz] - oz) * iz;
+        if (t < tmax) tmax = t;
+
+        return tmax < tmin || tmax < 0 || tmin >= limit ? Double.POSITIVE_INFINITY : tmin;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        BinaryArrays.write(out, bounds);
+        BinaryArrays.write(out, floatBounds);
+        BinaryArrays.write(out, links);
+        BinaryArrays.write(out, order);
+        out.writeInt(depth);
+        out.writeDouble(cost);
+    }
+
+    /**
+     * Reads a tree written by {@link #write(DataOutput)}.
+     *
+     * The structure of the tree is checked, so that a corrupt tree fails here rather than
+     * when it is traversed.
+     *
+     * @param in the buffer, positioned at the tree and advanced past it
+     * @return the tree
+     * @throws IllegalArgumentException if the arrays of the tree don't make a valid tree
+     */
+    static BVHTree read(ByteBuffer in) {
+        double[] bounds = BinaryArrays.readDoubles(in);
+        float[] floatBounds = BinaryArrays.readFloats(in);
+        int[] links = BinaryArrays.readInts(in);
+        int[] order = BinaryArrays.readInts(in);
+        int depth = in.getInt();
+        double cost = in.getDouble();
+
+        if (links == null || order == null || links.length % 2 != 0 || (bounds == null) == (floatBounds == null))
+            throw new IllegalArgumentException("Mismatching arrays of a hierarchy");
+        int nodes = links.length / 2;
+        if ((bounds != null ? bounds.length : floatBounds.length) != 6 * nodes)
+            throw new IllegalArgumentException("Mismatching boxes of a hierarchy");
+        // the children follow their parents, so the depths are found in one pass
+        int[] depths = new int[nodes];
+        if (nodes > 0) depths[0] = 1;
+        int deepest = 0;
+        for (int node = 0; node < nodes; ++node) {
+            int first = links[2 * node];
+            int count = links[2 * node + 1];
+            deepest = Math.max(deepest, depths[node]);
+            if (count > 0) {
+                if (first < 0 || first > order.length - count)
+                    throw new IllegalArgumentException("A leaf refers to missing primitives " + first);
+            } else if (count < -3 || count == 0 || first <= node + 1 || first >= nodes)
+                throw new IllegalArgumentException("Wrong links of the node " + node);
+            else {
+                depths[node + 1] = Math.max(depths[node + 1], depths[node] + 1);
+                depths[first] = Math.max(depths[first], depths[node] + 1);
+            }
+        }
+        // the traversal stack is as deep as the tree
+        if (depth < deepest)
+            throw new IllegalArgumentException("Wrong depth of a hierarchy " + depth);
+        return new BVHTree(bounds, floatBounds, links, order, depth, cost);
+    }
+
+    /**
+     * Reads a value of the node links.
+     *
+     * @param index the index of the value - 2 values per node
+     * @return the value
+     */
+    int link(int index) {
+        return links[index];
+    }
+
+    @Override
+    public int[] order() {
+        return order;
+    }
+
+    /**
+     * Reads a value of the node boxes in the precision they are kept in.
+     *
+     * @param index the index of the value - 6 values per node
+     * @return the value
+     */
+    double bound(int index) {
+        return bounds != null ? bounds[index] : floatBounds[index];
+    }
+}
@@ -0,0 +1,121 @@
+package geometries;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes primitive arrays to a binary snapshot, and reads them back from a (memory mapped) buffer
+ * in bulk - each array is copied at once through a view of the buffer, without parsing its elements.
+ * An array is stored as its length followed by its elements, and a {@code null} array as the length -1.
+ */
+final class BinaryArrays {
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private BinaryArrays() {
+    }
+
+    /**
+     * Writes an array of doubles.
+     *
+     * @param out    the output
+     * @param values the array, may be {@code null}
+     * @throws IOException if the output fails
+     */
+    static void write(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null)
+            for (double value : values) out.writeDouble(value);
+    }
+
+    /**
+     * Writes an array of floats.
+     *
+     * @param out    the output
+     * @param values the array, may be {@code null}
+     * @throws IOException if the output fails
+     */
+    static void write(DataOutput out, float[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null)
+            for (float value : values) out.writeFloat(value);
+    }
+
+    /**
+     * Writes an array of integers.
+     *
+     * @param out    the output
+     * @param values the array, may be {@code null}
+     * @throws IOException if the output fails
+     */
+    static void write(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null)
+            for (int value : values) out.writeInt(value);
+    }
+
+    /**
+     * Reads an array of doubles.
+     *
+     * @param in the buffer, positioned at the array and advanced past it
+     * @return the array, or {@code null}
+     * @throws IllegalArgumentException if the length is longer than the rest of the buffer
+     */
+    static double[] readDoubles(ByteBuffer in) {
+        int length = readLength(in, Double.BYTES);
+        if (length < 0) return null;
+        double[] values = new double[length];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + Double.BYTES * length);
+        return values;
+    }
+
+    /**
+     * Reads an array of floats.
+     *
+     * @param in the buffer, positioned at the array and advanced past it
+     * @return the array, or {@code null}
+     * @throws IllegalArgumentException if the length is longer than the rest of the buffer
+     */
+    static float[] readFloats(ByteBuffer in) {
+        int length = readLength(in, Float.BYTES);
+        if (length < 0) return null;
+        float[] values = new float[length];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + Float.BYTES * length);
+        return values;
+    }
+
+    /**
+     * Reads an array of integers.
+     *
+     * @param in the buffer, positioned at the array and advanced past it
+     * @return the array, or {@code null}
+     * @throws IllegalArgumentException if the length is longer than the rest of the buffer
+     */
+    static int[] readInts(ByteBuffer in) {
+        int length = readLength(in, Integer.BYTES);
+        if (length < 0) return null;
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + Integer.BYTES * length);
+        return values;
+    }
+
+    /**
+     * Reads the length of an array, and checks it against the rest of the buffer before the
+     * array is allocated - a corrupt length must not allocate a huge array.
+     *
+     * @param in    the buffer
+     * @param bytes the size of an element
+     * @return the length, -1 for a {@code null} array
+     * @throws IllegalArgumentException if the length is longer than the rest of the buffer
+     */
+    private static int readLength(ByteBuffer in, int bytes) {
+        int length = in.getInt();
+        if (length < -1 || length > in.remaining() / bytes)
+            throw new IllegalArgumentException("Wrong length of an array " + length);
+        return length;
+    }
+}
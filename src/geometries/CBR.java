@@ -1,9 +1,9 @@
 package geometries;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static primitives.Util.*;
 import primitives.*;
 
 /**
@@ -18,6 +18,11 @@ public class CBR extends Geometries {
     /** minimum coordinates point of the bound */
     private Point max = Point.NEGATIVE_INFINITE;
 
+    /** coordinates of the bound for the slab test - min x,y,z followed by max x,y,z */
+    private final double[] box = {
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
     /**
      * Default constructor for CBR.
      */
@@ -41,8 +46,9 @@ public class CBR extends Geometries {
     public CBR(Intersectable geometry) {
         this.geometries.add(geometry);
         List<Point> minMax = geometry.minMaxPoints();
-        this.min = minMax.get(0);
-        this.max = minMax.get(1);
+        // a geometry without a known bounding box is unbounded
+        if (minMax == null) setBounds(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
+        else setBounds(minMax.get(0), minMax.get(1));
     }
 
     /**
@@ -76,8 +82,8 @@ public class CBR extends Geometries {
         // check possibility of preferred points
         for (Intersectable obj : geometries) {
             List<Point> objMinMax = obj.minMaxPoints();
-            min = Point.findMinimum(List.of(min, objMinMax.get(0)));
-            max = Point.findMaximum(List.of(max, objMinMax.get(1)));
+            if (objMinMax == null) setBounds(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
+            else setBounds(minimum(min, objMinMax.get(0)), maximum(max, objMinMax.get(1)));
         }
     }
 
@@ -95,95 +101,174 @@ public class CBR extends Geometries {
         Point center = minPoint.add(maxPoint).scale(0.5); // center point
         return center.getX() + center.getY() + center.getZ();
     }
-    /**
-     * Generate the function comment for the given function body in a markdown code block with the correct language syntax.
-     *
-     * @param  ray         description of parameter
-     * @param  maxDistance description of parameter
-     * @return             description of return value
-     */
     @Override
     protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
-        double tmin = Double.NEGATIVE_INFINITY;
-        double tmax = Double.POSITIVE_INFINITY;
+        if (boxEntry(ray) > maxDistance) return null;
+        return super.findGeoIntersectionsHelper(ray, maxDistance);
+    }
 
-        Vector v = ray.getDirection();
-        Point p0 = ray.getHead();
-        if (!isZero(v.getX())) {
-            double tx1 = (min.getX() - p0.getX()) / v.getX();
-            double tx2 = (max.getX() - p0.getX()) / v.getX();
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        // The whole region is skipped when it starts beyond the closest intersection found so far
+        if (boxEntry(ray) >= hit.t) return false;
+        return super.findClosestHitHelper(ray, hit);
+    }
 
-            tmin = Math.max(tmin, Math.min(tx1, tx2));
-            tmax = Math.min(tmax, Math.max(tx1, tx2));
-        }
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        if (boxEntry(ray) >= maxDistance) return ktr;
+        return super.findTransmittanceHelper(ray, maxDistance, ktr);
+    }
 
-        if (!isZero(v.getY())) {
-            double ty1 = (min.getY() - p0.getY()) / v.getY();
-            double ty2 = (max.getY() - p0.getY()) / v.getY();
+    /**
+     * Calculates the distance along the ray at which it enters the bounding box (slab method).
+     * The near and far side of every slab are picked by the ray's direction signs and the
+     * distances are found by multiplying with its reciprocal direction - no divisions or swaps.
+     *
+     * @param ray the ray to check against the bounding box
+     * @return the entry distance (negative if the ray's head is inside the box),
+     *         or {@link Double#POSITIVE_INFINITY} if the ray misses the box
+     */
+    private double boxEntry(Ray ray) {
+        Point p0 = ray.getHead();
+        int sx = 3 * ray.getSignX();
+        int sy = 3 * ray.getSignY();
+        int sz = 3 * ray.getSignZ();
 
-            tmin = Math.max(tmin, Math.min(ty1, ty2));
-            tmax = Math.min(tmax, Math.max(ty1, ty2));
-        }
+        // a slab whose distance is undefined (NaN) does not restrict the range
+        double tmin = Double.NEGATIVE_INFINITY;
+        double tmax = Double.POSITIVE_INFINITY;
+        double t = (box[sx] - p0.getX()) * ray.getInverseX();
+        if (t > tmin) tmin = t;
+        t = (box[3 - sx] - p0.getX()) * ray.getInverseX();
+        if (t < tmax) tmax = t;
 
-        if (!isZero(v.getZ())) {
-            double tz1 = (min.getZ() - p0.getZ()) / v.getZ();
-            double tz2 = (max.getZ() - p0.getZ()) / v.getZ();
+        t = (box[1 + sy] - p0.getY()) * ray.getInverseY();
+        if (t > tmin) tmin = t;
+        t = (box[4 - sy] - p0.getY()) * ray.getInverseY();
+        if (t < tmax) tmax = t;
 
-            tmin = Math.max(tmin, Math.min(tz1, tz2));
-            tmax = Math.min(tmax, Math.max(tz1, tz2));
-        }
+        t = (box[2 + sz] - p0.getZ()) * ray.getInverseZ();
+        if (t > tmin) tmin = t;
+        t = (box[5 - sz] - p0.getZ()) * ray.getInverseZ();
+        if (t < tmax) tmax = t;
 
-        if (tmax < tmin) return null;
-        return super.findGeoIntersectionsHelper(ray, maxDistance);
+        // The ray misses the box or the box is entirely behind the ray's head
+        if (tmax < tmin || tmax < 0) return Double.POSITIVE_INFINITY;
+        return tmin;
+    }
+
+    /**
+     * Sets the bound's points, along with their coordinates for the slab test.
+     *
+     * @param min the minimum coordinates point
+     * @param max the maximum coordinates point
+     */
+    private void setBounds(Point min, Point max) {
+        this.min = min;
+        this.max = max;
+        box[0] = min.getX();
+        box[1] = min.getY();
+        box[2] = min.getZ();
+        box[3] = max.getX();
+        box[4] = max.getY();
+        box[5] = max.getZ();
     }
 
     /**
      * Builds a hierarchical bounding box structure (CBR) for the contained geometries.
      * The geometries are sorted and divided into two parts recursively to create a bounding hierarchy.
+     * The bounds of every geometry are fetched once, rather than on every comparison of the sort.<br/>
+     * Unbounded geometries (such as planes) are kept next to the hierarchy rather than inside it,
+     * since their infinite boxes would make the boxes of all their ancestors useless.
      *
      * @return the CBR with a hierarchical structure built.
      */
     public CBR buildHierarchy() {
-        Collections.sort(this.geometries, (obj1, obj2) -> {
-            List<Point> minMax1 = obj1.minMaxPoints();
-            double value1 = boundValue(minMax1.get(0), minMax1.get(1));
+        List<Intersectable> unbounded = new ArrayList<>();
+        List<Intersectable> bounded = new ArrayList<>();
+        for (Intersectable geometry : this.geometries)
+            (geometry.isBounded() ? bounded : unbounded).add(geometry);
 
-            List<Point> minMax2 = obj2.minMaxPoints();
-            double value2 = boundValue(minMax2.get(0), minMax2.get(1));
+        int size = bounded.size();
+        Point[] mins = new Point[size];
+        Point[] maxs = new Point[size];
+        double[] values = new double[size];
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            List<Point> minMax = bounded.get(i).minMaxPoints();
+            mins[i] = minMax.get(0);
+            maxs[i] = minMax.get(1);
+            values[i] = boundValue(mins[i], maxs[i]);
+            indices[i] = i;
+        }
+        // descending order of the bounds' centers
+        Arrays.sort(indices, (i, j) -> Double.compare(values[j], values[i]));
 
-            if (value1 < value2) return 1;
-            return -1;
-        });
+        Intersectable[] sorted = new Intersectable[size];
+        Point[] sortedMins = new Point[size];
+        Point[] sortedMaxs = new Point[size];
+        for (int i = 0; i < size; ++i) {
+            sorted[i] = bounded.get(indices[i]);
+            sortedMins[i] = mins[indices[i]];
+            sortedMaxs[i] = maxs[indices[i]];
+        }
 
-        this.geometries = List.of(buildHierarchyHelper(this.geometries));
+        if (size > 0)
+            unbounded.add(0, buildHierarchyHelper(sorted, sortedMins, sortedMaxs, 0, size));
+        this.geometries = List.copyOf(unbounded);
         return this;
     }
 
     /**
      * Recursively builds the bounding box hierarchy.
+     * On return, the bounds of the whole range are stored at its start in the bounds arrays.
      *
-     * @param geometries the list of geometries to include in the hierarchy.
+     * @param geometries the sorted geometries to include in the hierarchy.
+     * @param mins       the minimum points of the geometries' bounds.
+     * @param maxs       the maximum points of the geometries' bounds.
+     * @param start      the first geometry of the range.
+     * @param end        the end (exclusive) of the range.
      * @return the root CBR of the hierarchy.
      */
-    private Intersectable buildHierarchyHelper(List<Intersectable> geometries) {
-        if (geometries.size() < 2)
-            return geometries.get(0);
-
-        int halfSize = geometries.size() / 2;
+    private static Intersectable buildHierarchyHelper(Intersectable[] geometries, Point[] mins, Point[] maxs,
+                                                      int start, int end) {
+        if (end - start < 2)
+            return geometries[start];
 
-        List<Intersectable> leftPart = geometries.subList(0, halfSize);
-        List<Intersectable> rightPart = geometries.subList(halfSize, geometries.size());
-
-        Intersectable leftCbr = buildHierarchyHelper(leftPart);
-        Intersectable rightCbr = buildHierarchyHelper(rightPart);
+        int middle = (start + end) / 2;
+        Intersectable leftCbr = buildHierarchyHelper(geometries, mins, maxs, start, middle);
+        Intersectable rightCbr = buildHierarchyHelper(geometries, mins, maxs, middle, end);
 
         CBR newCbr = new CBR();
         newCbr.geometries = List.of(leftCbr, rightCbr);
-        List<Point> leftMinMax = leftCbr.minMaxPoints();
-        List<Point> rightMinMax = rightCbr.minMaxPoints();
-
-        newCbr.min = Point.findMinimum(List.of(leftMinMax.get(0), rightMinMax.get(0)));
-        newCbr.max = Point.findMaximum(List.of(leftMinMax.get(1), rightMinMax.get(1)));
+        mins[start] = minimum(mins[start], mins[middle]);
+        maxs[start] = maximum(maxs[start], maxs[middle]);
+        newCbr.setBounds(mins[start], maxs[start]);
         return newCbr;
     }
-}
\ No newline at end of file
+
+    /**
+     * Finds the coordinate-wise minimum of two points.
+     *
+     * @param p1 the first point
+     * @param p2 the second point
+     * @return the point of the minimal coordinates
+     */
+    private static Point minimum(Point p1, Point p2) {
+        return new Point(Math.min(p1.getX(), p2.getX()), Math.min(p1.getY(), p2.getY()),
+                Math.min(p1.getZ(), p2.getZ()));
+    }
+
+    /**
+     * Finds the coordinate-wise maximum of two points.
+     *
+     * @param p1 the first point
+     * @param p2 the second point
+     * @return the point of the maximal coordinates
+     */
+    private static Point maximum(Point p1, Point p2) {
+        return new Point(Math.max(p1.getX(), p2.getX()), Math.max(p1.getY(), p2.getY()),
+                Math.max(p1.getZ(), p2.getZ()));
+    }
+}
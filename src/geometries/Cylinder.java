@@ -56,5 +56,13 @@ public class Cylinder extends Tube {
         // The normal vector is the vector from o to p1
         return point.subtract(o).normalize();
     }
-}
 
+    /**
+     * Gets the height of the cylinder.
+     *
+     * @return The height of the cylinder.
+     */
+    public double getHeight() {
+        return height;
+    }
+}
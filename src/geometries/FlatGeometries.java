@@ -0,0 +1,196 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An immutable, flattened snapshot of a plain {@link Geometries} collection for rendering.<br/>
+ * Nested plain collections are flattened into their geometries, and the geometries are grouped
+ * by type: the spheres and the triangles are kept in structure-of-arrays form (a coordinate
+ * of all the spheres after another) and intersected in a single loop each, without a virtual
+ * call per geometry. Any other geometry - including hierarchies such as {@link CBR} and
+ * {@link BVH}, which keep their own structure - is searched through its own methods.<br/>
+ * The transmittance and the list based intersections are accumulated over the geometries
+ * in their original order, exactly as by the collection.
+ */
+public final class FlatGeometries extends Intersectable {
+    /** All the geometries, in their original order */
+    private final Intersectable[] all;
+
+    /** The spheres */
+    private final Sphere[] spheres;
+    /** Coordinates of the centers of the spheres */
+    private final double[] sphereX, sphereY, sphereZ;
+    /** Squared radii of the spheres */
+    private final double[] sphereRadiusSquared;
+
+    /** The triangles */
+    private final Triangle[] triangles;
+    /** Coordinates of the first vertices of the triangles */
+    private final double[] p0x, p0y, p0z;
+    /** The edges from the first vertices to the second ones */
+    private final double[] e1x, e1y, e1z;
+    /** The edges from the first vertices to the third ones */
+    private final double[] e2x, e2y, e2z;
+
+    /** Any other geometries */
+    private final Intersectable[] others;
+
+    /**
+     * Flattens a collection of geometries. Later changes of the collection are not reflected.
+     *
+     * @param geometries the collection
+     */
+    public FlatGeometries(Geometries geometries) {
+        List<Intersectable> list = new ArrayList<>();
+        flatten(geometries, list);
+        all = list.toArray(new Intersectable[0]);
+
+        List<Sphere> sphereList = new ArrayList<>();
+        List<Triangle> triangleList = new ArrayList<>();
+        List<Intersectable> otherList = new ArrayList<>();
+        for (Intersectable geo : all) {
+            if (geo.getClass() == Sphere.class) sphereList.add((Sphere) geo);
+            else if (geo.getClass() == Triangle.class) triangleList.add((Triangle) geo);
+            else otherList.add(geo);
+        }
+
+        spheres = sphereList.toArray(new Sphere[0]);
+        int count = spheres.length;
+        sphereX = new double[count];
+        sphereY = new double[count];
+        sphereZ = new double[count];
+        sphereRadiusSquared = new double[count];
+        for (int i = 0; i < count; ++i) {
+            Sphere sphere = spheres[i];
+            sphereX[i] = sphere.center.getX();
+            sphereY[i] = sphere.center.getY();
+            sphereZ[i] = sphere.center.getZ();
+            sphereRadiusSquared[i] = sphere.radius * sphere.radius;
+        }
+
+        triangles = triangleList.toArray(new Triangle[0]);
+        count = triangles.length;
+        p0x = new double[count];
+        p0y = new double[count];
+        p0z = new double[count];
+        e1x = new double[count];
+        e1y = new double[count];
+        e1z = new double[count];
+        e2x = new double[count];
+        e2y = new double[count];
+        e2z = new double[count];
+        for (int i = 0; i < count; ++i) {
+            Triangle triangle = triangles[i];
+            p0x[i] = triangle.p0x;
+            p0y[i] = triangle.p0y;
+            p0z[i] = triangle.p0z;
+            e1x[i] = triangle.e1x;
+            e1y[i] = triangle.e1y;
+            e1z[i] = triangle.e1z;
+            e2x[i] = triangle.e2x;
+            e2y[i] = triangle.e2y;
+            e2z[i] = triangle.e2z;
+        }
+
+        others = otherList.toArray(new Intersectable[0]);
+    }
+
+    /**
+     * Recursively collects the geometries of nested plain collections.
+     *
+     * @param geometries the collection to collect from
+     * @param list       the list to add the geometries to
+     */
+    private static void flatten(Geometries geometries, List<Intersectable> list) {
+        for (Intersectable geo : geometries.geometries) {
+            if (geo.getClass() == Geometries.class)
+                flatten((Geometries) geo, list);
+            else
+                list.add(geo);
+        }
+    }
+
+    /**
+     * Gets the amount of geometries in the snapshot, after flattening the nested collections.
+     *
+     * @return the amount of geometries
+     */
+    public int size() {
+        return all.length;
+    }
+
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double dx = ray.getDirection().getX(), dy = ray.getDirection().getY(), dz = ray.getDirection().getZ();
+        boolean found = false;
+
+        // the calculation of Sphere, over the spheres
+        for (int i = 0; i < spheres.length; ++i) {
+            double t = Sphere.intersect(sphereX[i], sphereY[i], sphereZ[i], sphereRadiusSquared[i],
+                    ox, oy, oz, dx, dy, dz, 0, hit.t);
+            if (t == Double.POSITIVE_INFINITY) continue;
+            hit.set(spheres[i], t);
+            found = true;
+        }
+
+        // the calculation of Triangle, over the triangles
+        for (int i = 0; i < triangles.length; ++i) {
+            double t = Triangle.intersect(p0x[i], p0y[i], p0z[i], e1x[i], e1y[i], e1z[i], e2x[i], e2y[i], e2z[i],
+                    ox, oy, oz, dx, dy, dz, hit.t, hit);
+            if (t == Double.POSITIVE_INFINITY) continue;
+            hit.set(triangles[i], t, hit.u, hit.v);
+            found = true;
+        }
+
+        for (Intersectable geo : others)
+            if (geo.findClosestHit(ray, hit))
+                found = true;
+        return found;
+    }
+
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        for (Intersectable geo : all) {
+            ktr = geo.findTransmittanceHelper(ray, maxDistance, ktr);
+            // Stop walking as soon as the ray is blocked
+            if (ktr.lowerThan(MIN_TRANSMITTANCE))
+                return Double3.ZERO;
+        }
+        return ktr;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double distance) {
+        List<GeoPoint> result = null;
+        for (Intersectable geo : all) {
+            List<GeoPoint> geoPoints = geo.findGeoIntersections(ray, distance);
+            if (geoPoints != null) {
+                if (result == null) result = new LinkedList<>();
+                result.addAll(geoPoints);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Point> minMaxPoints() {
+        Point min = Point.POSITIVE_INFINITE;
+        Point max = Point.NEGATIVE_INFINITE;
+        for (Intersectable geo : all) {
+            List<Point> minMax = geo.minMaxPoints();
+            // a shape without a known bounding box is unbounded
+            if (minMax == null) return List.of(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
+            min = Point.findMinimum(List.of(min, minMax.get(0)));
+            max = Point.findMaximum(List.of(max, minMax.get(1)));
+        }
+        return List.of(min, max);
+    }
+}
@@ -1,5 +1,6 @@
 package geometries;
 
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
 
@@ -62,6 +63,28 @@ public class Geometries extends Intersectable {
         return result;
     }
 
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        boolean found = false;
+        // Each geometry is searched only up to the closest intersection found so far
+        for (Intersectable geo : geometries) {
+            if (geo.findClosestHit(ray, hit))
+                found = true;
+        }
+        return found;
+    }
+
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        for (Intersectable geo : geometries) {
+            ktr = geo.findTransmittanceHelper(ray, maxDistance, ktr);
+            // Stop walking as soon as the ray is blocked
+            if (ktr.lowerThan(MIN_TRANSMITTANCE))
+                return Double3.ZERO;
+        }
+        return ktr;
+    }
+
     @Override
     public List<Point> minMaxPoints() {
         // set the objects to default values
@@ -70,10 +93,21 @@ public class Geometries extends Intersectable {
 
         for (Intersectable obj : geometries) {
             List<Point> objMinMax = obj.minMaxPoints();
+            // a shape without a known bounding box is unbounded
+            if (objMinMax == null) return List.of(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
             min = Point.findMinimum(List.of(min, objMinMax.get(0)));
             max = Point.findMaximum(List.of(max, objMinMax.get(1)));
         }
 
         return List.of(min, max);
     }
+
+    /**
+     * Gets the geometries of the collection.
+     *
+     * @return an unmodifiable view of the geometries
+     */
+    public List<Intersectable> getGeometries() {
+        return Collections.unmodifiableList(geometries);
+    }
 }
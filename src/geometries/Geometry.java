@@ -1,9 +1,8 @@
 package geometries;
 
-import primitives.Color;
-import primitives.Material;
-import primitives.Point;
-import primitives.Vector;
+import primitives.*;
+
+import java.util.List;
 
 /**
  * Abstract class representing geometric shapes in a 3D scene.
@@ -22,6 +21,62 @@ public abstract class Geometry extends Intersectable {
      */
     public abstract Vector getNormal(Point p1);
 
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        int count = countIntersections(ray, maxDistance);
+        if (count == 0)
+            return ktr;
+
+        // An opaque geometry blocks the ray on its first intersection
+        Double3 kT = material.kT;
+        if (kT.lowerThan(MIN_TRANSMITTANCE))
+            return Double3.ZERO;
+
+        // Light passes through every intersected surface of a transparent geometry
+        for (int i = 0; i < count; ++i) {
+            ktr = ktr.product(kT);
+            if (ktr.lowerThan(MIN_TRANSMITTANCE))
+                return Double3.ZERO;
+        }
+        return ktr;
+    }
+
+    /**
+     * Creates the GeoPoint of an intersection recorded by the closest hit search, with the normal
+     * calculated once up front, as the shading needs it several times.
+     * Geometries whose normal depends on more than the point (such as the faces of a {@link Mesh})
+     * calculate it from the hit record.
+     *
+     * @param point the intersection point
+     * @param hit   the hit record of the intersection
+     * @return the GeoPoint of the intersection
+     */
+    protected GeoPoint toGeoPoint(Point point, Hit hit) {
+        return new GeoPoint(this, point, getNormal(point), hit.u, hit.v);
+    }
+
+    /**
+     * Counts the intersections of the ray with the geometry that are closer than the given distance.
+     * The default implementation counts the list based intersections, subclasses should
+     * override it with a calculation that does not allocate.
+     *
+     * @param ray         the ray to check for intersections
+     * @param maxDistance the maximum distance from the ray origin to consider intersections
+     * @return the number of intersections in front of the ray's head and before the distance
+     */
+    protected int countIntersections(Ray ray, double maxDistance) {
+        List<GeoPoint> geoPoints = findGeoIntersectionsHelper(ray, maxDistance);
+        if (geoPoints == null)
+            return 0;
+
+        int count = 0;
+        for (GeoPoint gp : geoPoints) {
+            if (ray.getHead().distance(gp.point) < maxDistance)
+                ++count;
+        }
+        return count;
+    }
+
     /**
      * Gets the emission color of the geometry.
      *
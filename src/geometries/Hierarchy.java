@@ -0,0 +1,100 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Intersectable.Hit;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A compiled bounding volume hierarchy over primitives known only by their indices.
+ * The primitives themselves are intersected through a {@link BVHTree.Primitives} callback.<br/>
+ * Implemented by the binary {@link BVHTree} and by the 4-wide {@link WideBVHTree} collapsed from it.
+ */
+interface Hierarchy {
+    /**
+     * Gets the amount of nodes in the hierarchy.
+     *
+     * @return the amount of nodes
+     */
+    int size();
+
+    /**
+     * Gets the depth of the hierarchy.
+     *
+     * @return the depth of the deepest leaf, 0 for an empty hierarchy
+     */
+    int depth();
+
+    /**
+     * Gets the estimated cost of tracing a ray through the hierarchy.
+     *
+     * @return the expected amount of box tests and primitive intersections for a ray hitting the root
+     */
+    double cost();
+
+    /**
+     * Gets the minimum point of the hierarchy's bounding box.
+     *
+     * @return the minimum point
+     */
+    Point getMin();
+
+    /**
+     * Gets the maximum point of the hierarchy's bounding box.
+     *
+     * @return the maximum point
+     */
+    Point getMax();
+
+    /**
+     * Gets the primitive indices in the order of the leaves.
+     *
+     * @return the order array, shared and not to be modified
+     */
+    int[] order();
+
+    /**
+     * Finds the closest intersection of the ray with the primitives.
+     *
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the hierarchy
+     * @return true if a closer intersection was found and recorded
+     */
+    boolean findClosestHit(Ray ray, Hit hit, BVHTree.Primitives primitives);
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, stopping as soon
+     * as the ray is blocked.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the hierarchy
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    Double3 findTransmittance(Ray ray, double maxDistance, Double3 ktr, BVHTree.Primitives primitives);
+
+    /**
+     * Finds all the intersections of the ray with the primitives.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance to consider intersections
+     * @param primitives  the primitives of the hierarchy
+     * @return the intersections, or {@code null} if there are none
+     */
+    List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance, BVHTree.Primitives primitives);
+
+    /**
+     * Writes the flattened arrays of the hierarchy to a binary snapshot.
+     *
+     * @param out the output
+     * @throws IOException if the output fails
+     */
+    void write(DataOutput out) throws IOException;
+}
@@ -1,7 +1,10 @@
 package geometries;
 
+import primitives.Double3;
+import primitives.Material;
 import primitives.Point;
 import primitives.Ray;
+import primitives.Vector;
 
 import java.util.List;
 
@@ -10,6 +13,11 @@ import java.util.List;
  * Subclasses must implement methods to find intersection points with rays.
  */
 public abstract class Intersectable {
+    /**
+     * Transmittance below which a ray is considered to be fully blocked - the search of the
+     * transmittance along a ray stops there, so lower transmittances are not calculated exactly
+     */
+    public static final double MIN_TRANSMITTANCE = 0.001;
 
     /**
      * Finds the intersection points of the specified ray with the geometric shape.
@@ -56,6 +64,70 @@ public abstract class Intersectable {
      */
     protected abstract List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double distance);
 
+    /**
+     * Finds the closest intersection of the specified ray with the geometric shape
+     * which is nearer than the distance already recorded in the hit record.
+     * The caller owns the hit record and may reuse it for many rays, so the search itself
+     * does not allocate any intersection lists.
+     *
+     * @param ray the ray to check for intersections with the geometric shape
+     * @param hit the hit record - its current distance is the upper bound of the search,
+     *            it is updated in place when a closer intersection is found
+     * @return true if a closer intersection was found and recorded, false otherwise
+     */
+    public final boolean findClosestHit(Ray ray, Hit hit) {
+        return findClosestHitHelper(ray, hit);
+    }
+
+    /**
+     * Helper method for finding the closest intersection of the ray with the geometric shape.
+     * The default implementation falls back to the list based search, subclasses should
+     * override it with a calculation that does not allocate.
+     *
+     * @param ray the ray to check for intersections with the geometric shape
+     * @param hit the hit record to update
+     * @return true if a closer intersection was found and recorded, false otherwise
+     */
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        List<GeoPoint> geoPoints = findGeoIntersectionsHelper(ray, hit.t);
+        if (geoPoints == null)
+            return false;
+
+        boolean found = false;
+        for (GeoPoint gp : geoPoints) {
+            double t = ray.getHead().distance(gp.point);
+            if (t < hit.t) {
+                hit.set(gp.geometry, t);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Calculates how much light passes along the ray up to the given distance (an occlusion query).
+     * The search stops at the first opaque blocker, and keeps walking only through
+     * transparent geometries, multiplying their transmission coefficients.
+     *
+     * @param ray         the ray from the shaded point towards the light source
+     * @param maxDistance the distance from the ray origin to the light source
+     * @return the transmittance along the ray, {@link Double3#ZERO} if the ray is blocked
+     */
+    public final Double3 findTransmittance(Ray ray, double maxDistance) {
+        return findTransmittanceHelper(ray, maxDistance, Double3.ONE);
+    }
+
+    /**
+     * Helper method to be implemented by subclasses, accumulating the transmittance
+     * of the geometric shape along the ray.
+     *
+     * @param ray         the ray from the shaded point towards the light source
+     * @param maxDistance the maximum distance from the ray origin to consider intersections
+     * @param ktr         the transmittance accumulated so far along the ray
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    protected abstract Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr);
+
     /**
      * Finds the minimum and maximum points of the geometric shape.
      *
@@ -66,12 +138,38 @@ public abstract class Intersectable {
      */
     public abstract List<Point> minMaxPoints();
 
+    /**
+     * Checks whether the geometric shape has a finite bounding box.
+     * Unbounded shapes (such as planes and infinite tubes) can't be culled by bounding volumes.
+     *
+     * @return true if the bounding box is known and all its coordinates are finite
+     */
+    public boolean isBounded() {
+        List<Point> minMax = minMaxPoints();
+        return minMax != null && isFinite(minMax.get(0)) && isFinite(minMax.get(1));
+    }
+
+    /**
+     * Checks whether all the coordinates of a point are finite.
+     *
+     * @param point the point
+     * @return true if the point is finite
+     */
+    private static boolean isFinite(Point point) {
+        return Double.isFinite(point.getX()) && Double.isFinite(point.getY()) && Double.isFinite(point.getZ());
+    }
+
     /**
      * Inner class representing a geometric intersection point with its corresponding geometry.
+     * The GeoPoints of the closest hit search also carry the shading data of the intersection -
+     * its normal, material and barycentric coordinates - computed once for all the shading.
      */
     public static class GeoPoint {
         public final Geometry geometry; // The geometry that this point intersects
         public final Point point; // The actual intersection point
+        public final Vector normal; // The normal at the point, or null to ask the geometry
+        public final Material material; // The material of the geometry
+        public final double u, v; // The barycentric coordinates on a triangle or a mesh face, 0 for others
 
         /**
          * Constructor for GeoPoint.
@@ -80,8 +178,46 @@ public abstract class Intersectable {
          * @param point    The intersection point.
          */
         public GeoPoint(Geometry geometry, Point point) {
+            this(geometry, point, null);
+        }
+
+        /**
+         * Constructor for GeoPoint with a known normal - for geometries whose normal
+         * depends on more than the point itself (such as the faces of a {@link Mesh}).
+         *
+         * @param geometry The geometry that the point belongs to.
+         * @param point    The intersection point.
+         * @param normal   The normal at the intersection point.
+         */
+        public GeoPoint(Geometry geometry, Point point, Vector normal) {
+            this(geometry, point, normal, 0, 0);
+        }
+
+        /**
+         * Constructor for GeoPoint with all its shading data.
+         *
+         * @param geometry The geometry that the point belongs to.
+         * @param point    The intersection point.
+         * @param normal   The normal at the intersection point.
+         * @param u        The weight of the second vertex of the intersected triangle.
+         * @param v        The weight of the third vertex of the intersected triangle.
+         */
+        public GeoPoint(Geometry geometry, Point point, Vector normal, double u, double v) {
             this.geometry = geometry;
             this.point = point;
+            this.normal = normal;
+            this.material = geometry == null ? null : geometry.getMaterial();
+            this.u = u;
+            this.v = v;
+        }
+
+        /**
+         * Gets the normal at the intersection point.
+         *
+         * @return the normal attached to the point, or the geometry's normal at the point
+         */
+        public Vector getNormal() {
+            return normal != null ? normal : geometry.getNormal(point);
         }
 
 
@@ -103,5 +239,88 @@ public abstract class Intersectable {
         }
     }
 
+    /**
+     * Mutable record of the closest intersection found along a ray.
+     * The distance of the record serves as the upper bound of the search, so geometries
+     * farther than the current closest intersection are skipped.
+     */
+    public static class Hit {
+        /** The geometry of the closest intersection, or {@code null} if nothing was hit */
+        public Geometry geometry;
+        /** The distance along the ray to the closest intersection */
+        public double t;
+        /**
+         * Barycentric coordinates of the closest intersection on a triangle - the weights of its
+         * second and third vertices (the first vertex weighs {@code 1 - u - v}), 0 for other geometries
+         */
+        public double u, v;
+        /** Index of the intersected face of a {@link Mesh}, -1 for other geometries */
+        public int face;
+
+        /**
+         * Constructs an empty hit record with no upper bound on the distance.
+         */
+        public Hit() {
+            reset(Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * Clears the hit record so it can be reused for another ray.
+         *
+         * @param maxDistance the maximum distance from the ray origin to consider intersections
+         * @return the hit record itself
+         */
+        public Hit reset(double maxDistance) {
+            geometry = null;
+            t = maxDistance;
+            u = v = 0;
+            face = -1;
+            return this;
+        }
+
+        /**
+         * Records a new closest intersection.
+         *
+         * @param geometry the intersected geometry
+         * @param t        the distance along the ray to the intersection
+         */
+        public void set(Geometry geometry, double t) {
+            set(geometry, t, 0, 0);
+        }
+
+        /**
+         * Records a new closest intersection along with its barycentric coordinates.
+         *
+         * @param geometry the intersected geometry
+         * @param t        the distance along the ray to the intersection
+         * @param u        the weight of the second vertex
+         * @param v        the weight of the third vertex
+         */
+        public void set(Geometry geometry, double t, double u, double v) {
+            this.geometry = geometry;
+            this.t = t;
+            this.u = u;
+            this.v = v;
+            this.face = -1;
+        }
+
+        /**
+         * Checks whether an intersection has been recorded.
+         *
+         * @return true if a geometry was hit, false otherwise
+         */
+        public boolean isFound() {
+            return geometry != null;
+        }
 
+        /**
+         * Converts the recorded intersection into a GeoPoint on the given ray.
+         *
+         * @param ray the ray the intersection was searched on
+         * @return the GeoPoint of the intersection, or {@code null} if nothing was hit
+         */
+        public GeoPoint toGeoPoint(Ray ray) {
+            return geometry == null ? null : geometry.toGeoPoint(ray.getPoint(t), this);
+        }
+    }
 }
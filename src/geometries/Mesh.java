@@ -0,0 +1,401 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Represents an indexed triangle mesh - a large amount of triangles sharing their vertices
+ * and a single material.<br/>
+ * The vertex positions are kept in one flat array (x,y,z per vertex) and the faces in one
+ * flat array of vertex indices (3 per face), so a triangle costs 3 ints instead of the lists,
+ * points and planes of a {@link Triangle}. Optional per-vertex normals are interpolated
+ * across the faces for smooth shading.<br/>
+ * The faces are organized in an internal bounding volume hierarchy built on construction.<br/>
+ * For previews the vertices, normals and the hierarchy may be kept in single precision,
+ * halving their memory. The rounding of the vertices must stay well below {@link Ray#DELTA},
+ * by which the secondary rays are moved off the surfaces, so it can't cause self intersections.
+ */
+public class Mesh extends Geometry {
+    /**
+     * The rounding error of single precision vertices, in units in the last place of the greatest
+     * coordinate, must be this many times smaller than {@link Ray#DELTA}
+     */
+    private static final int FLOAT_DELTA_RATIO = 64;
+
+    /** Vertex positions - 3 coordinates per vertex, {@code null} in single precision */
+    private final double[] positions;
+    /** Vertex positions in single precision, {@code null} in double precision */
+    private final float[] floatPositions;
+    /** Faces - 3 vertex indices per face, counter-clockwise around the face's normal */
+    private final int[] faces;
+    /** Vertex normals - 3 coordinates per vertex, or {@code null} for flat faces or single precision */
+    private final double[] normals;
+    /** Vertex normals in single precision, or {@code null} for flat faces or double precision */
+    private final float[] floatNormals;
+    /** The amount of vertices */
+    private final int vertexCount;
+    /** The hierarchy of the faces */
+    private final BVHTree tree;
+    /** Intersects the faces stored in the leaves of the tree */
+    private final BVHTree.Primitives leaves = new BVHTree.Primitives() {
+        @Override
+        public boolean findClosestHit(int face, Ray ray, Hit hit) {
+            return intersect(face, ray, hit.t, hit) != Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Double3 findTransmittance(int face, Ray ray, double maxDistance, Double3 ktr) {
+            return intersect(face, ray, maxDistance, null) == Double.POSITIVE_INFINITY ? ktr
+                    : ktr.product(getMaterial().kT);
+        }
+
+        @Override
+        public List<GeoPoint> findGeoIntersections(int face, Ray ray, double maxDistance) {
+            Hit hit = new Hit();
+            if (intersect(face, ray, maxDistance, hit) == Double.POSITIVE_INFINITY) return null;
+            return List.of(toGeoPoint(ray.getPoint(hit.t), hit));
+        }
+    };
+
+    /**
+     * Constructs a mesh of flat faces.
+     *
+     * @param positions vertex positions - 3 coordinates per vertex
+     * @param faces     faces - 3 vertex indices per face
+     * @throws IllegalArgumentException if the arrays are not made of triplets
+     *                                  or a face refers to a missing vertex
+     */
+    public Mesh(double[] positions, int[] faces) {
+        this(positions, faces, null);
+    }
+
+    /**
+     * Constructs a mesh of smooth faces, whose normals are interpolated from the vertex normals.
+     *
+     * @param positions vertex positions - 3 coordinates per vertex
+     * @param faces     faces - 3 vertex indices per face
+     * @param normals   vertex normals - 3 coordinates per vertex, or {@code null} for flat faces
+     * @throws IllegalArgumentException if the arrays are not made of triplets, a face refers
+     *                                  to a missing vertex or there is not a normal per vertex
+     */
+    public Mesh(double[] positions, int[] faces, double[] normals) {
+        this(positions, faces, normals, BVH.Precision.DOUBLE);
+    }
+
+    /**
+     * Constructs a mesh of smooth or flat faces in the given precision.
+     *
+     * @param positions vertex positions - 3 coordinates per vertex
+     * @param faces     faces - 3 vertex indices per face
+     * @param normals   vertex normals - 3 coordinates per vertex, or {@code null} for flat faces
+     * @param precision the precision to keep the vertices, the normals and the hierarchy in
+     * @throws IllegalArgumentException if the arrays are not made of triplets, a face refers
+     *                                  to a missing vertex, there is not a normal per vertex or
+     *                                  the rounding to single precision is not well below {@link Ray#DELTA}
+     */
+    public Mesh(double[] positions, int[] faces, double[] normals, BVH.Precision precision) {
+        if (positions.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh must have 3 coordinates per vertex");
+        if (faces.length % 3 != 0)
+            throw new IllegalArgumentException("A mesh must have 3 vertices per face");
+        if (normals != null && normals.length != positions.length)
+            throw new IllegalArgumentException("A mesh must have a normal per vertex");
+        int vertexCount = positions.length / 3;
+        for (int index : faces)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("A face refers to a missing vertex " + index);
+
+        this.faces = faces;
+        this.vertexCount = vertexCount;
+        if (precision == BVH.Precision.FLOAT) {
+            double greatest = 0;
+            for (double coordinate : positions) greatest = Math.max(greatest, Math.abs(coordinate));
+            if (Math.ulp((float) greatest) * FLOAT_DELTA_RATIO >= Ray.DELTA)
+                throw new IllegalArgumentException("The mesh is too large for single precision: coordinate "
+                        + greatest + " is rounded by up to " + Math.ulp((float) greatest) / 2);
+            this.positions = null;
+            this.floatPositions = toFloat(positions);
+            this.normals = null;
+            this.floatNormals = normals == null ? null : toFloat(normals);
+        } else {
+            this.positions = positions;
+            this.floatPositions = null;
+            this.normals = normals;
+            this.floatNormals = null;
+        }
+
+        int faceCount = faces.length / 3;
+        double[] bounds = new double[6 * faceCount];
+        for (int face = 0; face < faceCount; ++face) {
+            for (int axis = 0; axis < 3; ++axis) {
+                // the bounds of the stored (possibly rounded) vertices
+                double c0 = position(3 * faces[3 * face] + axis);
+                double c1 = position(3 * faces[3 * face + 1] + axis);
+                double c2 = position(3 * faces[3 * face + 2] + axis);
+                bounds[6 * face + axis] = Math.min(c0, Math.min(c1, c2));
+                bounds[6 * face + 3 + axis] = Math.max(c0, Math.max(c1, c2));
+            }
+        }
+        BVHTree built = BVHBuilder.build(bounds, BVH.SplitMethod.SAH);
+        tree = precision == BVH.Precision.FLOAT ? built.toFloat() : built;
+    }
+
+    /**
+     * Constructs a mesh from its arrays and its already built hierarchy - used on reading a snapshot.
+     *
+     * @param positions      vertex positions in double precision, or {@code null}
+     * @param floatPositions vertex positions in single precision, or {@code null}
+     * @param faces          faces - 3 vertex indices per face
+     * @param normals        vertex normals in double precision, or {@code null}
+     * @param floatNormals   vertex normals in single precision, or {@code null}
+     * @param tree           the hierarchy of the faces
+     */
+    private Mesh(double[] positions, float[] floatPositions, int[] faces, double[] normals, float[] floatNormals,
+                 BVHTree tree) {
+        this.positions = positions;
+        this.floatPositions = floatPositions;
+        this.faces = faces;
+        this.normals = normals;
+        this.floatNormals = floatNormals;
+        this.vertexCount = (positions != null ? positions.length : floatPositions.length) / 3;
+        this.tree = tree;
+    }
+
+    /**
+     * Writes the vertices, the faces and the built hierarchy of the mesh to a binary snapshot.
+     * The material and the emission are not written.
+     *
+     * @param out the output
+     * @throws IOException if the output fails
+     */
+    public void write(DataOutput out) throws IOException {
+        BinaryArrays.write(out, positions);
+        BinaryArrays.write(out, floatPositions);
+        BinaryArrays.write(out, faces);
+        BinaryArrays.write(out, normals);
+        BinaryArrays.write(out, floatNormals);
+        tree.write(out);
+    }
+
+    /**
+     * Restores a mesh written by {@link #write(DataOutput)}, without rebuilding its hierarchy.
+     *
+     * @param in the buffer, positioned at the mesh and advanced past it
+     * @return the mesh
+     * @throws IllegalArgumentException if the arrays of the mesh don't match
+     */
+    public static Mesh read(ByteBuffer in) {
+        double[] positions = BinaryArrays.readDoubles(in);
+        float[] floatPositions = BinaryArrays.readFloats(in);
+        int[] faces = BinaryArrays.readInts(in);
+        double[] normals = BinaryArrays.readDoubles(in);
+        float[] floatNormals = BinaryArrays.readFloats(in);
+        BVHTree tree = BVHTree.read(in);
+
+        int coordinates = positions != null ? positions.length : floatPositions != null ? floatPositions.length : -1;
+        int normalCoordinates = normals != null ? normals.length : floatNormals != null ? floatNormals.length : coordinates;
+        if (coordinates < 0 || coordinates % 3 != 0 || faces == null || faces.length % 3 != 0
+                || normalCoordinates != coordinates)
+            throw new IllegalArgumentException("Mismatching arrays of a mesh");
+        for (int index : faces)
+            if (index < 0 || index >= coordinates / 3)
+                throw new IllegalArgumentException("A face refers to a missing vertex " + index);
+        for (int face : tree.order())
+            if (face < 0 || face >= faces.length / 3)
+                throw new IllegalArgumentException("The hierarchy refers to a missing face " + face);
+        return new Mesh(positions, floatPositions, faces, normals, floatNormals, tree);
+    }
+
+    /**
+     * Rounds an array to single precision.
+     *
+     * @param values the values
+     * @return the rounded values
+     */
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; ++i) result[i] = (float) values[i];
+        return result;
+    }
+
+    /**
+     * Gets the amount of faces of the mesh.
+     *
+     * @return the amount of faces
+     */
+    public int getFaceCount() {
+        return faces.length / 3;
+    }
+
+    /**
+     * Gets the amount of vertices of the mesh.
+     *
+     * @return the amount of vertices
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Gets the precision the mesh is kept in.
+     *
+     * @return the precision
+     */
+    public BVH.Precision getPrecision() {
+        return positions == null ? BVH.Precision.FLOAT : BVH.Precision.DOUBLE;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * The face of the point is searched among all the faces, so this is not meant for the rendering -
+     * the intersections found by the mesh, both the closest hits and the lists of intersections,
+     * carry the normal of their face in their {@link GeoPoint}s, and the ray tracer only uses those.
+     *
+     * @throws IllegalArgumentException if the point is not on any face of the mesh
+     */
+    @Override
+    public Vector getNormal(Point point) {
+        double px = point.getX(), py = point.getY(), pz = point.getZ();
+        for (int face = 0; face < faces.length / 3; ++face) {
+            int i0 = 3 * faces[3 * face], i1 = 3 * faces[3 * face + 1], i2 = 3 * faces[3 * face + 2];
+            double e1x = position(i1) - position(i0);
+            double e1y = position(i1 + 1) - position(i0 + 1);
+            double e1z = position(i1 + 2) - position(i0 + 2);
+            double e2x = position(i2) - position(i0);
+            double e2y = position(i2 + 1) - position(i0 + 1);
+            double e2z = position(i2 + 2) - position(i0 + 2);
+            double sx = px - position(i0), sy = py - position(i0 + 1), sz = pz - position(i0 + 2);
+
+            // barycentric coordinates of the point's projection on the face's plane
+            double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+            double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+            double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+            double det = d11 * d22 - d12 * d12;
+            if (isZero(det)) continue;
+            double s1 = sx * e1x + sy * e1y + sz * e1z;
+            double s2 = sx * e2x + sy * e2y + sz * e2z;
+            double u = (d22 * s1 - d12 * s2) / det;
+            double v = (d11 * s2 - d12 * s1) / det;
+            if (alignZero(u) < 0 || alignZero(v) < 0 || alignZero(u + v - 1) > 0) continue;
+
+            // distance of the point from its projection
+            double dx = sx - u * e1x - v * e2x;
+            double dy = sy - u * e1y - v * e2y;
+            double dz = sz - u * e1z - v * e2z;
+            if (isZero(dx * dx + dy * dy + dz * dz))
+                return normal(face, u, v);
+        }
+        throw new IllegalArgumentException("The point is not on the mesh");
+    }
+
+    @Override
+    protected GeoPoint toGeoPoint(Point point, Hit hit) {
+        return new GeoPoint(this, point, normal(hit.face, hit.u, hit.v), hit.u, hit.v);
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
+        return tree.findGeoIntersections(ray, maxDistance, leaves);
+    }
+
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        return tree.findClosestHit(ray, hit, leaves);
+    }
+
+    @Override
+    protected Double3 findTransmittanceHelper(Ray ray, double maxDistance, Double3 ktr) {
+        // the tree stops walking as soon as the ray is blocked
+        return tree.findTransmittance(ray, maxDistance, ktr, leaves);
+    }
+
+    @Override
+    public List<Point> minMaxPoints() {
+        return List.of(tree.getMin(), tree.getMax());
+    }
+
+    /**
+     * Intersects the ray with a face (by {@link Triangle#intersect}), reading the vertices straight
+     * from the positions array.
+     *
+     * @param face        the index of the face
+     * @param ray         the ray to intersect
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param hit         the hit record to set with the intersection, may be {@code null}
+     * @return the distance to the intersection, or {@link Double#POSITIVE_INFINITY} if the ray
+     *         misses the face or the intersection is not nearer than the maximum distance
+     */
+    private double intersect(int face, Ray ray, double maxDistance, Hit hit) {
+        int i0 = 3 * faces[3 * face], i1 = 3 * faces[3 * face + 1], i2 = 3 * faces[3 * face + 2];
+        double p0x = position(i0), p0y = position(i0 + 1), p0z = position(i0 + 2);
+        Point head = ray.getHead();
+        Vector d = ray.getDirection();
+        double t = Triangle.intersect(p0x, p0y, p0z,
+                position(i1) - p0x, position(i1 + 1) - p0y, position(i1 + 2) - p0z,
+                position(i2) - p0x, position(i2 + 1) - p0y, position(i2 + 2) - p0z,
+                head.getX(), head.getY(), head.getZ(), d.getX(), d.getY(), d.getZ(), maxDistance, hit);
+        if (hit != null && t != Double.POSITIVE_INFINITY) {
+            hit.set(this, t, hit.u, hit.v);
+            hit.face = face;
+        }
+        return t;
+    }
+
+    /**
+     * Calculates the normal at a point of a face - interpolated from the vertex normals
+     * if there are any, and the normal of the face's plane otherwise. The normal of the plane
+     * is taken as well for a face whose vertices have no normals (zero normals) or whose
+     * normals cancel out at the point.
+     *
+     * @param face the index of the face
+     * @param u    the weight of the face's second vertex
+     * @param v    the weight of the face's third vertex
+     * @return the unit normal
+     */
+    private Vector normal(int face, double u, double v) {
+        int i0 = 3 * faces[3 * face], i1 = 3 * faces[3 * face + 1], i2 = 3 * faces[3 * face + 2];
+        if (normals != null || floatNormals != null) {
+            double w = 1 - u - v;
+            double nx = w * normal(i0) + u * normal(i1) + v * normal(i2);
+            double ny = w * normal(i0 + 1) + u * normal(i1 + 1) + v * normal(i2 + 1);
+            double nz = w * normal(i0 + 2) + u * normal(i1 + 2) + v * normal(i2 + 2);
+            if (!isZero(nx * nx + ny * ny + nz * nz))
+                return new Vector(nx, ny, nz).normalize();
+        }
+        Vector e1 = new Vector(position(i1) - position(i0), position(i1 + 1) - position(i0 + 1),
+                position(i1 + 2) - position(i0 + 2));
+        Vector e2 = new Vector(position(i2) - position(i0), position(i2 + 1) - position(i0 + 1),
+                position(i2 + 2) - position(i0 + 2));
+        return e1.crossProduct(e2).normalize();
+    }
+
+    /**
+     * Reads a vertex coordinate in the precision the vertices are kept in.
+     *
+     * @param index the index of the coordinate
+     * @return the coordinate
+     */
+    private double position(int index) {
+        return positions != null ? positions[index] : floatPositions[index];
+    }
+
+    /**
+     * Reads a vertex normal coordinate in the precision the normals are kept in.
+     *
+     * @param index the index of the coordinate
+     * @return the coordinate
+     */
+    private double normal(int index) {
+        return normals != null ? normals[index] : floatNormals[index];
+    }
+}
@@ -81,8 +81,51 @@ public class Plane extends Geometry {
         return null;
     }
 
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        double t = distanceAlong(ray);
+        if (t >= hit.t)
+            return false;
+        hit.set(this, t);
+        return true;
+    }
+
+    @Override
+    protected int countIntersections(Ray ray, double maxDistance) {
+        return distanceAlong(ray) < maxDistance ? 1 : 0;
+    }
+
+    /**
+     * Calculates the distance along the ray to its intersection with the plane
+     * without allocating any intermediate vectors.
+     *
+     * @param ray the ray to intersect with the plane
+     * @return the distance to the intersection point, or {@link Double#POSITIVE_INFINITY}
+     *         if the ray is parallel to the plane or the plane is behind the ray's head
+     */
+    double distanceAlong(Ray ray) {
+        double nv = normal.dotProduct(ray.getDirection());
+        if (isZero(nv))
+            return Double.POSITIVE_INFINITY;
+
+        Point head = ray.getHead();
+        double t = alignZero((normal.getX() * (q.getX() - head.getX())
+                + normal.getY() * (q.getY() - head.getY())
+                + normal.getZ() * (q.getZ() - head.getZ())) / nv);
+        return t > 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
     @Override
     public List<Point> minMaxPoints() {
         return List.of(Point.NEGATIVE_INFINITE, Point.POSITIVE_INFINITE);
     }
+
+    /**
+     * Gets the point on the plane the plane was constructed with.
+     *
+     * @return The point on the plane the plane was constructed with.
+     */
+    public Point getPoint() {
+        return q;
+    }
 }
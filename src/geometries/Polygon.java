@@ -103,4 +103,13 @@ public class Polygon extends Geometry {
     public List<Point> minMaxPoints() {
         return List.of(Point.findMinimum(vertices), Point.findMaximum(vertices));
     }
+
+    /**
+     * Gets the vertices of the polygon, in their order.
+     *
+     * @return The vertices of the polygon, in their order.
+     */
+    public List<Point> getVertices() {
+        return vertices;
+    }
 }
@@ -15,4 +15,13 @@ public abstract class RadialGeometry extends Geometry {
     public RadialGeometry(double radius) {
         this.radius = radius;
     }
+
+    /**
+     * Gets the radius of the radial geometry.
+     *
+     * @return The radius of the radial geometry.
+     */
+    public double getRadius() {
+        return radius;
+    }
 }
@@ -13,7 +13,7 @@ import static primitives.Util.alignZero;
  * Extends RadialGeometry.
  */
 public class Sphere extends RadialGeometry {
-    final private Point center; // The center point of the sphere.
+    final Point center; // The center point of the sphere.
 
     /**
      * Constructs a new Sphere with the given radius and center point.
@@ -66,9 +66,96 @@ public class Sphere extends RadialGeometry {
         return null;
     }
 
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        double t = intersect(ray, 0, hit.t);
+        if (t == Double.POSITIVE_INFINITY)
+            return false;
+
+        hit.set(this, t);
+        return true;
+    }
+
+    @Override
+    protected int countIntersections(Ray ray, double maxDistance) {
+        double t = intersect(ray, 0, maxDistance);
+        if (t == Double.POSITIVE_INFINITY)
+            return 0;
+        // the farther intersection is searched beyond the nearer one
+        return intersect(ray, t, maxDistance) == Double.POSITIVE_INFINITY ? 1 : 2;
+    }
+
+    /**
+     * Intersects the ray with the sphere.
+     *
+     * @param ray         the ray to intersect
+     * @param minDistance the distance up to which intersections are ignored
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @return the distance to the nearest intersection within the range, or
+     *         {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    private double intersect(Ray ray, double minDistance, double maxDistance) {
+        Point head = ray.getHead();
+        Vector v = ray.getDirection();
+        return intersect(center.getX(), center.getY(), center.getZ(), radius * radius,
+                head.getX(), head.getY(), head.getZ(), v.getX(), v.getY(), v.getZ(), minDistance, maxDistance);
+    }
+
+    /**
+     * Finds the nearest intersection of a ray with a sphere beyond a minimum distance, from the
+     * projection of the center on the ray's line and the half chord around it, without allocating
+     * any vectors. This is the single sphere test of the package - of a sphere and of the spheres
+     * of {@link FlatGeometries}.
+     *
+     * @param cx            x of the center
+     * @param cy            y of the center
+     * @param cz            z of the center
+     * @param radiusSquared the squared radius
+     * @param ox            x of the ray's head
+     * @param oy            y of the ray's head
+     * @param oz            z of the ray's head
+     * @param dx            x of the ray's direction
+     * @param dy            y of the ray's direction
+     * @param dz            z of the ray's direction
+     * @param minDistance   the distance up to which intersections are ignored
+     * @param maxDistance   the distance beyond which intersections are ignored
+     * @return the distance to the nearest intersection within the range, or
+     *         {@link Double#POSITIVE_INFINITY} if there is none
+     */
+    static double intersect(double cx, double cy, double cz, double radiusSquared,
+                            double ox, double oy, double oz, double dx, double dy, double dz,
+                            double minDistance, double maxDistance) {
+        // Vector from the ray's head to the center, kept in plain coordinates
+        double ux = cx - ox;
+        double uy = cy - oy;
+        double uz = cz - oz;
+
+        double tm = alignZero(dx * ux + dy * uy + dz * uz);
+        double dSquared = alignZero(ux * ux + uy * uy + uz * uz - tm * tm);
+        // The ray's line passes outside the sphere or is tangent to it
+        if (dSquared >= radiusSquared)
+            return Double.POSITIVE_INFINITY;
+
+        // Take the nearer intersection within the range, otherwise the farther one
+        double th = alignZero(Math.sqrt(radiusSquared - dSquared));
+        double t = alignZero(tm - th);
+        if (t <= minDistance)
+            t = alignZero(tm + th);
+        return t <= minDistance || t >= maxDistance ? Double.POSITIVE_INFINITY : t;
+    }
+
     @Override
     public List<Point> minMaxPoints() {
         return List.of(new Point(center.getX() - radius , center.getY() - radius, center.getZ() - radius), //
                 new Point(center.getX() + radius , center.getY() + radius, center.getZ() + radius));
     }
+
+    /**
+     * Gets the center point of the sphere.
+     *
+     * @return The center point of the sphere.
+     */
+    public Point getCenter() {
+        return center;
+    }
 }
@@ -0,0 +1,72 @@
+package geometries;
+
+import java.util.Arrays;
+
+/**
+ * Scratch of the hierarchy traversals of a thread, so that tracing a ray allocates no stacks.<br/>
+ * A traversal takes a frame of the stack arrays above the frames in use and releases it when it
+ * returns, so the traversal of a nested hierarchy (e.g. of a mesh in the leaf of a BVH) runs
+ * above its parent's frame. When the arrays grow, the traversals in progress keep working on
+ * the arrays they started with.<br/>
+ * A stack is not thread safe - each thread gets its own by {@link #get()}.
+ */
+final class TraversalStack {
+    /** The stacks of the threads */
+    private static final ThreadLocal<TraversalStack> STACKS = ThreadLocal.withInitial(TraversalStack::new);
+    /** The initial size of the stack arrays */
+    private static final int INITIAL_SIZE = 64;
+
+    /** The nodes of the frames */
+    int[] nodes = new int[INITIAL_SIZE];
+    /** The entry distances of the frames, for the traversals visiting the nearest node first */
+    double[] distances = new double[INITIAL_SIZE];
+    /**
+     * The entry distances of the children of a node of a {@link WideBVHTree} - filled and consumed
+     * before any primitive is intersected, so it is never used by two traversals at once
+     */
+    final double[] entries = new double[WideBVHTree.WIDTH];
+    /** The first free position of the stack arrays */
+    private int top = 0;
+
+    /**
+     * Private constructor - the stacks are only created per thread.
+     */
+    private TraversalStack() {
+    }
+
+    /**
+     * Gets the stack of the current thread.
+     *
+     * @return the stack
+     */
+    static TraversalStack get() {
+        return STACKS.get();
+    }
+
+    /**
+     * Takes a frame of the stack arrays, growing them if needed. The arrays are to be read
+     * only after the frame is taken.
+     *
+     * @param size the size of the frame
+     * @return the first position of the frame
+     */
+    int open(int size) {
+        int base = top;
+        top += size;
+        if (top > nodes.length) {
+            int length = Math.max(top, 2 * nodes.length);
+            nodes = Arrays.copyOf(nodes, length);
+            distances = Arrays.copyOf(distances, length);
+        }
+        return base;
+    }
+
+    /**
+     * Releases a frame of the stack arrays, with all the frames taken above it.
+     *
+     * @param base the first position of the frame
+     */
+    void close(int base) {
+        top = base;
+    }
+}
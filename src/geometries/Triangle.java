@@ -4,7 +4,6 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static primitives.Util.alignZero;
@@ -16,6 +15,12 @@ import static primitives.Util.isZero;
  * Extends Polygon.
  */
 public class Triangle extends Polygon {
+    /** Coordinates of the first vertex */
+    final double p0x, p0y, p0z;
+    /** The edge from the first vertex to the second one */
+    final double e1x, e1y, e1z;
+    /** The edge from the first vertex to the third one */
+    final double e2x, e2y, e2z;
 
     /**
      * Constructs a new Triangle with the given vertices.
@@ -28,46 +33,111 @@ public class Triangle extends Polygon {
         if (vertices.length != 3) {
             throw new IllegalArgumentException("A triangle must have 3 vertices");
         }
+        p0x = vertices[0].getX();
+        p0y = vertices[0].getY();
+        p0z = vertices[0].getZ();
+        e1x = vertices[1].getX() - p0x;
+        e1y = vertices[1].getY() - p0y;
+        e1z = vertices[1].getZ() - p0z;
+        e2x = vertices[2].getX() - p0x;
+        e2y = vertices[2].getY() - p0y;
+        e2z = vertices[2].getZ() - p0z;
     }
 
     @Override
-    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray,double maxDistance) {
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
+        double t = intersect(ray, maxDistance, null);
+        return t == Double.POSITIVE_INFINITY ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
+    }
 
-        // Find intersections with the underlying plane
-        List <GeoPoint> lst = plane.findGeoIntersectionsHelper(ray,maxDistance);
-        if(lst == null)
-            return null;
+    @Override
+    protected boolean findClosestHitHelper(Ray ray, Hit hit) {
+        // farther intersections are rejected before the hit record is touched
+        return intersect(ray, hit.t, hit) != Double.POSITIVE_INFINITY;
+    }
 
-        // Get the origin point of the ray
-        Point p0 = ray.getHead();
-        Vector v = ray.getDirection();
+    @Override
+    protected int countIntersections(Ray ray, double maxDistance) {
+        return intersect(ray, maxDistance, null) == Double.POSITIVE_INFINITY ? 0 : 1;
+    }
 
-        // Define vectors from the origin point to each vertex of the polygon
-        Point p1 = this.vertices.get(0);
-        Point p2 = this.vertices.get(1);
-        Point p3 = this.vertices.get(2);
+    /**
+     * Intersects the ray with the triangle.
+     *
+     * @param ray         the ray to intersect
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param hit         the hit record to set with the intersection, may be {@code null}
+     * @return the distance to the intersection, or {@link Double#POSITIVE_INFINITY} if the ray
+     *         misses the triangle or the intersection is not nearer than the maximum distance
+     */
+    private double intersect(Ray ray, double maxDistance, Hit hit) {
+        Point head = ray.getHead();
+        Vector d = ray.getDirection();
+        double t = intersect(p0x, p0y, p0z, e1x, e1y, e1z, e2x, e2y, e2z,
+                head.getX(), head.getY(), head.getZ(), d.getX(), d.getY(), d.getZ(), maxDistance, hit);
+        if (hit != null && t != Double.POSITIVE_INFINITY) hit.set(this, t, hit.u, hit.v);
+        return t;
+    }
 
-        // Calculate vectors from the origin point to each vertex
-        Vector v1 = p0.subtract(p1);
-        Vector v2 = p0.subtract(p2);
-        Vector v3 = p0.subtract(p3);
+    /**
+     * Intersects a ray with a triangle by the Möller–Trumbore algorithm, which finds the distance
+     * and the barycentric coordinates of the intersection at once from the edges of the triangle,
+     * without intersecting the plane first and without allocating any vectors. This is the single
+     * triangle test of the package - of a triangle, of a {@link Mesh} face and of the triangles of
+     * {@link FlatGeometries}. Edges and vertices are considered outside of the triangle.
+     *
+     * @param p0x         x of the first vertex
+     * @param p0y         y of the first vertex
+     * @param p0z         z of the first vertex
+     * @param e1x         x of the edge from the first vertex to the second one
+     * @param e1y         y of the edge from the first vertex to the second one
+     * @param e1z         z of the edge from the first vertex to the second one
+     * @param e2x         x of the edge from the first vertex to the third one
+     * @param e2y         y of the edge from the first vertex to the third one
+     * @param e2z         z of the edge from the first vertex to the third one
+     * @param ox          x of the ray's head
+     * @param oy          y of the ray's head
+     * @param oz          z of the ray's head
+     * @param dx          x of the ray's direction
+     * @param dy          y of the ray's direction
+     * @param dz          z of the ray's direction
+     * @param maxDistance the distance beyond which intersections are ignored
+     * @param uv          the hit record to write the weights of the second and the third vertices
+     *                    (u and v) of an intersection to, may be {@code null} - its other fields
+     *                    are left as they are
+     * @return the distance to the intersection, or {@link Double#POSITIVE_INFINITY} if the ray
+     *         misses the triangle or the intersection is not nearer than the maximum distance
+     */
+    static double intersect(double p0x, double p0y, double p0z, double e1x, double e1y, double e1z,
+                            double e2x, double e2y, double e2z, double ox, double oy, double oz,
+                            double dx, double dy, double dz, double maxDistance, Hit uv) {
+        // p = d x e2, the determinant is e1 . p
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        // the ray is parallel to the triangle's plane (or the triangle is degenerate)
+        if (isZero(det)) return Double.POSITIVE_INFINITY;
+        double invDet = 1 / det;
 
-        // Calculate normals for each edge of the polygon
-        Vector n1 = v1.crossProduct(v2).normalize();
-        Vector n2 = v2.crossProduct(v3).normalize();
-        Vector n3 = v3.crossProduct(v1).normalize();
+        double sx = ox - p0x, sy = oy - p0y, sz = oz - p0z;
+        double u = alignZero((sx * px + sy * py + sz * pz) * invDet);
+        if (u <= 0 || u >= 1) return Double.POSITIVE_INFINITY;
 
-        // Calculate dot products between ray direction and each normal
-        double num1 = v.dotProduct(n1);
-        double num2 = v.dotProduct(n2);
-        double num3 = v.dotProduct(n3);
+        // q = s x e1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+        if (v <= 0 || alignZero(u + v - 1) >= 0) return Double.POSITIVE_INFINITY;
 
-        // Check if all dot products have the same sign, if so, return the intersections
-        if(alignZero(num1) > 0 && alignZero(num2) > 0 && alignZero(num3) > 0 ||
-                alignZero(num1) < 0 && alignZero(num2) < 0 && alignZero(num3) < 0)
-            return List.of(new GeoPoint(this, lst.get(0).point));
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+        if (t <= 0 || t >= maxDistance) return Double.POSITIVE_INFINITY;
 
-        // Otherwise, return null indicating no intersections
-        return null;
+        if (uv != null) {
+            uv.u = u;
+            uv.v = v;
+        }
+        return t;
     }
 }
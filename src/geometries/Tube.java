@@ -59,4 +59,13 @@ public class Tube extends RadialGeometry {
     public List<Point> minMaxPoints() {
         return null;
     }
+
+    /**
+     * Gets the axis of the tube.
+     *
+     * @return The axis of the tube.
+     */
+    public Ray getAxis() {
+        return axis;
+    }
 }
@@ -0,0 +1,807 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Intersectable.Hit;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Flattened 4-wide bounding volume hierarchy, collapsed from a binary {@link BVHTree}.<br/>
+ * Every node holds up to four children, and keeps their boxes in structure-of-arrays form:
+ * the minimum x of the four children, then their minimum y, and so on. A ray is tested against
+ * all four boxes of a node at once, by vector operations of the incubating Vector API over a
+ * lane per child, so a ray takes about half the traversal steps of the binary tree at about the
+ * cost of a single box test each.<br/>
+ * A child is either an inner node or a leaf holding a range of the primitives. The children a ray
+ * enters are pushed far first by their entry distance, and every child is skipped if it starts
+ * beyond the closest intersection found by the time it is popped.
+ */
+final class WideBVHTree implements Hierarchy {
+    /** Amount of children of a node */
+    static final int WIDTH = 4;
+    /** Amount of box values of a node - 6 coordinates of every child */
+    private static final int NODE_BOUNDS = 6 * WIDTH;
+    /** Amount of link values of a node - 2 of every child */
+    private static final int NODE_LINKS = 2 * WIDTH;
+    /** Amount of primitives of an empty child */
+    private static final int EMPTY = -1;
+    /** The species of the vectors holding a value of each child of a node */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+    /** The species of the single precision values of the children, widened into {@link #SPECIES} */
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_128;
+
+    /**
+     * Children boxes - 24 values per node: the min x of the 4 children, their min y, min z,
+     * max x, max y and max z. {@code null} in single precision
+     */
+    private final double[] bounds;
+    /** Children boxes in single precision, {@code null} in double precision */
+    private final float[] floatBounds;
+    /**
+     * Children links - 8 values per node, 2 per child. For a leaf: the first primitive in the order
+     * array and the (positive) amount of primitives. For an inner node: its index and 0.
+     * For an empty child: 0 and {@link #EMPTY}
+     */
+    private final int[] links;
+    /** Primitive indices in the order of the leaves */
+    private final int[] order;
+    /** Depth of the tree - bounds the size of the traversal stack */
+    private final int depth;
+    /** Estimated cost of tracing a ray through the tree by the surface area heuristic */
+    private final double cost;
+
+    /**
+     * Constructs a tree from its flattened arrays.
+     *
+     * @param bounds      children boxes in double precision, or {@code null}
+     * @param floatBounds children boxes in single precision, or {@code null}
+     * @param links       children links
+     * @param order       primitive indices in the order of the leaves
+     * @param depth       depth of the tree
+     * @param cost        estimated cost of tracing a ray through the tree
+     */
+    private WideBVHTree(double[] bounds, float[] floatBounds, int[] links, int[] order, int depth, double cost) {
+        this.bounds = bounds;
+        this.floatBounds = floatBounds;
+        this.links = links;
+        this.order = order;
+        this.depth = depth;
+        this.cost = cost;
+    }
+
+    /**
+     * Collapses a binary tree into a 4-wide one. Every node of the wide tree takes the children of
+     * a binary node, and then repeatedly replaces its inner child of the largest surface area by
+     * that child's own children, while it has less than 4 children. The boxes keep the precision
+     * of the binary tree.
+     *
+     * @param tree the binary tree
+     * @return the 4-wide tree
+     */
+    static WideBVHTree collapse(BVHTree tree) {
+        Collapser collapser = new Collapser(tree);
+        int depth = tree.size() == 0 ? 0 : collapser.collapse(0, collapser.add(), 1);
+        int nodes = collapser.nodes;
+        double[] bounds = Arrays.copyOf(collapser.bounds, NODE_BOUNDS * nodes);
+        int[] links = Arrays.copyOf(collapser.links, NODE_LINKS * nodes);
+        if (!tree.isFloat())
+            return new WideBVHTree(bounds, null, links, tree.order(), depth, collapser.cost);
+
+        // the binary boxes are already rounded outwards, so they convert back exactly
+        float[] floatBounds = new float[bounds.length];
+        for (int i = 0; i < bounds.length; ++i)
+            floatBounds[i] = (float) bounds[i];
+        return new WideBVHTree(null, floatBounds, links, tree.order(), depth, collapser.cost);
+    }
+
+    /**
+     * Collapses the nodes of a binary tree into the arrays of a wide tree
+     */
+    private static final class Collapser {
+        /** The binary tree */
+        private final BVHTree tree;
+        /** Children boxes of the wide nodes */
+        private final double[] bounds;
+        /** Children links of the wide nodes */
+        private final int[] links;
+        /** Half the surface area of the binary root */
+        private final double rootArea;
+        /** Amount of wide nodes added so far */
+        private int nodes;
+        /** Estimated cost of the wide nodes collapsed so far */
+        private double cost;
+
+        /**
+         * Prepares the collapse of a binary tree.
+         *
+         * @param tree the binary tree
+         */
+        private Collapser(BVHTree tree) {
+            this.tree = tree;
+            // every wide node but the root replaces at least one inner binary node
+            int capacity = tree.size() / 2 + 1;
+            bounds = new double[NODE_BOUNDS * capacity];
+            links = new int[NODE_LINKS * capacity];
+            rootArea = tree.size() == 0 ? 0 : halfArea(0);
+        }
+
+        /**
+         * Adds a wide node.
+         *
+         * @return the index of the node
+         */
+        private int add() {
+            return nodes++;
+        }
+
+        /**
+         * Collapses the children of a binary node, and recursively the inner nodes among them,
+         * into a wide node.
+         *
+         * @param node  the index of the binary node, whose children (or itself if it's a leaf)
+         *              become the children of the wide node
+         * @param wide  the index of the wide node
+         * @param depth the depth of the wide node (the root is at depth 1)
+         * @return the depth of the deepest wide node of the subtree
+         */
+        private int collapse(int node, int wide, int depth) {
+            cost += probability(node) * BVHBuilder.TRAVERSAL_COST;
+
+            int[] children = new int[WIDTH];
+            int count;
+            if (isLeaf(node)) {
+                children[0] = node;
+                count = 1;
+            } else {
+                children[0] = node + 1;
+                children[1] = tree.link(2 * node);
+                count = 2;
+            }
+            while (count < WIDTH) {
+                int largest = -1;
+                for (int c = 0; c < count; ++c)
+                    if (!isLeaf(children[c]) && (largest < 0 || halfArea(children[c]) > halfArea(children[largest])))
+                        largest = c;
+                if (largest < 0) break;
+                int opened = children[largest];
+                children[largest] = opened + 1;
+                children[count++] = tree.link(2 * opened);
+            }
+
+            int deepest = depth;
+            int b = NODE_BOUNDS * wide;
+            int l = NODE_LINKS * wide;
+            for (int c = 0; c < WIDTH; ++c) {
+                if (c >= count) {
+                    for (int k = 0; k < 3; ++k) {
+                        bounds[b + WIDTH * k + c] = Double.POSITIVE_INFINITY;
+                        bounds[b + WIDTH * (k + 3) + c] = Double.NEGATIVE_INFINITY;
+                    }
+                    links[l + 2 * c + 1] = EMPTY;
+                    continue;
+                }
+
+                int child = children[c];
+                for (int k = 0; k < 6; ++k)
+                    bounds[b + WIDTH * k + c] = tree.bound(6 * child + k);
+                if (isLeaf(child)) {
+                    int primitives = tree.link(2 * child + 1);
+                    links[l + 2 * c] = tree.link(2 * child);
+                    links[l + 2 * c + 1] = primitives;
+                    cost += probability(child) * primitives * BVHBuilder.INTERSECTION_COST;
+                } else {
+                    int index = add();
+                    links[l + 2 * c] = index;
+                    deepest = Math.max(deepest, collapse(child, index, depth + 1));
+                }
+            }
+            return deepest;
+        }
+
+        /**
+         * Checks whether a binary node is a leaf.
+         *
+         * @param node the index of the binary node
+         * @return true for a leaf
+         */
+        private boolean isLeaf(int node) {
+            return tree.link(2 * node + 1) > 0;
+        }
+
+        /**
+         * Calculates half of the surface area of a binary node's box.
+         *
+         * @param node the index of the binary node
+         * @return half of the surface area
+         */
+        private double halfArea(int node) {
+            double dx = tree.bound(6 * node + 3) - tree.bound(6 * node);
+            double dy = tree.bound(6 * node + 4) - tree.bound(6 * node + 1);
+            double dz = tree.bound(6 * node + 5) - tree.bound(6 * node + 2);
+            return dx * dy + dy * dz + dz * dx;
+        }
+
+        /**
+         * Estimates the probability of a ray hitting the root to visit a binary node,
+         * by the ratio of their surface areas.
+         *
+         * @param node the index of the binary node
+         * @return the probability, {@link Double#POSITIVE_INFINITY} for an unbounded tree
+         */
+        private double probability(int node) {
+            if (!Double.isFinite(rootArea)) return Double.POSITIVE_INFINITY;
+            return rootArea == 0 ? 1 : halfArea(node) / rootArea;
+        }
+    }
+
+    @Override
+    public int size() {
+        return links.length / NODE_LINKS;
+    }
+
+    @Override
+    public int[] order() {
+        return order;
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public double cost() {
+        return cost;
+    }
+
+    @Override
+    public Point getMin() {
+        if (links.length == 0) return Point.POSITIVE_INFINITE;
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        for (int k = 0; k < 3; ++k)
+            for (int c = 0; c < WIDTH; ++c)
+                min[k] = Math.min(min[k], bound(WIDTH * k + c));
+        return new Point(min[0], min[1], min[2]);
+    }
+
+    @Override
+    public Point getMax() {
+        if (links.length == 0) return Point.NEGATIVE_INFINITE;
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int k = 0; k < 3; ++k)
+            for (int c = 0; c < WIDTH; ++c)
+                max[k] = Math.max(max[k], bound(WIDTH * (k + 3) + c));
+        return new Point(max[0], max[1], max[2]);
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives. The children a ray enters
+     * are visited nearest first, and children starting beyond the closest intersection found
+     * so far are skipped.
+     *
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    @Override
+    public boolean findClosestHit(Ray ray, Hit hit, BVHTree.Primitives primitives) {
+        if (links.length == 0) return false;
+        return bounds != null
+                ? findClosestHit(bounds, ray, hit, primitives)
+                : findClosestHit(floatBounds, ray, hit, primitives);
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives, over double precision boxes.
+     *
+     * @param box        the children boxes of the nodes
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    private boolean findClosestHit(double[] box, Ray ray, Hit hit, BVHTree.Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int sx = ray.getSignX(), sy = ray.getSignY(), sz = ray.getSignZ();
+
+        boolean found = false;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(stackSize());
+        try {
+            double[] entries = scratch.entries;
+            int[] stack = scratch.nodes;
+            double[] distances = scratch.distances;
+            int top = base;
+            stack[top] = 0;
+            distances[top++] = Double.NEGATIVE_INFINITY;
+            while (top > base) {
+                int child = stack[--top];
+                if (distances[top] >= hit.t)
+                    continue;
+
+                if (child < 0) {
+                    int l = -1 - child;
+                    int first = links[l];
+                    for (int i = first; i < first + links[l + 1]; ++i)
+                        if (primitives.findClosestHit(order[i], ray, hit))
+                            found = true;
+                    continue;
+                }
+
+                boxEntries(box, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, hit.t, entries);
+                // push the entered children far first, so that the nearest is visited first
+                int l = NODE_LINKS * child;
+                int entered = 0;
+                for (int c = 0; c < WIDTH; ++c)
+                    if (entries[c] != Double.POSITIVE_INFINITY && links[l + 2 * c + 1] != EMPTY) {
+                        int slot = top + entered++;
+                        while (slot > top && distances[slot - 1] < entries[c]) {
+                            stack[slot] = stack[slot - 1];
+                            distances[slot] = distances[slot - 1];
+                            --slot;
+                        }
+                        stack[slot] = childEntry(l, c);
+                        distances[slot] = entries[c];
+                    }
+                top += entered;
+            }
+            return found;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Finds the closest intersection of the ray with the primitives, over single precision boxes.
+     *
+     * @param box        the children boxes of the nodes
+     * @param ray        the ray to intersect
+     * @param hit        the hit record to update
+     * @param primitives the primitives of the tree
+     * @return true if a closer intersection was found and recorded
+     */
+    private boolean findClosestHit(float[] box, Ray ray, Hit hit, BVHTree.Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int sx = ray.getSignX(), sy = ray.getSignY(), sz = ray.getSignZ();
+
+        boolean found = false;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(stackSize());
+        try {
+            double[] entries = scratch.entries;
+            int[] stack = scratch.nodes;
+            double[] distances = scratch.distances;
+            int top = base;
+            stack[top] = 0;
+            distances[top++] = Double.NEGATIVE_INFINITY;
+            while (top > base) {
+                int child = stack[--top];
+                if (distances[top] >= hit.t)
+                    continue;
+
+                if (child < 0) {
+                    int l = -1 - child;
+                    int first = links[l];
+                    for (int i = first; i < first + links[l + 1]; ++i)
+                        if (primitives.findClosestHit(order[i], ray, hit))
+                            found = true;
+                    continue;
+                }
+
+                boxEntries(box, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, hit.t, entries);
+                // push the entered children far first, so that the nearest is visited first
+                int l = NODE_LINKS * child;
+                int entered = 0;
+                for (int c = 0; c < WIDTH; ++c)
+                    if (entries[c] != Double.POSITIVE_INFINITY && links[l + 2 * c + 1] != EMPTY) {
+                        int slot = top + entered++;
+                        while (slot > top && distances[slot - 1] < entries[c]) {
+                            stack[slot] = stack[slot - 1];
+                            distances[slot] = distances[slot - 1];
+                            --slot;
+                        }
+                        stack[slot] = childEntry(l, c);
+                        distances[slot] = entries[c];
+                    }
+                top += entered;
+            }
+            return found;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    @Override
+    public Double3 findTransmittance(Ray ray, double maxDistance, Double3 ktr, BVHTree.Primitives primitives) {
+        if (links.length == 0) return ktr;
+        return bounds != null
+                ? findTransmittance(bounds, ray, maxDistance, ktr, primitives)
+                : findTransmittance(floatBounds, ray, maxDistance, ktr, primitives);
+    }
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, over double precision boxes.
+     *
+     * @param box         the children boxes of the nodes
+     * @param ray         the ray
+     * @param maxDistance the distance beyond which the primitives are ignored
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the tree
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    private Double3 findTransmittance(double[] box, Ray ray, double maxDistance, Double3 ktr,
+                                      BVHTree.Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int sx = ray.getSignX(), sy = ray.getSignY(), sz = ray.getSignZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(stackSize());
+        try {
+            double[] entries = scratch.entries;
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int child = stack[--top];
+                if (child < 0) {
+                    int l = -1 - child;
+                    int first = links[l];
+                    for (int i = first; i < first + links[l + 1]; ++i) {
+                        ktr = primitives.findTransmittance(order[i], ray, maxDistance, ktr);
+                        if (ktr.lowerThan(Intersectable.MIN_TRANSMITTANCE))
+                            return Double3.ZERO;
+                    }
+                    continue;
+                }
+
+                boxEntries(box, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, maxDistance, entries);
+                top = pushEntered(child, entries, stack, top);
+            }
+            return ktr;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    /**
+     * Accumulates the transmittance of the primitives along the ray, over single precision boxes.
+     *
+     * @param box         the children boxes of the nodes
+     * @param ray         the ray
+     * @param maxDistance the distance beyond which the primitives are ignored
+     * @param ktr         the transmittance accumulated so far
+     * @param primitives  the primitives of the tree
+     * @return the accumulated transmittance, {@link Double3#ZERO} once the ray is blocked
+     */
+    private Double3 findTransmittance(float[] box, Ray ray, double maxDistance, Double3 ktr,
+                                      BVHTree.Primitives primitives) {
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int sx = ray.getSignX(), sy = ray.getSignY(), sz = ray.getSignZ();
+
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(stackSize());
+        try {
+            double[] entries = scratch.entries;
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int child = stack[--top];
+                if (child < 0) {
+                    int l = -1 - child;
+                    int first = links[l];
+                    for (int i = first; i < first + links[l + 1]; ++i) {
+                        ktr = primitives.findTransmittance(order[i], ray, maxDistance, ktr);
+                        if (ktr.lowerThan(Intersectable.MIN_TRANSMITTANCE))
+                            return Double3.ZERO;
+                    }
+                    continue;
+                }
+
+                boxEntries(box, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, maxDistance, entries);
+                top = pushEntered(child, entries, stack, top);
+            }
+            return ktr;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    @Override
+    public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance, BVHTree.Primitives primitives) {
+        if (links.length == 0) return null;
+
+        Point head = ray.getHead();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = ray.getInverseX(), iy = ray.getInverseY(), iz = ray.getInverseZ();
+        int sx = ray.getSignX(), sy = ray.getSignY(), sz = ray.getSignZ();
+
+        List<GeoPoint> result = null;
+        TraversalStack scratch = TraversalStack.get();
+        int base = scratch.open(stackSize());
+        try {
+            double[] entries = scratch.entries;
+            int[] stack = scratch.nodes;
+            int top = base;
+            stack[top++] = 0;
+            while (top > base) {
+                int child = stack[--top];
+                if (child < 0) {
+                    int l = -1 - child;
+                    int first = links[l];
+                    for (int i = first; i < first + links[l + 1]; ++i) {
+                        List<GeoPoint> geoPoints = primitives.findGeoIntersections(order[i], ray, maxDistance);
+                        if (geoPoints != null) {
+                            if (result == null) result = new LinkedList<>();
+                            result.addAll(geoPoints);
+                        }
+                    }
+                    continue;
+                }
+
+                if (bounds != null)
+                    boxEntries(bounds, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, maxDistance, entries);
+                else
+                    boxEntries(floatBounds, child, ox, oy, oz, ix, iy, iz, sx, sy, sz, maxDistance, entries);
+                top = pushEntered(child, entries, stack, top);
+            }
+            return result;
+        } finally {
+            scratch.close(base);
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        BinaryArrays.write(out, bounds);
+        BinaryArrays.write(out, floatBounds);
+        BinaryArrays.write(out, links);
+        BinaryArrays.write(out, order);
+        out.writeInt(depth);
+        out.writeDouble(cost);
+    }
+
+    /**
+     * Reads a tree written by {@link #write(DataOutput)}.
+     *
+     * The structure of the tree is checked, so that a corrupt tree fails here rather than
+     * when it is traversed.
+     *
+     * @param in the buffer, positioned at the tree and advanced past it
+     * @return the tree
+     * @throws IllegalArgumentException if the arrays of the tree don't make a valid tree
+     */
+    static WideBVHTree read(ByteBuffer in) {
+        double[] bounds = BinaryArrays.readDoubles(in);
+        float[] floatBounds = BinaryArrays.readFloats(in);
+        int[] links = BinaryArrays.readInts(in);
+        int[] order = BinaryArrays.readInts(in);
+        int depth = in.getInt();
+        double cost = in.getDouble();
+
+        if (links == null || order == null || links.length % NODE_LINKS != 0
+                || (bounds == null) == (floatBounds == null))
+            throw new IllegalArgumentException("Mismatching arrays of a hierarchy");
+        int nodes = links.length / NODE_LINKS;
+        if ((bounds != null ? bounds.length : floatBounds.length) != NODE_BOUNDS * nodes)
+            throw new IllegalArgumentException("Mismatching boxes of a hierarchy");
+        // the children follow their parents, so the depths are found in one pass
+        int[] depths = new int[nodes];
+        if (nodes > 0) depths[0] = 1;
+        int deepest = 0;
+        for (int node = 0; node < nodes; ++node) {
+            deepest = Math.max(deepest, depths[node]);
+            for (int c = 0; c < WIDTH; ++c) {
+                int first = links[NODE_LINKS * node + 2 * c];
+                int count = links[NODE_LINKS * node + 2 * c + 1];
+                if (count > 0) {
+                    if (first < 0 || first > order.length - count)
+                        throw new IllegalArgumentException("A leaf refers to missing primitives " + first);
+                } else if (count == 0) {
+                    if (first <= node || first >= nodes)
+                        throw new IllegalArgumentException("Wrong links of the node " + node);
+                    depths[first] = Math.max(depths[first], depths[node] + 1);
+                } else if (count != EMPTY)
+                    throw new IllegalArgumentException("Wrong links of the node " + node);
+            }
+        }
+        // the traversal stack is sized by the depth of the tree
+        if (depth < deepest)
+            throw new IllegalArgumentException("Wrong depth of a hierarchy " + depth);
+        return new WideBVHTree(bounds, floatBounds, links, order, depth, cost);
+    }
+
+    /**
+     * Calculates the size of the traversal stack - every level may leave 3 siblings behind.
+     *
+     * @return the size of the stack
+     */
+    private int stackSize() {
+        return (WIDTH - 1) * depth + 1;
+    }
+
+    /**
+     * Encodes a child for the traversal stack: an inner node by its index, and a leaf
+     * by the (negative) position of its links.
+     *
+     * @param l the position of the node's links
+     * @param c the child
+     * @return the encoded child
+     */
+    private int childEntry(int l, int c) {
+        return links[l + 2 * c + 1] == 0 ? links[l + 2 * c] : -1 - (l + 2 * c);
+    }
+
+    /**
+     * Pushes the children of a node which the ray enters, in no particular order.
+     *
+     * @param node    the index of the node
+     * @param entries the entry distances of the children
+     * @param stack   the traversal stack
+     * @param top     the top of the stack
+     * @return the new top of the stack
+     */
+    private int pushEntered(int node, double[] entries, int[] stack, int top) {
+        int l = NODE_LINKS * node;
+        for (int c = 0; c < WIDTH; ++c)
+            if (entries[c] != Double.POSITIVE_INFINITY && links[l + 2 * c + 1] != EMPTY)
+                stack[top++] = childEntry(l, c);
+        return top;
+    }
+
+    /**
+     * Calculates the distances along a ray at which it enters the 4 children boxes of a node
+     * (the slab method of {@link BVHTree}, run over the children). The near and far sides of the
+     * slabs are picked by the ray's direction signs, which are the same for all the children.
+     *
+     * @param box     the children boxes of the nodes, in double precision
+     * @param node    the index of the node
+     * @param ox      x of the ray's head
+     * @param oy      y of the ray's head
+     * @param oz      z of the ray's head
+     * @param ix      reciprocal of the ray direction's x
+     * @param iy      reciprocal of the ray direction's y
+     * @param iz      reciprocal of the ray direction's z
+     * @param sx      sign of the ray direction's x - 1 if negative, otherwise 0
+     * @param sy      sign of the ray direction's y - 1 if negative, otherwise 0
+     * @param sz      sign of the ray direction's z - 1 if negative, otherwise 0
+     * @param limit   the distance beyond which the boxes are of no interest
+     * @param entries the array to fill with the entry distances, {@link Double#POSITIVE_INFINITY}
+     *                for a box which is missed or starts beyond the limit
+     */
+    private static void boxEntries(double[] box, int node, double ox, double oy, double oz,
+                                   double ix, double iy, double iz, int sx, int sy, int sz,
+                                   double limit, double[] entries) {
+        int b = NODE_BOUNDS * node;
+        int nearX = b + 3 * WIDTH * sx, farX = b + 3 * WIDTH * (1 - sx);
+        int nearY = b + WIDTH + 3 * WIDTH * sy, farY = b + WIDTH + 3 * WIDTH * (1 - sy);
+        int nearZ = b + 2 * WIDTH + 3 * WIDTH * sz, farZ = b + 2 * WIDTH + 3 * WIDTH * (1 - sz);
+        slabEntries(DoubleVector.fromArray(SPECIES, box, nearX), DoubleVector.fromArray(SPECIES, box, farX),
+                DoubleVector.fromArray(SPECIES, box, nearY), DoubleVector.fromArray(SPECIES, box, farY),
+                DoubleVector.fromArray(SPECIES, box, nearZ), DoubleVector.fromArray(SPECIES, box, farZ),
+                ox, oy, oz, ix, iy, iz, limit, entries);
+    }
+
+    /**
+     * Calculates the distances along a ray at which it enters the 4 children boxes of a node
+     * (the slab method of {@link BVHTree}, run over the children). The near and far sides of the
+     * slabs are picked by the ray's direction signs, which are the same for all the children.
+     *
+     * @param box     the children boxes of the nodes, in single precision
+     * @param node    the index of the node
+     * @param ox      x of the ray's head
+     * @param oy      y of the ray's head
+     * @param oz      z of the ray's head
+     * @param ix      reciprocal of the ray direction's x
+     * @param iy      reciprocal of the ray direction's y
+     * @param iz      reciprocal of the ray direction's z
+     * @param sx      sign of the ray direction's x - 1 if negative, otherwise 0
+     * @param sy      sign of the ray direction's y - 1 if negative, otherwise 0
+     * @param sz      sign of the ray direction's z - 1 if negative, otherwise 0
+     * @param limit   the distance beyond which the boxes are of no interest
+     * @param entries the array to fill with the entry distances, {@link Double#POSITIVE_INFINITY}
+     *                for a box which is missed or starts beyond the limit
+     */
+    private static void boxEntries(float[] box, int node, double ox, double oy, double oz,
+                                   double ix, double iy, double iz, int sx, int sy, int sz,
+                                   double limit, double[] entries) {
+        int b = NODE_BOUNDS * node;
+        int nearX = b + 3 * WIDTH * sx, farX = b + 3 * WIDTH * (1 - sx);
+        int nearY = b + WIDTH + 3 * WIDTH * sy, farY = b + WIDTH + 3 * WIDTH * (1 - sy);
+        int nearZ = b + 2 * WIDTH + 3 * WIDTH * sz, farZ = b + 2 * WIDTH + 3 * WIDTH * (1 - sz);
+        slabEntries(widen(box, nearX), widen(box, farX), widen(box, nearY), widen(box, farY),
+                widen(box, nearZ), widen(box, farZ), ox, oy, oz, ix, iy, iz, limit, entries);
+    }
+
+    /**
+     * Calculates the distances along a ray at which it enters 4 boxes, one box in each lane of
+     * the vectors of their sides. A slab whose distance is undefined (NaN) does not restrict the
+     * range, as a comparison with NaN is false in every lane.
+     *
+     * @param nearX   the near x sides of the boxes
+     * @param farX    the far x sides of the boxes
+     * @param nearY   the near y sides of the boxes
+     * @param farY    the far y sides of the boxes
+     * @param nearZ   the near z sides of the boxes
+     * @param farZ    the far z sides of the boxes
+     * @param ox      x of the ray's head
+     * @param oy      y of the ray's head
+     * @param oz      z of the ray's head
+     * @param ix      reciprocal of the ray direction's x
+     * @param iy      reciprocal of the ray direction's y
+     * @param iz      reciprocal of the ray direction's z
+     * @param limit   the distance beyond which the boxes are of no interest
+     * @param entries the array to fill with the entry distances, {@link Double#POSITIVE_INFINITY}
+     *                for a box which is missed or starts beyond the limit
+     */
+    private static void slabEntries(DoubleVector nearX, DoubleVector farX, DoubleVector nearY, DoubleVector farY,
+                                    DoubleVector nearZ, DoubleVector farZ, double ox, double oy, double oz,
+                                    double ix, double iy, double iz, double limit, double[] entries) {
+        DoubleVector tmin = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector tmax = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector t = nearX.sub(ox).mul(ix);
+        tmin = tmin.blend(t, t.compare(VectorOperators.GT, tmin));
+        t = farX.sub(ox).mul(ix);
+        tmax = tmax.blend(t, t.compare(VectorOperators.LT, tmax));
+
+        t = nearY.sub(oy).mul(iy);
+        tmin = tmin.blend(t, t.compare(VectorOperators.GT, tmin));
+        t = farY.sub(oy).mul(iy);
+        tmax = tmax.blend(t, t.compare(VectorOperators.LT, tmax));
+
+        t = nearZ.sub(oz).mul(iz);
+        tmin = tmin.blend(t, t.compare(VectorOperators.GT, tmin));
+        t = farZ.sub(oz).mul(iz);
+        tmax = tmax.blend(t, t.compare(VectorOperators.LT, tmax));
+
+        VectorMask<Double> miss = tmax.compare(VectorOperators.LT, tmin)
+                .or(tmax.compare(VectorOperators.LT, 0))
+                .or(tmin.compare(VectorOperators.GE, limit));
+        tmin.blend(Double.POSITIVE_INFINITY, miss).intoArray(entries, 0);
+    }
+
+    /**
+     * Loads a value of the 4 children of a node from the single precision boxes.
+     *
+     * @param box   the single precision boxes
+     * @param index the index of the value of the first child
+     * @return the values of the children, widened to double precision
+     */
+    private static DoubleVector widen(float[] box, int index) {
+        return (DoubleVector) FloatVector.fromArray(FLOAT_SPECIES, box, index)
+                .castShape(SPECIES, 0);
+    }
+
+    /**
+     * Reads a value of the children boxes in the precision they are kept in.
+     *
+     * @param index the index of the value - 24 values per node
+     * @return the value
+     */
+    private double bound(int index) {
+        return bounds != null ? bounds[index] : floatBounds[index];
+    }
+}
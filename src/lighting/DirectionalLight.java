@@ -36,4 +36,13 @@ public class DirectionalLight extends Light implements LightSource {
     public double getDistance(Point p) {
         return Double.POSITIVE_INFINITY;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the direction of the light.
+     *
+     * @return The direction of the light.
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+}
@@ -77,5 +77,40 @@ public class PointLight extends Light implements LightSource {
         this.kc = kc;
         return this;
     }
-}
 
+    /**
+     * Gets the position of the light.
+     *
+     * @return The position of the light.
+     */
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * Gets the constant attenuation factor.
+     *
+     * @return The constant attenuation factor.
+     */
+    public double getKc() {
+        return kc;
+    }
+
+    /**
+     * Gets the linear attenuation factor.
+     *
+     * @return The linear attenuation factor.
+     */
+    public double getKl() {
+        return kl;
+    }
+
+    /**
+     * Gets the quadratic attenuation factor.
+     *
+     * @return The quadratic attenuation factor.
+     */
+    public double getKq() {
+        return kq;
+    }
+}
@@ -47,4 +47,13 @@ public class SpotLight extends PointLight {
         Color baseIntensity = super.getIntensity(p);
         return baseIntensity.scale(Math.max(0, direction.dotProduct(getL(p))));
     }
+
+    /**
+     * Gets the direction in which the spotlight is pointing.
+     *
+     * @return The direction in which the spotlight is pointing.
+     */
+    public Vector getDirection() {
+        return direction;
+    }
 }
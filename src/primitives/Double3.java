@@ -23,6 +23,10 @@ public class Double3 {
      * One's triad (1,1,1)
      */
     public static final Double3 ONE = new Double3(1, 1, 1);
+    /**
+     * The magnitude below which a number is almost zero
+     */
+    private static final double ZERO_THRESHOLD = 0x1p-40;
     /**
      * First number
      */
@@ -158,6 +162,53 @@ public class Double3 {
         return d1 < other.d1 && d2 < other.d2 && d3 < other.d3;
     }
 
+    /**
+     * Checks whether all the numbers are [almost] zero, as {@link Util#isZero(double)} does for each
+     * of them - a number is almost zero if its magnitude is below 2^-40. This is cheaper than
+     * {@code equals(ZERO)}, which extracts the exponents of the differences.
+     *
+     * @return true if all the numbers are zero or almost zero
+     */
+    boolean isAlmostZero() {
+        return Math.abs(d1) < ZERO_THRESHOLD && Math.abs(d2) < ZERO_THRESHOLD && Math.abs(d3) < ZERO_THRESHOLD;
+    }
+
+    /**
+     * Finds the greatest of the three numbers
+     *
+     * @return the greatest number
+     */
+    public double max() {
+        return Math.max(d1, Math.max(d2, d3));
+    }
+
+    /**
+     * Gets the first number
+     *
+     * @return the first number
+     */
+    public double getD1() {
+        return d1;
+    }
+
+    /**
+     * Gets the second number
+     *
+     * @return the second number
+     */
+    public double getD2() {
+        return d2;
+    }
+
+    /**
+     * Gets the third number
+     *
+     * @return the third number
+     */
+    public double getD3() {
+        return d3;
+    }
+
 
 
 }
@@ -0,0 +1,102 @@
+package primitives;
+
+/**
+ * A mutable RGB color used as a reusable accumulator in the rendering hot path, so summing
+ * the contributions to a pixel does not allocate a {@link Color} per operation.<br/>
+ * The operations round exactly as the matching chains of {@link Color} operations do.
+ * An accumulator is not thread safe - it should be used by a single thread.
+ */
+public final class MutableColor {
+    /** The red component */
+    private double r;
+    /** The green component */
+    private double g;
+    /** The blue component */
+    private double b;
+
+    /**
+     * Sets the components of the accumulator to a color.
+     *
+     * @param color the color
+     * @return the accumulator itself
+     */
+    public MutableColor set(Color color) {
+        r = color.getRed();
+        g = color.getGreen();
+        b = color.getBlue();
+        return this;
+    }
+
+    /**
+     * Adds a color to the accumulator, as {@link Color#add(Color...)}.
+     *
+     * @param color the color to add
+     * @return the accumulator itself
+     */
+    public MutableColor add(Color color) {
+        r += color.getRed();
+        g += color.getGreen();
+        b += color.getBlue();
+        return this;
+    }
+
+    /**
+     * Adds a color scaled by a triad to the accumulator, as {@code add(color.scale(k))}.
+     *
+     * @param color the color to add
+     * @param k     the scale factor per rgb
+     * @return the accumulator itself
+     */
+    public MutableColor add(Color color, Double3 k) {
+        r += color.getRed() * k.d1;
+        g += color.getGreen() * k.d2;
+        b += color.getBlue() * k.d3;
+        return this;
+    }
+
+    /**
+     * Adds another accumulator scaled by a triad to the accumulator.
+     *
+     * @param color the accumulator to add
+     * @param k     the scale factor per rgb
+     * @return the accumulator itself
+     */
+    public MutableColor add(MutableColor color, Double3 k) {
+        r += color.r * k.d1;
+        g += color.g * k.d2;
+        b += color.b * k.d3;
+        return this;
+    }
+
+    /**
+     * Adds the diffuse and specular reflections of a light to the accumulator, as
+     * {@code add(iL.scale(kD.scale(diffuse)), iL.scale(kS.scale(specular)))} where
+     * {@code iL = intensity.scale(ktr)}.
+     *
+     * @param intensity the intensity of the light
+     * @param ktr       the transparency of the way to the light
+     * @param kD        the diffuse coefficient
+     * @param diffuse   the diffuse factor
+     * @param kS        the specular coefficient
+     * @param specular  the specular factor
+     * @return the accumulator itself
+     */
+    public MutableColor addLight(Color intensity, Double3 ktr, Double3 kD, double diffuse, Double3 kS, double specular) {
+        double ir = intensity.getRed() * ktr.d1;
+        double ig = intensity.getGreen() * ktr.d2;
+        double ib = intensity.getBlue() * ktr.d3;
+        r = r + ir * (kD.d1 * diffuse) + ir * (kS.d1 * specular);
+        g = g + ig * (kD.d2 * diffuse) + ig * (kS.d2 * specular);
+        b = b + ib * (kD.d3 * diffuse) + ib * (kS.d3 * specular);
+        return this;
+    }
+
+    /**
+     * Creates an immutable color of the accumulated components.
+     *
+     * @return the color
+     */
+    public Color toColor() {
+        return new Color(r, g, b);
+    }
+}
@@ -21,11 +21,23 @@ public class Ray {
      */
     final Vector direction;
 
+    /**
+     * Reciprocals of the direction's coordinates, cached for multiply-only slab tests of bounding boxes.
+     * A zero coordinate has an infinite reciprocal (of the zero's sign).
+     */
+    private final double inverseX, inverseY, inverseZ;
+
+    /**
+     * Sign bits of the direction's coordinates - 1 if the coordinate is negative (or -0), 0 otherwise.
+     * A bounding box stored as min x,y,z followed by max x,y,z is entered on the side at offset {@code 3 * sign}.
+     */
+    private final int signX, signY, signZ;
+
     /**
      * Small constant used for offsetting rays slightly from intersection points to prevent self-shadowing artifacts.
      * Adjusting this value can affect the smoothness of shadows and specular highlights in the rendered scene.
      */
-    private static final double DELTA = 0.1;
+    public static final double DELTA = 0.1;
 
     /**
      * Constructs a new Ray with the specified head and direction.
@@ -36,6 +48,12 @@ public class Ray {
     public Ray(Point head, Vector direction) {
         this.head = head;
         this.direction = direction.normalize();
+        inverseX = 1 / this.direction.getX();
+        inverseY = 1 / this.direction.getY();
+        inverseZ = 1 / this.direction.getZ();
+        signX = inverseX < 0 ? 1 : 0;
+        signY = inverseY < 0 ? 1 : 0;
+        signZ = inverseZ < 0 ? 1 : 0;
     }
 
     /**
@@ -47,15 +65,24 @@ public class Ray {
      * @param normal    The normal vector at the intersection point.
      */
     public Ray(Point head, Vector direction, Vector normal) {
+        this(offsetHead(head, direction, normal), direction);
+    }
 
+    /**
+     * Moves a point slightly along the normal, to the side the direction points to.
+     *
+     * @param head      The starting point of the ray.
+     * @param direction The direction of the ray.
+     * @param normal    The normal vector at the intersection point.
+     * @return the moved point
+     */
+    private static Point offsetHead(Point head, Vector direction, Vector normal) {
         if (isZero(normal.dotProduct(direction)))
-            this.head = head.add(normal.scale(DELTA));
+            return head.add(normal.scale(DELTA));
         else if (normal.dotProduct(direction) > 0)
-            this.head = head.add(normal.scale(DELTA));
+            return head.add(normal.scale(DELTA));
         else
-            this.head = head.add(normal.scale(-DELTA));
-
-        this.direction = direction.normalize();
+            return head.add(normal.scale(-DELTA));
     }
 
 
@@ -81,6 +108,60 @@ public class Ray {
         return direction;
     }
 
+    /**
+     * Gets the reciprocal of the direction's x coordinate.
+     *
+     * @return 1 / direction.x, infinite if the coordinate is zero
+     */
+    public double getInverseX() {
+        return inverseX;
+    }
+
+    /**
+     * Gets the reciprocal of the direction's y coordinate.
+     *
+     * @return 1 / direction.y, infinite if the coordinate is zero
+     */
+    public double getInverseY() {
+        return inverseY;
+    }
+
+    /**
+     * Gets the reciprocal of the direction's z coordinate.
+     *
+     * @return 1 / direction.z, infinite if the coordinate is zero
+     */
+    public double getInverseZ() {
+        return inverseZ;
+    }
+
+    /**
+     * Gets the sign bit of the direction's x coordinate.
+     *
+     * @return 1 if the coordinate is negative, 0 otherwise
+     */
+    public int getSignX() {
+        return signX;
+    }
+
+    /**
+     * Gets the sign bit of the direction's y coordinate.
+     *
+     * @return 1 if the coordinate is negative, 0 otherwise
+     */
+    public int getSignY() {
+        return signY;
+    }
+
+    /**
+     * Gets the sign bit of the direction's z coordinate.
+     *
+     * @return 1 if the coordinate is negative, 0 otherwise
+     */
+    public int getSignZ() {
+        return signZ;
+    }
+
     /**
      * Calculates a point on the Ray at a distance given by parameter t.
      *
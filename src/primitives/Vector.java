@@ -31,7 +31,7 @@ public class Vector extends Point {
      */
     public Vector(Double3 xyz) {
         super(xyz);
-        if (xyz.equals(Double3.ZERO)) {
+        if (xyz.isAlmostZero()) {
             throw new IllegalArgumentException("Vector can't be zero!");
         }
     }
@@ -45,7 +45,7 @@ public class Vector extends Point {
     public Vector add(Vector v1) {
         Double3 val = xyz.add(v1.xyz);
 
-        if (val.equals(Double3.ZERO)) {
+        if (val.isAlmostZero()) {
             throw new IllegalArgumentException("adding the opposite vectors get vector ZERO!");
         }
 
@@ -119,7 +119,8 @@ public class Vector extends Point {
      * @return The normalized vector.
      */
     public Vector normalize() {
-        return new Vector(xyz.d1 / length(), xyz.d2 / length(), xyz.d3 / length());
+        double length = length();
+        return new Vector(xyz.d1 / length, xyz.d2 / length, xyz.d3 / length);
     }
 
     /**
@@ -2,6 +2,7 @@ package renderer;
 
 import primitives.*;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.MissingResourceException;
 import java.util.stream.IntStream;
@@ -29,11 +30,23 @@ public class Camera implements Cloneable {
     private boolean useDepthOfField = false; // Indicates if depth of field effects are enabled.
     private double focalLength = 1000; // The focal length for depth of field effects.
     private double apertureSize = 1; // The size of the aperture for depth of field effects.
+    private int dofMinSamples = 4; // The amount of aperture rays per pixel before checking convergence.
+    private int dofMaxSamples = 64; // The maximum amount of aperture rays per pixel.
+    private double dofThreshold = 1; // The standard error of a color component (0..255) the pixel converges to.
+
+    // adaptive supersampling antialiasing
+    private int superSamplingLevel = 0; // Maximum subdivision levels of a pixel, 0 for a single ray per pixel.
+    private double superSamplingThreshold = 4; // Maximum difference of color components within a smooth area.
+
+    // sampling of the stochastic effects
+    private Sampler.Sequence sampleSequence = Sampler.Sequence.RANDOM; // The sequence of the samples.
+    private long seed = 0; // The seed of the samples, each tile is seeded by it and the tile's position.
 
     // new parameter for multithreading
     private int threadsCount = 0; // -2 auto, -1 range, 0 no threads, 1+ number of threads
     private final int SPARE_THREADS = 2; // Spare threads if trying to use all the cores
     private double printInterval = 0; // printing progress percentage interval
+    private ProgressListener progressListener = null; // listener of the rendering progress
     private PixelManager pixelManager; // pixel manager for multithreading
 
     /**
@@ -125,25 +138,44 @@ public class Camera implements Cloneable {
      * @return The constructed Ray.
      */
     public Ray constructRay(int nX, int nY, int j, int i) {
-        Point pC = location.add(vTo.scale(distance));
+        return constructRay(nX, nY, (double) j, (double) i);
+    }
 
+    /**
+     * Constructs a ray from the camera through a point of the view plane given in pixel units -
+     * the center of pixel (i,j) is at (j,i) and its corners are half a pixel away.
+     *
+     * @param nX Number of pixels in the x direction.
+     * @param nY Number of pixels in the y direction.
+     * @param j The column coordinate of the point.
+     * @param i The row coordinate of the point.
+     * @return The constructed Ray.
+     */
+    private Ray constructRay(int nX, int nY, double j, double i) {
         double rY = height / nY;
         double rX = width / nX;
 
         double yi = alignZero(-(i - (nY - 1) / 2d) * rY);
         double xj =alignZero( (j - (nX - 1) / 2d) * rX);
 
-        Point pIJ = pC;
+        // pIJ = location + vTo * distance + vRight * xj + vUp * yi, in plain coordinates
+        double x = location.getX() + vTo.getX() * distance;
+        double y = location.getY() + vTo.getY() * distance;
+        double z = location.getZ() + vTo.getZ() * distance;
 
         if (!isZero(xj)) {
-            pIJ = pIJ.add(vRight.scale(xj));
+            x += vRight.getX() * xj;
+            y += vRight.getY() * xj;
+            z += vRight.getZ() * xj;
         }
 
         if (!isZero(yi)) {
-            pIJ = pIJ.add(vUp.scale(yi));
+            x += vUp.getX() * yi;
+            y += vUp.getY() * yi;
+            z += vUp.getZ() * yi;
         }
 
-        return new Ray(location, pIJ.subtract(location));
+        return new Ray(location, new Vector(x - location.getX(), y - location.getY(), z - location.getZ()));
     }
 
     /**
@@ -187,31 +219,33 @@ public class Camera implements Cloneable {
         if (imageWriter == null) {
             throw new MissingResourceException("Missing parameter", "Camera", "imageWriter");
         }
+        // the render threads share a fresh read-only snapshot of the scene
+        rayTracer.compile();
         int nX = imageWriter.getNx();
         int nY = imageWriter.getNy();
-        pixelManager = new PixelManager(nY, nX, printInterval);
+        ProgressListener listener = progressListener != null ? progressListener
+                : printInterval != 0 ? ProgressListener.CONSOLE : null;
+        pixelManager = new PixelManager(nY, nX, printInterval, listener);
         if(threadsCount == 0) {
-            for (int i = 0; i < nY; ++i) {
-                for (int j = 0; j < nX; ++j) {
-                    castRay(nX, nY, j, i);
-                }
-            }
+            PixelManager.Tile tile;
+            while ((tile = pixelManager.nextTile()) != null)
+                renderTile(nX, nY, tile);
         }
         else if (threadsCount == -1){
-            IntStream.range(0, nY).parallel()
-                    .forEach(i -> IntStream.range(0, nX).parallel() // for each row:
-                            .forEach(j -> castRay(nX, nY, j, i))); // for each column in row
+            // the tiles are spread over the fork/join pool, whose idle threads steal the remaining ones
+            IntStream.range(0, pixelManager.tileCount()).parallel()
+                    .forEach(t -> renderTile(nX, nY, pixelManager.tile(t)));
         }
 
         else {
             var threads = new LinkedList<Thread>(); // list of threads
-            while (threadsCount-- > 0) // add appropriate number of threads
+            for (int t = 0; t < threadsCount; ++t) // add appropriate number of threads
                 threads.add(new Thread(() -> { // add a thread with its code
-                    PixelManager.Pixel pixel; // current pixel(row,col)
-                    // allocate pixel(row,col) in loop until there are no more pixels
-                    while ((pixel = pixelManager.nextPixel()) != null)
-                        // cast ray through pixel (and color it – inside castRay)
-                        castRay(nX, nY, pixel.col(), pixel.row());
+                    PixelManager.Tile tile; // current tile of pixels
+                    // allocate tiles in loop until there are no more tiles
+                    while ((tile = pixelManager.nextTile()) != null)
+                        // cast rays through the tile's pixels (and color them – inside castRay)
+                        renderTile(nX, nY, tile);
                 }));
             // start all the threads
             for (var thread : threads) thread.start();
@@ -222,6 +256,151 @@ public class Camera implements Cloneable {
 
     }
 
+    /**
+     * Casts the rays of all the pixels of a tile, row by row.
+     *
+     * @param nX   The number of pixels in the x direction.
+     * @param nY   The number of pixels in the y direction.
+     * @param tile The tile to render.
+     */
+    private void renderTile(int nX, int nY, PixelManager.Tile tile) {
+        // the scratch state of the tracer is reused by all the rays of the tile, and its
+        // sampler is seeded by the tile so that the stochastic effects are reproducible
+        Sampler sampler = Sampler.forTile(sampleSequence, seed, tile.fromCol(), tile.fromRow());
+        SimpleRayTracer.Context context = new SimpleRayTracer.Context(sampler);
+        if (superSamplingLevel > 0 && !useDepthOfField) {
+            renderTileAdaptive(nX, nY, tile, context);
+        } else {
+            for (int i = tile.fromRow(); i < tile.toRow(); ++i)
+                for (int j = tile.fromCol(); j < tile.toCol(); ++j)
+                    castRay(nX, nY, j, i, sampler, context);
+        }
+        pixelManager.tileDone(tile);
+    }
+
+    /**
+     * Renders the pixels of a tile by adaptive supersampling.<br/>
+     * The colors at the corners of the pixels are traced once for the whole tile, so a smooth
+     * pixel costs a single ray on average. A pixel whose corners differ is split into 4
+     * sub-pixels recursively (up to the maximum level), reusing the corners shared between the
+     * sub-pixels.
+     *
+     * @param nX   The number of pixels in the x direction.
+     * @param nY   The number of pixels in the y direction.
+     * @param tile The tile to render.
+     * @param context The scratch state of the tracer.
+     */
+    private void renderTileAdaptive(int nX, int nY, PixelManager.Tile tile, SimpleRayTracer.Context context) {
+        int width = tile.toCol() - tile.fromCol() + 1;
+        Color[] corners = new Color[width * (tile.toRow() - tile.fromRow() + 1)];
+        int size = 1 << superSamplingLevel;
+        Color[] grid = new Color[(size + 1) * (size + 1)];
+        for (int i = tile.fromRow(); i < tile.toRow(); ++i)
+            for (int j = tile.fromCol(); j < tile.toCol(); ++j) {
+                Arrays.fill(grid, null);
+                int corner = (i - tile.fromRow()) * width + j - tile.fromCol();
+                grid[0] = corner(nX, nY, corners, corner, j, i, context);
+                grid[size] = corner(nX, nY, corners, corner + 1, j + 1, i, context);
+                grid[size * (size + 1)] = corner(nX, nY, corners, corner + width, j, i + 1, context);
+                grid[grid.length - 1] = corner(nX, nY, corners, corner + width + 1, j + 1, i + 1, context);
+                imageWriter.writePixel(j, i, superSample(nX, nY, j, i, grid, size, 0, 0, size, context));
+            }
+    }
+
+    /**
+     * Gets the color at a corner of the pixels of a tile, tracing it if it is not traced yet.
+     *
+     * @param nX      The number of pixels in the x direction.
+     * @param nY      The number of pixels in the y direction.
+     * @param corners The colors of the corners of the tile.
+     * @param index   The index of the corner in the tile.
+     * @param j       The column of the pixel the corner is at the top left of.
+     * @param i       The row of the pixel the corner is at the top left of.
+     * @param context The scratch state of the tracer.
+     * @return The color at the corner.
+     */
+    private Color corner(int nX, int nY, Color[] corners, int index, int j, int i, SimpleRayTracer.Context context) {
+        if (corners[index] == null)
+            corners[index] = rayTracer.traceRay(constructRay(nX, nY, j - 0.5, i - 0.5), context);
+        return corners[index];
+    }
+
+    /**
+     * Calculates the average color of a square area of a pixel. The area is split into 4
+     * if the colors at its corners differ by more than the threshold.
+     *
+     * @param nX     The number of pixels in the x direction.
+     * @param nY     The number of pixels in the y direction.
+     * @param column The column of the pixel.
+     * @param row    The row of the pixel.
+     * @param grid   The colors traced in the pixel so far, on a grid of the finest subdivision.
+     * @param size   The amount of grid cells along a side of the pixel.
+     * @param x      The grid column of the top left corner of the area.
+     * @param y      The grid row of the top left corner of the area.
+     * @param step   The amount of grid cells along a side of the area.
+     * @param context The scratch state of the tracer.
+     * @return The average color of the area.
+     */
+    private Color superSample(int nX, int nY, int column, int row, Color[] grid, int size, int x, int y, int step,
+                              SimpleRayTracer.Context context) {
+        Color c00 = gridColor(nX, nY, column, row, grid, size, x, y, context);
+        Color c10 = gridColor(nX, nY, column, row, grid, size, x + step, y, context);
+        Color c01 = gridColor(nX, nY, column, row, grid, size, x, y + step, context);
+        Color c11 = gridColor(nX, nY, column, row, grid, size, x + step, y + step, context);
+        if (step == 1 || isSmooth(c00, c10, c01, c11))
+            return c00.add(c10, c01, c11).reduce(4);
+        int half = step / 2;
+        return superSample(nX, nY, column, row, grid, size, x, y, half, context)
+                .add(superSample(nX, nY, column, row, grid, size, x + half, y, half, context),
+                        superSample(nX, nY, column, row, grid, size, x, y + half, half, context),
+                        superSample(nX, nY, column, row, grid, size, x + half, y + half, half, context))
+                .reduce(4);
+    }
+
+    /**
+     * Gets the color at a point of the grid of a pixel, tracing it if it is not traced yet.
+     *
+     * @param nX     The number of pixels in the x direction.
+     * @param nY     The number of pixels in the y direction.
+     * @param column The column of the pixel.
+     * @param row    The row of the pixel.
+     * @param grid   The colors traced in the pixel so far.
+     * @param size   The amount of grid cells along a side of the pixel.
+     * @param x      The grid column of the point.
+     * @param y      The grid row of the point.
+     * @param context The scratch state of the tracer.
+     * @return The color at the point.
+     */
+    private Color gridColor(int nX, int nY, int column, int row, Color[] grid, int size, int x, int y,
+                            SimpleRayTracer.Context context) {
+        int index = y * (size + 1) + x;
+        if (grid[index] == null)
+            grid[index] = rayTracer.traceRay(constructRay(nX, nY,
+                    column - 0.5 + (double) x / size, row - 0.5 + (double) y / size), context);
+        return grid[index];
+    }
+
+    /**
+     * Checks whether the colors at the corners of an area are close enough to be averaged.
+     *
+     * @param colors The colors at the corners.
+     * @return True if each component differs by no more than the threshold.
+     */
+    private boolean isSmooth(Color... colors) {
+        double minR = Double.POSITIVE_INFINITY, minG = Double.POSITIVE_INFINITY, minB = Double.POSITIVE_INFINITY;
+        double maxR = 0, maxG = 0, maxB = 0;
+        for (Color color : colors) {
+            minR = Math.min(minR, color.getRed());
+            maxR = Math.max(maxR, color.getRed());
+            minG = Math.min(minG, color.getGreen());
+            maxG = Math.max(maxG, color.getGreen());
+            minB = Math.min(minB, color.getBlue());
+            maxB = Math.max(maxB, color.getBlue());
+        }
+        return maxR - minR <= superSamplingThreshold && maxG - minG <= superSamplingThreshold
+                && maxB - minB <= superSamplingThreshold;
+    }
+
     /**
      * Casts a ray for a specific pixel and writes the pixel color to the image.
      * If depth of field (DoF) is enabled, averages colors of multiple rays.
@@ -230,25 +409,61 @@ public class Camera implements Cloneable {
      * @param Ny The number of pixels in the y direction.
      * @param column The column index of the pixel.
      * @param row The row index of the pixel.
+     * @param sampler The sampler of the pixel's tile, used only with DoF.
+     * @param context The scratch state of the tracer.
      */
-    private void castRay(int Nx, int Ny, int column, int row) {
+    private void castRay(int Nx, int Ny, int column, int row, Sampler sampler, SimpleRayTracer.Context context) {
         if (!useDepthOfField) {
-            imageWriter.writePixel(column, row, rayTracer.traceRay(constructRay(imageWriter.getNx(), imageWriter.getNy(), column, row)));
-            pixelManager.pixelDone();
+            imageWriter.writePixel(column, row, rayTracer.traceRay(constructRay(imageWriter.getNx(), imageWriter.getNy(), column, row), context));
             return;
         }
 
-        // If using DoF, average the colors of multiple rays
-        int numRays = 10;  // Number of rays to cast per pixel for DoF
-        Color averageColor = Color.BLACK;
-        for (int i = 0; i < numRays; i++) {
-            Ray ray = constructRayDoF(Nx, Ny, column, row);
-            Color color = rayTracer.traceRay(ray);
-            averageColor = averageColor.add(color);
-        }
-        averageColor = averageColor.reduce(numRays);
-        imageWriter.writePixel(column, row, averageColor);
-        pixelManager.pixelDone();
+        // If using DoF, average the colors of aperture rays until the average converges:
+        // the running mean and the sum of squared deviations (Welford) estimate the error of the mean
+        double[] mean = new double[3];
+        double[] deviations = new double[3];
+        double[] sample = new double[2];
+        sampler.startPixel();
+        int count = 0;
+        do {
+            sampler.next2D(sample);
+            Color color = rayTracer.traceRay(constructRayDoF(Nx, Ny, column, row, sample), context);
+            ++count;
+            accumulate(mean, deviations, 0, color.getRed(), count);
+            accumulate(mean, deviations, 1, color.getGreen(), count);
+            accumulate(mean, deviations, 2, color.getBlue(), count);
+        } while (count < dofMaxSamples && (count < dofMinSamples || !isConverged(deviations, count)));
+        imageWriter.writePixel(column, row, new Color(mean[0], mean[1], mean[2]));
+    }
+
+    /**
+     * Adds a sample to the running mean and sum of squared deviations of a color component.
+     *
+     * @param mean       The means of the components.
+     * @param deviations The sums of squared deviations from the means of the components.
+     * @param component  The index of the component.
+     * @param value      The value of the component in the sample.
+     * @param count      The amount of samples including this one.
+     */
+    private static void accumulate(double[] mean, double[] deviations, int component, double value, int count) {
+        double delta = value - mean[component];
+        mean[component] += delta / count;
+        deviations[component] += delta * (value - mean[component]);
+    }
+
+    /**
+     * Checks whether the mean of the samples of a pixel is estimated to be within the DoF
+     * threshold from the pixel's color - the standard error of each component is small enough.
+     *
+     * @param deviations The sums of squared deviations from the means of the components.
+     * @param count      The amount of samples.
+     * @return True if the mean has converged.
+     */
+    private boolean isConverged(double[] deviations, int count) {
+        if (count < 2) return false;
+        // the squared standard error of the mean is the sample variance divided by the amount of samples
+        double limit = dofThreshold * dofThreshold * (count - 1) * count;
+        return deviations[0] <= limit && deviations[1] <= limit && deviations[2] <= limit;
     }
 
     /**
@@ -258,16 +473,17 @@ public class Camera implements Cloneable {
      * @param nY Number of pixels in the y direction.
      * @param j The pixel's column index.
      * @param i The pixel's row index.
+     * @param sample The sample of the aperture in the unit square.
      * @return The constructed Ray with DoF effect.
      */
-    private Ray constructRayDoF(int nX, int nY, int j, int i) {
+    private Ray constructRayDoF(int nX, int nY, int j, int i, double[] sample) {
         Ray primaryRay = constructRay(nX, nY, j, i);
         if (!useDepthOfField) {
             return primaryRay;
         }
         Point focalPoint = primaryRay.getPoint(focalLength);
-        double r = Math.sqrt(Math.random()) * apertureSize / 2;
-        double theta = Math.random() * 2 * Math.PI;
+        double r = Math.sqrt(sample[0]) * apertureSize / 2;
+        double theta = sample[1] * 2 * Math.PI;
         double xShift = r * Math.cos(theta);
         double yShift = r * Math.sin(theta);
         Point aperturePoint = location.add(vRight.scale(xShift)).add(vUp.scale(yShift));
@@ -382,6 +598,73 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets the adaptive sampling of the aperture for depth of field (DoF) effects.
+         * Each pixel casts at least the minimum amount of rays, and keeps adding rays until the
+         * estimated standard error of its color is within the threshold or the maximum amount is reached.
+         * In-focus areas converge after the minimum, while the blurred areas get more rays.
+         *
+         * @param minSamples The minimum amount of rays per pixel.
+         * @param maxSamples The maximum amount of rays per pixel.
+         * @param threshold  The standard error of each color component (0..255) to converge to.
+         * @return The builder instance.
+         * @throws IllegalArgumentException if the minimum is not positive, the maximum is below the minimum
+         *                                  or the threshold is negative.
+         */
+        public Builder setDepthOfFieldSamples(int minSamples, int maxSamples, double threshold) {
+            if (minSamples < 1) throw new IllegalArgumentException("DoF must cast at least one ray per pixel");
+            if (maxSamples < minSamples)
+                throw new IllegalArgumentException("DoF maximum samples must not be below the minimum");
+            if (threshold < 0) throw new IllegalArgumentException("DoF threshold must not be negative");
+            camera.dofMinSamples = minSamples;
+            camera.dofMaxSamples = maxSamples;
+            camera.dofThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets adaptive supersampling antialiasing. The corners of each pixel are sampled
+         * (and shared with the neighboring pixels), and a pixel is split into 4 sub-pixels
+         * recursively while the colors at the corners of a sub-pixel differ by more than the
+         * threshold. Level 3 samples an edge pixel by up to 9x9 rays.
+         * Applies to the pinhole camera - not together with DoF.
+         *
+         * @param level     The maximum subdivision level, 0 to disable supersampling.
+         * @param threshold The maximum difference of each color component (0..255) within a smooth area.
+         * @return The builder instance.
+         * @throws IllegalArgumentException if the level is negative or above 8, or the threshold is negative.
+         */
+        public Builder setAdaptiveSuperSampling(int level, double threshold) {
+            if (level < 0 || level > 8) throw new IllegalArgumentException("Supersampling level must be 0..8");
+            if (threshold < 0) throw new IllegalArgumentException("Supersampling threshold must not be negative");
+            camera.superSamplingLevel = level;
+            camera.superSamplingThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the sequence of the samples of the stochastic effects (DoF).
+         *
+         * @param sampleSequence The sequence of the samples.
+         * @return The builder instance.
+         */
+        public Builder setSampleSequence(Sampler.Sequence sampleSequence) {
+            camera.sampleSequence = sampleSequence;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the samples of the stochastic effects (DoF and the Russian roulette of the ray tracer).
+         * An image rendered with the same seed is the same regardless of the multithreading.
+         *
+         * @param seed The seed.
+         * @return The builder instance.
+         */
+        public Builder setSeed(long seed) {
+            camera.seed = seed;
+            return this;
+        }
+
         /**
          * Sets the number of threads to be used for rendering.
          *
@@ -415,6 +698,19 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets a listener of the rendering progress instead of printing it to the console.
+         * The listener is called with the interval set by {@link #setDebugPrint(double)},
+         * or on each rendered tile if there is no interval.
+         *
+         * @param progressListener The listener, or null for no listener.
+         * @return The builder instance.
+         */
+        public Builder setProgressListener(ProgressListener progressListener) {
+            camera.progressListener = progressListener;
+            return this;
+        }
+
         /**
          * Rotates the camera around the Z-axis by a specified angle.
          *
@@ -4,6 +4,7 @@ import primitives.Color;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -13,11 +14,28 @@ import java.util.logging.Logger;
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible for holding image related parameters of View Plane - pixel matrix
- * size and resolution
+ * size and resolution<br/>
+ * The pixels are accumulated in a high dynamic range framebuffer of single precision RGB
+ * components, which the render threads write without locks - each into its own pixels.
+ * When the image is written, a tone mapping pass converts the whole framebuffer at once
+ * into the 8 bit levels of the image, scaled by the exposure.
  *
  * @author Dan
  */
 public class ImageWriter {
+    /** The operators mapping the high dynamic range colors into the levels of the image */
+    public enum ToneMapping {
+        /** Cut the components above the highest level, as the colors have always been written */
+        CLAMP,
+        /** Compress all the range smoothly by the Reinhard operator {@code x / (1 + x)} */
+        REINHARD,
+        /** Compress the range by the filmic curve of ACES (fitted by Narkowicz) */
+        ACES
+    }
+
+    /** The highest level of a color component in the image */
+    private static final int MAX_LEVEL = 255;
+
     /**
      * Directory path for the image file generation - relative to the user
      * directory
@@ -39,6 +57,18 @@ public class ImageWriter {
      * image file name, not including the file extension '.png'
      */
     private String imageName;
+    /**
+     * The high dynamic range framebuffer - red, green and blue of each pixel, row after row
+     */
+    private final float[] pixels;
+    /**
+     * The tone mapping operator of the image
+     */
+    private ToneMapping toneMapping = ToneMapping.CLAMP;
+    /**
+     * The factor the colors are scaled by before tone mapping
+     */
+    private double exposure = 1;
     /**
      * logger for reporting I/O failures
      */
@@ -59,6 +89,7 @@ public class ImageWriter {
         this.nY = nY;
 
         image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        pixels = new float[3 * nX * nY];
     }
 
     // ***************** Getters/Setters ********************** //
@@ -81,6 +112,30 @@ public class ImageWriter {
         return nX;
     }
 
+    /**
+     * Sets the tone mapping operator of the image.
+     *
+     * @param toneMapping the tone mapping operator
+     * @return the image writer itself
+     */
+    public ImageWriter setToneMapping(ToneMapping toneMapping) {
+        this.toneMapping = toneMapping;
+        return this;
+    }
+
+    /**
+     * Sets the exposure - the factor the colors are scaled by before tone mapping.
+     *
+     * @param exposure the exposure
+     * @return the image writer itself
+     * @throws IllegalArgumentException if the exposure is not positive
+     */
+    public ImageWriter setExposure(double exposure) {
+        if (!(exposure > 0)) throw new IllegalArgumentException("The exposure must be positive");
+        this.exposure = exposure;
+        return this;
+    }
+
     // ***************** Operations ******************** //
 
     /**
@@ -89,6 +144,7 @@ public class ImageWriter {
      * pixel color matrix in the directory of the project
      */
     public void writeToImage() {
+        toneMap();
         try {
             File file = new File(FOLDER_PATH + '/' + imageName + ".png");
             ImageIO.write(image, "png", file);
@@ -107,8 +163,81 @@ public class ImageWriter {
      * @param color  final color of the pixel
      */
     public void writePixel(int xIndex, int yIndex, Color color) {
-        image.setRGB(xIndex, yIndex, color.getColor().getRGB());
+        int index = 3 * (yIndex * nX + xIndex);
+        pixels[index] = toFloat(color.getRed());
+        pixels[index + 1] = toFloat(color.getGreen());
+        pixels[index + 2] = toFloat(color.getBlue());
     }
 
-}
+    /**
+     * Adds a color to the color of a specific pixel in the pixel color matrix, for accumulating
+     * the samples of several passes
+     *
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @param color  the color to add
+     */
+    public void addPixel(int xIndex, int yIndex, Color color) {
+        int index = 3 * (yIndex * nX + xIndex);
+        pixels[index] = toFloat(pixels[index] + color.getRed());
+        pixels[index + 1] = toFloat(pixels[index + 1] + color.getGreen());
+        pixels[index + 2] = toFloat(pixels[index + 2] + color.getBlue());
+    }
+
+    /**
+     * Gets the high dynamic range color of a specific pixel in the pixel color matrix
+     *
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the color of the pixel, before tone mapping
+     */
+    public Color getPixel(int xIndex, int yIndex) {
+        int index = 3 * (yIndex * nX + xIndex);
+        return new Color(pixels[index], pixels[index + 1], pixels[index + 2]);
+    }
+
+    /**
+     * Rounds a color component down to single precision, so that a component just below a level
+     * is never rounded up into the next level, and the levels stay as with double precision.
+     *
+     * @param value the component
+     * @return the rounded component
+     */
+    private static float toFloat(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
 
+    /**
+     * Converts the whole framebuffer into the levels of the image in one pass over the raster,
+     * by the exposure and the tone mapping operator
+     *
+     * @return the raster of the image - the packed RGB levels of the pixels, row after row
+     */
+    int[] toneMap() {
+        int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int pixel = 0, index = 0; pixel < raster.length; ++pixel, index += 3)
+            raster[pixel] = level(pixels[index]) << 16 | level(pixels[index + 1]) << 8 | level(pixels[index + 2]);
+        return raster;
+    }
+
+    /**
+     * Maps a color component into a level of the image. The levels are truncated as by
+     * {@link Color#getColor()}.
+     *
+     * @param value the component, 0..255 for printed colors or more
+     * @return the level, 0..255
+     */
+    private int level(float value) {
+        double x = value * exposure;
+        if (toneMapping == ToneMapping.REINHARD)
+            x = MAX_LEVEL * x / (x + MAX_LEVEL);
+        else if (toneMapping == ToneMapping.ACES) {
+            double y = x / MAX_LEVEL;
+            x = MAX_LEVEL * y * (2.51 * y + 0.03) / (y * (2.43 * y + 0.59) + 0.14);
+        }
+        int level = (int) x;
+        return level > MAX_LEVEL ? MAX_LEVEL : level;
+    }
+
+}
@@ -1,81 +1,136 @@
 package renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 /** PixelManager is a helper class. It is used for multi-threading in the renderer and
  * for follow up its progress.<br/>
- * A Camera uses one pixel manager object and several Pixel objects - one in each thread.
+ * The image is split into square tiles which are handed out to the threads from a lock-free
+ * counter, in Morton (Z-curve) order so that consecutive tiles are close to each other in the
+ * scene and share the cached parts of its geometry.
+ * The progress is counted once per tile in a striped counter, and reported to a
+ * {@link ProgressListener} outside of any lock.
+ * A Camera uses one pixel manager object and several Tile objects - one in each thread.
  * @author Dan Zilberstein
  */
 class PixelManager {
-    /** Immutable class for object containing allocated pixel (with its row and column numbers) */
-    record Pixel(int col, int row) {}
+    /** Immutable class for object containing allocated tile of pixels (from inclusive, to exclusive) */
+    record Tile(int fromCol, int fromRow, int toCol, int toRow) {}
+    /** The side of a square tile in pixels */
+    static final int TILE_SIZE = 32;
     /** Maximum rows of pixels */
     private int maxRows = 0;
     /** Maximum columns of pixels */
     private int maxCols = 0;
     /** Total amount of pixels in the generated image */
     private long totalPixels = 0l;
-    /** Currently processed row of pixels */
-    private volatile int cRow = 0;
-    /** Currently processed column of pixels */
-    private volatile int cCol = -1;
+    /** The tiles in Morton order - the tile row in the high 16 bits, the tile column in the low 16 bits */
+    private final int[] tiles;
+    /** The index of the next tile to hand out */
+    private final AtomicInteger nextTile = new AtomicInteger();
     /** Amount of pixels that have been processed */
-    private volatile long pixels = 0l;
-    /** Last printed progress update percentage */
-    private volatile int lastPrinted = 0;
-    /** Flag of debug printing of progress percentage */
-    private boolean print = false;
-    /** Progress percentage printing interval */
-    private long printInterval = 100l;
-    /** Printing format */
-    private static final String PRINT_FORMAT = "%5.1f%%\r";
-    /** Mutual exclusion object for synchronizing next pixel allocation between threads */
-    private Object mutexNext = new Object();
-    /** Mutual exclusion object for printing progress percentage in console window by different threads */
-    private Object mutexPixels = new Object();
+    private final LongAdder pixels = new LongAdder();
+    /** Last reported progress in tenths of percent */
+    private final AtomicInteger lastPrinted = new AtomicInteger();
+    /** Progress listener, or null if the progress is not reported */
+    private final ProgressListener listener;
+    /** Progress reporting interval in tenths of percent */
+    private final int printInterval;
+    /** Initialize pixel manager data for multi-threading without progress reporting
+     * @param maxRows the amount of pixel rows
+     * @param maxCols the amount of pixel columns
+     */
+    PixelManager(int maxRows, int maxCols) {
+        this(maxRows, maxCols, 0, null);
+    }
     /** Initialize pixel manager data for multi-threading
      * @param maxRows the amount of pixel rows
      * @param maxCols the amount of pixel columns
-     * @param interval print time interval in seconds, 0 if printing is not required
+     * @param interval progress reporting interval in percents, 0 for reporting on each tile
+     * @param listener progress listener, null if reporting is not required
      */
-    PixelManager(int maxRows, int maxCols, double interval) {
+    PixelManager(int maxRows, int maxCols, double interval, ProgressListener listener) {
         this.maxRows = maxRows;
         this.maxCols = maxCols;
         totalPixels = (long) maxRows * maxCols;
+        tiles = mortonOrder((maxRows + TILE_SIZE - 1) / TILE_SIZE, (maxCols + TILE_SIZE - 1) / TILE_SIZE);
         printInterval = (int) (interval * 10);
-        if (print = printInterval != 0) System.out.printf(PRINT_FORMAT, 0d);
+        this.listener = listener;
+        if (listener != null) listener.progress(0);
     }
-    /** Function for thread-safe manipulating of main follow up Pixel object - this
-     * function is critical section for all the threads, and the pixel manager data
-     * is the shared data of this critical section.<br/>
-     * The function provides next available pixel number each call.
-     * @return true if next pixel is allocated, false if there are no more pixels
+    /** Orders the tiles of the image along the Morton (Z-order) curve - by interleaving
+     * the bits of their row and column numbers.
+     * @param tileRows the amount of tile rows
+     * @param tileCols the amount of tile columns
+     * @return the packed tiles in Morton order
      */
-    Pixel nextPixel() {
-        synchronized (mutexNext) {
-            if (cRow == maxRows) return null;
-            ++cCol;
-            if (cCol < maxCols)
-                return new Pixel(cRow, cCol);
-            cCol = 0;
-            ++cRow;
-            if (cRow < maxRows)
-                return new Pixel(cRow, cCol);
-        }
-        return null;
-    }
-    /** Finish pixel processing by updating and printing of progress percentage */
-    void pixelDone() {
-        boolean flag = false;
-        int percentage = 0;
-        synchronized (mutexPixels) {
-            ++pixels;
-            if (print) {
-                percentage = (int) (1000l * pixels / totalPixels);
-                if (percentage - lastPrinted >= printInterval) {
-                    lastPrinted = percentage;
-                    flag = true;
-                }
+    private static int[] mortonOrder(int tileRows, int tileCols) {
+        long[] codes = new long[tileRows * tileCols];
+        for (int row = 0; row < tileRows; ++row)
+            for (int col = 0; col < tileCols; ++col) {
+                int packed = row << 16 | col;
+                codes[row * tileCols + col] = (long) (interleave(row) << 1 | interleave(col)) << 32 | packed;
             }
-            if (flag) System.out.printf(PRINT_FORMAT, percentage / 10d);
-        }
+        Arrays.sort(codes);
+        int[] order = new int[codes.length];
+        for (int i = 0; i < codes.length; ++i) order[i] = (int) codes[i];
+        return order;
+    }
+    /** Spreads the 16 low bits of a number to the even bits of the result.
+     * @param n the number
+     * @return the number with a zero bit inserted above each of its bits
+     */
+    private static int interleave(int n) {
+        n &= 0xFFFF;
+        n = (n | n << 8) & 0x00FF00FF;
+        n = (n | n << 4) & 0x0F0F0F0F;
+        n = (n | n << 2) & 0x33333333;
+        return (n | n << 1) & 0x55555555;
+    }
+    /** Gets the amount of tiles the image is split into.
+     * @return the amount of tiles
+     */
+    int tileCount() {
+        return tiles.length;
+    }
+    /** Gets a tile by its position in the Morton order.
+     * @param index the position of the tile
+     * @return the tile, clipped to the image
+     */
+    Tile tile(int index) {
+        int row = tiles[index] >>> 16;
+        int col = tiles[index] & 0xFFFF;
+        return new Tile(col * TILE_SIZE, row * TILE_SIZE,
+                Math.min((col + 1) * TILE_SIZE, maxCols), Math.min((row + 1) * TILE_SIZE, maxRows));
+    }
+    /** Thread-safe allocation of the next tile - the threads share only an atomic counter,
+     * so there is no critical section to contend on.
+     * @return the next tile, or null if there are no more tiles
+     */
+    Tile nextTile() {
+        int index = nextTile.getAndIncrement();
+        return index < tiles.length ? tile(index) : null;
+    }
+    /** Finish tile processing by updating the progress and reporting it if it has advanced
+     * by the interval, or if the whole image is done. The last reported progress is advanced
+     * by a retried compare-and-set, so each percentage is reported once, by the thread that
+     * advanced it, and the completion is always reported.
+     * @param tile the processed tile
+     */
+    void tileDone(Tile tile) {
+        pixels.add((long) (tile.toCol() - tile.fromCol()) * (tile.toRow() - tile.fromRow()));
+        if (listener == null) return;
+        long done = pixels.sum();
+        int percentage = (int) (1000l * done / totalPixels);
+        int interval = Math.max(printInterval, 1);
+        int last;
+        do {
+            last = lastPrinted.get();
+            // another thread has already reported this progress or a later one
+            if (percentage <= last) return;
+            if (percentage - last < interval && done < totalPixels) return;
+        } while (!lastPrinted.compareAndSet(last, percentage));
+        listener.progress(percentage / 10d);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package renderer;
+
+/**
+ * Listener of the rendering progress of a camera.<br/>
+ * It is called by the rendering threads outside of any lock, so it should return quickly
+ * and be thread safe.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+    /** A listener printing the progress percentage over the same line of the console */
+    ProgressListener CONSOLE = percentage -> System.out.printf("%5.1f%%\r", percentage);
+
+    /**
+     * Reports the rendering progress.
+     *
+     * @param percentage the percentage of the rendered pixels (0 - 100)
+     */
+    void progress(double percentage);
+}
@@ -2,6 +2,7 @@ package renderer;
 
 import primitives.Color;
 import primitives.Ray;
+import scene.CompiledScene;
 import scene.Scene;
 
 /**
@@ -12,6 +13,7 @@ import scene.Scene;
 public abstract class RayTracerBase {
 
     protected final Scene scene;
+    private volatile CompiledScene compiled; // The render-time snapshot of the scene, compiled on first use
 
     /**
      * Constructs a new RayTracerBase with the specified scene.
@@ -44,6 +46,30 @@ public abstract class RayTracerBase {
         return Color.BLACK;
     }
 
+    /**
+     * Compiles the scene into a fresh render-time snapshot, to be called at the start of a render
+     * so that changes made to the scene since the last render are seen.
+     */
+    public void compile() {
+        compiled = scene.compile();
+    }
+
+    /**
+     * Returns the render-time snapshot of the scene, compiling it on first use.
+     *
+     * @return the compiled scene
+     */
+    protected CompiledScene compiled() {
+        CompiledScene result = compiled;
+        if (result == null) {
+            synchronized (this) {
+                result = compiled;
+                if (result == null) compiled = result = scene.compile();
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the scene associated with this ray tracer.
      *
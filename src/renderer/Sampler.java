@@ -0,0 +1,155 @@
+package renderer;
+
+import java.util.SplittableRandom;
+
+/**
+ * Sampler is a source of 2D samples in the unit square for the stochastic parts of the rendering
+ * (e.g. the lens of depth of field).<br/>
+ * A sampler is not thread safe - each rendering thread creates its own sampler for each tile,
+ * seeded by the tile's position, so there is no shared state between the threads and the
+ * image is reproducible for a fixed seed regardless of the threads' scheduling.<br/>
+ * The samples of a pixel are either pseudo-random or taken from a low-discrepancy sequence,
+ * which is shifted randomly for each pixel (Cranley-Patterson rotation) to avoid repeating
+ * patterns between the pixels.
+ */
+public final class Sampler {
+    /** The sequences of samples a sampler can generate */
+    public enum Sequence {
+        /** Independent uniform samples */
+        RANDOM,
+        /** The Halton sequence - radical inverses in bases 2 and 3 */
+        HALTON,
+        /** The first two dimensions of the Sobol sequence */
+        SOBOL
+    }
+
+    /** The golden ratio in 64 bits, used to spread consecutive seeds */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    /** Scale of a 32 bit fraction to a double in [0,1) */
+    private static final double INT_TO_UNIT = 0x1p-32;
+
+    /** The generated sequence */
+    private final Sequence sequence;
+    /** The generator of the random samples and of the rotations of the sequences */
+    private final SplittableRandom random;
+    /** The index of the next sample of the current pixel in the sequence */
+    private int index = 0;
+    /** The rotation of the current pixel's samples in x */
+    private double shiftX = 0;
+    /** The rotation of the current pixel's samples in y */
+    private double shiftY = 0;
+
+    /**
+     * Constructs a sampler.
+     *
+     * @param sequence the sequence of samples
+     * @param seed     the seed of the sampler
+     */
+    public Sampler(Sequence sequence, long seed) {
+        this.sequence = sequence;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Constructs a sampler for a tile of the image, seeded by the seed of the image and the
+     * position of the tile.
+     *
+     * @param sequence the sequence of samples
+     * @param seed     the seed of the image
+     * @param column   the first column of the tile
+     * @param row      the first row of the tile
+     * @return the sampler of the tile
+     */
+    public static Sampler forTile(Sequence sequence, long seed, int column, int row) {
+        return new Sampler(sequence, seed + GOLDEN_GAMMA * (((long) row << 32) + column + 1));
+    }
+
+    /**
+     * Starts the samples of a new pixel - restarts the sequence with a new random rotation.
+     *
+     * @return the sampler itself
+     */
+    public Sampler startPixel() {
+        index = 0;
+        if (sequence != Sequence.RANDOM) {
+            shiftX = random.nextDouble();
+            shiftY = random.nextDouble();
+        }
+        return this;
+    }
+
+    /**
+     * Gets a uniform random number in [0,1).
+     *
+     * @return the random number
+     */
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /**
+     * Gets the next sample of the current pixel.
+     *
+     * @param sample an array of 2 to fill with the coordinates of the sample in [0,1)
+     */
+    public void next2D(double[] sample) {
+        switch (sequence) {
+            case RANDOM -> {
+                sample[0] = random.nextDouble();
+                sample[1] = random.nextDouble();
+                return;
+            }
+            case HALTON -> {
+                sample[0] = (Integer.reverse(index) & 0xFFFFFFFFL) * INT_TO_UNIT;
+                sample[1] = radicalInverse3(index);
+            }
+            case SOBOL -> {
+                sample[0] = (Integer.reverse(index) & 0xFFFFFFFFL) * INT_TO_UNIT;
+                sample[1] = (sobol2(index) & 0xFFFFFFFFL) * INT_TO_UNIT;
+            }
+        }
+        ++index;
+        sample[0] = rotate(sample[0], shiftX);
+        sample[1] = rotate(sample[1], shiftY);
+    }
+
+    /**
+     * Shifts a coordinate of a sample and wraps it around into [0,1).
+     *
+     * @param value the coordinate
+     * @param shift the shift
+     * @return the shifted coordinate
+     */
+    private static double rotate(double value, double shift) {
+        value += shift;
+        return value >= 1 ? value - 1 : value;
+    }
+
+    /**
+     * Calculates the radical inverse of an index in base 3 - its digits mirrored around the point.
+     *
+     * @param index the index
+     * @return the radical inverse in [0,1)
+     */
+    private static double radicalInverse3(int index) {
+        double result = 0;
+        double scale = 1d / 3;
+        for (int n = index; n > 0; n /= 3, scale /= 3)
+            result += (n % 3) * scale;
+        return result;
+    }
+
+    /**
+     * Calculates the second dimension of the Sobol sequence, whose direction numbers
+     * are generated by the primitive polynomial x + 1.
+     *
+     * @param index the index
+     * @return the sample as a 32 bit fraction
+     */
+    private static int sobol2(int index) {
+        int result = 0;
+        for (int v = 1 << 31; index != 0; index >>>= 1, v ^= v >>> 1)
+            if ((index & 1) != 0) result ^= v;
+        return result;
+    }
+}
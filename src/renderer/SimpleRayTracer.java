@@ -1,11 +1,14 @@
 package renderer;
 
+import geometries.Intersectable;
 import geometries.Intersectable.GeoPoint;
+import geometries.Intersectable.Hit;
 import lighting.LightSource;
 import primitives.*;
+import scene.CompiledScene;
 import scene.Scene;
 
-import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -13,15 +16,78 @@ import static primitives.Util.isZero;
 /**
  * The SimpleRayTracer class implements a basic ray tracing algorithm for rendering scenes.
  * It computes the color of rays intersecting with geometries in the scene, considering
- * ambient light, diffuse reflection, and specular reflection from light sources.
+ * ambient light, diffuse reflection, and specular reflection from light sources.<br/>
+ * The reflected and refracted rays are shaded iteratively from a bounded work stack of
+ * (ray, weight, level) entries - each shaded ray adds its local color scaled by its weight
+ * (the product of the coefficients along its path) to the pixel's color.<br/>
+ * The work stack, the color accumulators and the hit record are kept in a {@link Context}, which
+ * a rendering thread creates once per tile and reuses for all the rays of the tile.
  */
 public class SimpleRayTracer extends RayTracerBase {
 
+    /**
+     * The scratch state of the rays traced by a single thread, reused from ray to ray so that
+     * shading a ray allocates no work stack, accumulators or hit records. The context also holds
+     * the sampler the Russian roulette draws from, so a tile rendered with a seeded sampler is
+     * reproducible.<br/>
+     * A context is not thread safe - each rendering thread creates its own.
+     */
+    static final class Context {
+        /** The source of the random numbers of the Russian roulette */
+        private final Sampler sampler;
+        /** The rays of the work stack */
+        private Ray[] rays = new Ray[0];
+        /** The weights of the rays of the work stack */
+        private Double3[] weights = new Double3[0];
+        /** The levels of the rays of the work stack */
+        private int[] levels = new int[0];
+        /** The closest intersections of the rays of the work stack (null for a missed ray) */
+        private GeoPoint[] points = new GeoPoint[0];
+        /** The color of the shaded ray */
+        private final MutableColor color = new MutableColor();
+        /** The local color of a surface */
+        private final MutableColor local = new MutableColor();
+        /** The hit record of the closest intersections */
+        private final Hit hit = new Hit();
+
+        /**
+         * Constructs a context drawing from a randomly seeded sampler.
+         */
+        Context() {
+            this(new Sampler(Sampler.Sequence.RANDOM, ThreadLocalRandom.current().nextLong()));
+        }
+
+        /**
+         * Constructs a context.
+         *
+         * @param sampler the source of the random numbers of the Russian roulette
+         */
+        Context(Sampler sampler) {
+            this.sampler = sampler;
+        }
 
-    private static final int MAX_CALC_COLOR_LEVEL = 10; // Maximum recursion depth for color calculation
-    private static final double MIN_CALC_COLOR_K = 0.001; // Minimum scaling factor for color calculations
+        /**
+         * Makes sure the work stack holds at least the given amount of entries.
+         *
+         * @param capacity the amount of entries
+         */
+        private void reserve(int capacity) {
+            if (rays.length >= capacity) return;
+            rays = new Ray[capacity];
+            weights = new Double3[capacity];
+            levels = new int[capacity];
+            points = new GeoPoint[capacity];
+        }
+    }
+
+    private static final int MAX_CALC_COLOR_LEVEL = 10; // Default maximum depth of reflections and refractions
+    private static final double MIN_CALC_COLOR_K = 0.001; // Default minimum weight of a traced ray
     private static final Double3 INITIAL_K = Double3.ONE; // Initial coefficient for color calculations
 
+    private int maxLevel = MAX_CALC_COLOR_LEVEL; // Maximum depth of reflections and refractions
+    private double minK = MIN_CALC_COLOR_K; // Minimum weight of a traced ray
+    private double rouletteK = 0; // Weight below which rays are terminated by Russian roulette, 0 for none
+
     /**
      * Constructor for SimpleRayTracer.
      *
@@ -31,62 +97,170 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene);
     }
 
+    /**
+     * Sets the maximum depth of reflections and refractions - the amount of surfaces a traced ray
+     * is shaded at, including the first one.
+     *
+     * @param maxLevel The maximum depth, at least 1.
+     * @return The ray tracer itself.
+     * @throws IllegalArgumentException if the depth is lower than 1.
+     */
+    public SimpleRayTracer setMaxLevel(int maxLevel) {
+        if (maxLevel < 1) throw new IllegalArgumentException("The maximum level must be at least 1");
+        this.maxLevel = maxLevel;
+        return this;
+    }
+
+    /**
+     * Sets the minimum weight of a traced ray - reflected or refracted rays and shadow rays whose
+     * weight is lower in all the color components are not traced.<br/>
+     * The geometries stop calculating the transmittance of a shadow ray once it drops below
+     * {@link Intersectable#MIN_TRANSMITTANCE}, so a lower weight could not be told apart from a
+     * blocked light and is rejected.
+     *
+     * @param minK The minimum weight, at least {@link Intersectable#MIN_TRANSMITTANCE}.
+     * @return The ray tracer itself.
+     * @throws IllegalArgumentException if the weight is lower than {@link Intersectable#MIN_TRANSMITTANCE}.
+     */
+    public SimpleRayTracer setMinK(double minK) {
+        if (minK < Intersectable.MIN_TRANSMITTANCE)
+            throw new IllegalArgumentException("The minimum weight must be at least " + Intersectable.MIN_TRANSMITTANCE);
+        this.minK = minK;
+        return this;
+    }
+
+    /**
+     * Sets Russian roulette termination of reflected and refracted rays. A ray whose weight is
+     * lower than the threshold in all the color components survives with the probability of its
+     * greatest component divided by the threshold, and its weight is raised accordingly - so the
+     * expected color does not change while most of the weak rays are not traced.
+     *
+     * @param threshold The weight below which rays may be terminated, 0 for no termination.
+     * @return The ray tracer itself.
+     * @throws IllegalArgumentException if the threshold is negative or greater than 1.
+     */
+    public SimpleRayTracer setRussianRoulette(double threshold) {
+        if (threshold < 0 || threshold > 1)
+            throw new IllegalArgumentException("The Russian roulette threshold must be in 0..1");
+        this.rouletteK = threshold;
+        return this;
+    }
+
     @Override
     public Color traceRay(Ray ray) {
-        GeoPoint closestPoint = findClosestIntersection(ray);
+        return traceRay(ray, new Context());
+    }
 
-        return closestPoint == null ? scene.background
-                : calcColor(closestPoint, ray);
+    /**
+     * Traces a ray as {@link #traceRay(Ray)}, with the scratch state of the calling thread.
+     *
+     * @param ray     the ray to be traced
+     * @param context the scratch state of the thread
+     * @return the color at the intersection point, or the background if there is no intersection
+     */
+    Color traceRay(Ray ray, Context context) {
+        GeoPoint closestPoint = findClosestIntersection(ray, context);
+        return closestPoint == null ? compiled().getBackground() : shade(ray, closestPoint, context);
     }
 
     /**
-     * Calculates the color at a given intersection point, adding ambient light.
+     * Calculates the color seen by a ray at its closest intersection, including the reflected
+     * and refracted rays.
      *
-     * @param geoPoint The intersection point in the scene.
-     * @param ray      The ray that intersected.
-     * @return The calculated color including ambient light.
+     * @param ray          The ray.
+     * @param closestPoint The closest intersection of the ray.
+     * @param context      The scratch state of the thread.
+     * @return The color.
      */
-    private Color calcColor(GeoPoint geoPoint, Ray ray) {
-        return calcColor(geoPoint, ray, MAX_CALC_COLOR_LEVEL, INITIAL_K).
-                add(scene.ambientLight.getIntensity());
+    private Color shade(Ray ray, GeoPoint closestPoint, Context context) {
+        // each shaded ray pushes at most two rays one level deeper, so the stack is bounded
+        context.reserve(2 * maxLevel);
+        Ray[] rays = context.rays;
+        Double3[] weights = context.weights;
+        int[] levels = context.levels;
+        GeoPoint[] points = context.points;
+        int top = 0;
+        rays[top] = ray;
+        weights[top] = INITIAL_K;
+        levels[top] = maxLevel;
+        points[top++] = closestPoint;
+
+        // the pixel's color and the local color of each shaded ray are accumulated in place
+        CompiledScene compiled = compiled();
+        MutableColor color = context.color.set(compiled.getAmbientIntensity());
+        MutableColor local = context.local;
+        while (top > 0) {
+            --top;
+            Ray current = rays[top];
+            Double3 k = weights[top];
+            int level = levels[top];
+            GeoPoint gp = points[top];
+            rays[top] = null;
+            points[top] = null;
+
+            if (gp == null) {
+                color.add(compiled.getBackground(), k);
+                continue;
+            }
+            color.add(calcLocalEffects(gp, current, k, local), k);
+            if (level == 1) continue;
+
+            Material material = gp.material;
+            top = push(context, top, constructRefractedRay(gp, current), material.kT.product(k), level - 1);
+            top = push(context, top, constructReflectedRay(gp, current), material.kR.product(k), level - 1);
+        }
+        return color.toColor();
     }
 
     /**
-     * Calculates the color at a given intersection point with support for recursive reflection and refraction.
+     * Pushes a reflected or refracted ray to the work stack, unless its weight is too low
+     * or it is terminated by Russian roulette.
      *
-     * @param gp    The intersection point.
-     * @param ray   The ray that intersected.
-     * @param level The recursion level for reflection/refraction.
-     * @param k    The attenuation coefficient.
-     * @return The calculated color.
+     * @param context The scratch state of the thread, holding the stack.
+     * @param top     The amount of entries in the stack.
+     * @param ray     The ray, or null if there is no ray.
+     * @param k       The weight of the ray.
+     * @param level   The level of the ray.
+     * @return The amount of entries in the stack after the push.
      */
-    private Color calcColor(GeoPoint gp, Ray ray , int level, Double3 k){
-        Color color = calcLocalEffects(gp, ray, k);
-        return 1 == level ? color
-                : color.add(calcGlobalEffects(gp, ray, level, k));
+    private int push(Context context, int top, Ray ray, Double3 k, int level) {
+        if (ray == null || k.lowerThan(minK)) return top;
+        if (rouletteK > 0 && k.lowerThan(rouletteK)) {
+            double survival = k.max() / rouletteK;
+            if (context.sampler.nextDouble() >= survival) return top;
+            k = k.scale(1 / survival);
+        }
+        context.rays[top] = ray;
+        context.weights[top] = k;
+        context.levels[top] = level;
+        context.points[top] = findClosestIntersection(ray, context);
+        return top + 1;
     }
 
     /**
      * Calculates local effects (lighting) at a given intersection point.
      *
-     * @param gp  The intersection point.
-     * @param ray The ray that intersected.
-     * @param k   The attenuation coefficient.
-     * @return The calculated color from local effects.
+     * @param gp    The intersection point.
+     * @param ray   The ray that intersected.
+     * @param k     The attenuation coefficient.
+     * @param color The accumulator to set to the color from local effects.
+     * @return The accumulator.
      */
-    private Color calcLocalEffects(GeoPoint gp, Ray ray, Double3 k) {
+    private MutableColor calcLocalEffects(GeoPoint gp, Ray ray, Double3 k, MutableColor color) {
 
-        Color color = gp.geometry.getEmission();
+        color.set(gp.geometry.getEmission());
         Vector v = ray.getDirection();
-        Vector n = gp.geometry.getNormal(gp.point);
-        Material material = gp.geometry.getMaterial();
+        Vector n = gp.getNormal();
+        Material material = gp.material;
 
         double nv = alignZero(n.dotProduct(v));
 
         if (isZero(nv))
             return color;
 
-        for (LightSource lightSource : scene.lights) {
+        CompiledScene compiled = compiled();
+        for (int i = 0; i < compiled.getLightCount(); ++i) {
+            LightSource lightSource = compiled.getLight(i);
 
             Vector l = lightSource.getL(gp.point);
 
@@ -99,42 +273,32 @@ public class SimpleRayTracer extends RayTracerBase {
 
                 Double3 ktr = transparency(gp, lightSource, l, n);
 
-                if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-                    Color iL = lightSource.getIntensity(gp.point).scale(ktr);
-                    color = color.add(
-                            iL.scale(calcDiffusive(material, nl)),
-                            iL.scale(calcSpecular(material, n, l, nl, v)));
-                }
+                if (!ktr.product(k).lowerThan(minK))
+                    color.addLight(lightSource.getIntensity(gp.point), ktr,
+                            material.kD, Math.abs(nl), material.kS, calcSpecular(material, n, l, nl, v));
             }
         }
         return color;
     }
 
     /**
-     * Calculates the diffuse reflection component.
-     *
-     * @param material The material of the geometry.
-     * @param nl       The dot product of the normal and light vector.
-     * @return The diffuse component of color.
-     */
-    private Double3 calcDiffusive(Material material, double nl) {
-        return material.kD.scale(Math.abs(nl));
-    }
-
-    /**
-     * Calculates the specular reflection component.
+     * Calculates the specular reflection factor, to be scaled by the material's kS.
      *
      * @param material The material of the geometry.
      * @param n       The normal vector at the intersection point.
      * @param l       The light vector.
      * @param nl      The dot product of the normal and light vector.
      * @param v       The view vector.
-     * @return The specular component of color.
+     * @return The specular factor.
      */
-    private Double3 calcSpecular(Material material, Vector n, Vector l, double nl, Vector v) {
+    private double calcSpecular(Material material, Vector n, Vector l, double nl, Vector v) {
 
-        Vector r = l.add(n.scale(-2 * nl)); // nl must not be zero!
-        double minusVR = -alignZero(v.dotProduct(r));
+        // r = l - 2(n.l)n, in plain coordinates
+        double scale = -2 * nl; // nl must not be zero!
+        double rx = l.getX() + n.getX() * scale;
+        double ry = l.getY() + n.getY() * scale;
+        double rz = l.getZ() + n.getZ() * scale;
+        double minusVR = -alignZero(v.getX() * rx + v.getY() * ry + v.getZ() * rz);
 
         //if deflection < 0  - more than 90 degrees there will be not specular component
         double max = minusVR > 0 ? minusVR : 0;
@@ -143,72 +307,7 @@ public class SimpleRayTracer extends RayTracerBase {
             for (int i = 0; i < material.shininess; i++)
                 max *= minusVR;
 
-        return material.kS.scale(max);
-    }
-
-    /**
-     * Checks if a point is unshaded by a light source.
-     *
-     * @param gp          The intersection point.
-     * @param l           The light vector.
-     * @param n           The normal vector.
-     * @param lightSource The light source.
-     * @return True if the point is unshaded, false otherwise.
-     */
-    private boolean unshaded(GeoPoint gp, Vector l, Vector n, LightSource lightSource) {
-
-        Vector lightDirection = l.scale(-1); // from point to light source
-
-        Ray lightRay = new Ray(gp.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay);
-
-        if (intersections == null)
-            return true;
-        if (lightSource != null)
-        {
-            double lightDistance = lightSource.getDistance(gp.point);
-            for (GeoPoint geoPoint : intersections) {
-                if (alignZero(geoPoint.point.distance(gp.point) - lightDistance) <= 0 && geoPoint.geometry.getMaterial().kT.equals(Double3.ZERO))
-                    return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Calculates global effects (reflection and refraction) at a given intersection point.
-     *
-     * @param gp    The intersection point.
-     * @param ray   The ray that intersected.
-     * @param level The recursion level for global effects.
-     * @param k    The attenuation coefficient.
-     * @return The calculated color from global effects.
-     */
-    private Color calcGlobalEffects(GeoPoint gp, Ray ray, int level, Double3 k) {
-        Material material = gp.geometry.getMaterial();
-        return calcGlobalEffect(constructRefractedRay(gp, ray), material.kT, level, k)
-                .add(calcGlobalEffect(constructReflectedRay(gp, ray), material.kR, level, k));
-    }
-
-    /**
-     * Calculates the effect of either reflection or refraction at a given ray.
-     *
-     * @param ray   The ray to trace.
-     * @param kx    The material's reflection/refraction coefficient.
-     * @param level The recursion level.
-     * @param k     The attenuation coefficient.
-     * @return The calculated color from the global effect.
-     */
-    private Color calcGlobalEffect(Ray ray, Double3 kx, int level, Double3 k) {
-
-        Double3 kkx = kx.product(k);
-
-        if (kkx.lowerThan(MIN_CALC_COLOR_K))
-            return Color.BLACK;
-
-        GeoPoint gp = findClosestIntersection(ray);
-        return (gp == null ? scene.background : calcColor(gp, ray, level-1, kkx))
-                .scale(kx);
+        return max;
     }
 
     /**
@@ -219,7 +318,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return The refracted ray.
      */
     private Ray constructRefractedRay(GeoPoint gp, Ray ray) {
-        Vector n = gp.geometry.getNormal(gp.point);
+        Vector n = gp.getNormal();
         Vector direction = ray.getDirection();
         return new Ray(gp.point, direction, n);
     }
@@ -232,7 +331,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return The reflected ray.
      */
     private Ray constructReflectedRay(GeoPoint gp, Ray ray) {
-        Vector n = gp.geometry.getNormal(gp.point);
+        Vector n = gp.getNormal();
         Vector v = ray.getDirection();
 
         // Calculate the reflection direction
@@ -249,15 +348,13 @@ public class SimpleRayTracer extends RayTracerBase {
     /**
      * Finds the closest intersection point for a given ray.
      *
-     * @param ray The ray to check for intersections.
+     * @param ray     The ray to check for intersections.
+     * @param context The scratch state of the thread, whose hit record is reused.
      * @return The closest intersection point, or null if no intersection exists.
      */
-    private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-        if (intersections == null) {
-            return null;
-        }
-        return ray.findClosestGeoPoint(intersections);
+    private GeoPoint findClosestIntersection(Ray ray, Context context) {
+        Hit hit = context.hit.reset(Double.POSITIVE_INFINITY);
+        return compiled().getGeometries().findClosestHit(ray, hit) ? hit.toGeoPoint(ray) : null;
     }
 
     /**
@@ -274,23 +371,9 @@ public class SimpleRayTracer extends RayTracerBase {
 
         double maxDistance = ls.getDistance(geoPoint.point);
         Ray lightRay = new Ray(geoPoint.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay, maxDistance);
-
-        if (intersections == null)
-            return Double3.ONE;
-
-        Double3 ktr = Double3.ONE;
-        double lightDistance = ls.getDistance(geoPoint.point);
-
-        for (GeoPoint intersectionPoint  : intersections) {
-            if (alignZero(intersectionPoint.point.distance(geoPoint.point) - lightDistance) <= 0){
-                ktr = ktr.product(intersectionPoint.geometry.getMaterial().kT);
-                if (ktr.lowerThan(MIN_CALC_COLOR_K))
-                    return Double3.ZERO;
-            }
-
-        }
-        return ktr;
+        // the occlusion query stops at the first opaque blocker and
+        // accumulates the transmission coefficients of the transparent ones
+        return compiled().getGeometries().findTransmittance(lightRay, maxDistance);
     }
 
 
@@ -0,0 +1,106 @@
+package scene;
+
+import geometries.BVH;
+import geometries.FlatGeometries;
+import geometries.Geometries;
+import geometries.Intersectable;
+import lighting.LightSource;
+import primitives.Color;
+
+/**
+ * An immutable render-time snapshot of a {@link Scene}, shared read-only by the render threads.<br/>
+ * The light sources are kept in an array and the ambient intensity and the background are
+ * fixed. A plain collection of geometries is flattened with its spheres and triangles grouped
+ * in structure-of-arrays form ({@link FlatGeometries}), and a {@link BVH} is copied and the copy is
+ * built if it isn't yet - the scene's own hierarchy is left as it is.
+ * Later changes of the scene's fields are not reflected - the scene should be compiled again.
+ */
+public final class CompiledScene {
+    /** The name of the scene */
+    private final String name;
+    /** The geometries, ready for intersecting */
+    private final Intersectable geometries;
+    /** The intensity of the ambient light */
+    private final Color ambientIntensity;
+    /** The background color */
+    private final Color background;
+    /** The light sources */
+    private final LightSource[] lights;
+
+    /**
+     * Compiles a scene.
+     *
+     * @param scene the scene
+     */
+    CompiledScene(Scene scene) {
+        name = scene.sceneName;
+        ambientIntensity = scene.ambientLight.getIntensity();
+        background = scene.background;
+        lights = scene.lights.toArray(new LightSource[0]);
+
+        Geometries sceneGeometries = scene.geometries;
+        if (sceneGeometries instanceof BVH bvh) {
+            // a private copy, so that later changes of the scene's hierarchy don't reach the snapshot
+            BVH copy = bvh.copy();
+            geometries = copy.isBuilt() ? copy : copy.build();
+        } else if (sceneGeometries.getClass() == Geometries.class)
+            geometries = new FlatGeometries(sceneGeometries);
+        else
+            geometries = sceneGeometries;
+    }
+
+    /**
+     * Gets the name of the scene.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the geometries of the scene, ready for intersecting.
+     *
+     * @return the geometries
+     */
+    public Intersectable getGeometries() {
+        return geometries;
+    }
+
+    /**
+     * Gets the intensity of the ambient light.
+     *
+     * @return the ambient intensity
+     */
+    public Color getAmbientIntensity() {
+        return ambientIntensity;
+    }
+
+    /**
+     * Gets the background color.
+     *
+     * @return the background color
+     */
+    public Color getBackground() {
+        return background;
+    }
+
+    /**
+     * Gets the amount of light sources.
+     *
+     * @return the amount of light sources
+     */
+    public int getLightCount() {
+        return lights.length;
+    }
+
+    /**
+     * Gets a light source.
+     *
+     * @param index the index of the light source
+     * @return the light source
+     */
+    public LightSource getLight(int index) {
+        return lights[index];
+    }
+}
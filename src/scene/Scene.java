@@ -72,4 +72,13 @@ public class Scene {
         this.lights = lights;
         return this;
     }
+
+    /**
+     * Compiles the scene into an immutable snapshot for rendering.
+     *
+     * @return the compiled scene
+     */
+    public CompiledScene compile() {
+        return new CompiledScene(this);
+    }
 }
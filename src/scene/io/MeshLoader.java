@@ -0,0 +1,780 @@
+package scene.io;
+
+import geometries.BVH;
+import geometries.Mesh;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads triangle meshes from Wavefront OBJ and binary PLY files straight into the compact
+ * arrays of a {@link Mesh}.<br/>
+ * The files are memory-mapped and parsed byte by byte - no lines or tokens are turned into
+ * {@code String}s, so large models are loaded at the speed of the disk.
+ * Polygons of more than 3 vertices are split into triangle fans.
+ */
+public final class MeshLoader {
+    /** Initial capacity of the growing arrays */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private MeshLoader() {
+    }
+
+    /**
+     * Loads a mesh by the extension of its file - ".obj" or ".ply".
+     *
+     * @param path the path of the file
+     * @return the mesh
+     * @throws IOException if the file can't be read, is malformed or of an unknown type
+     */
+    public static Mesh load(Path path) throws IOException {
+        return load(path, BVH.Precision.DOUBLE);
+    }
+
+    /**
+     * Loads a mesh by the extension of its file - ".obj" or ".ply", keeping it in the given precision.
+     *
+     * @param path      the path of the file
+     * @param precision the precision to keep the mesh in
+     * @return the mesh
+     * @throws IOException if the file can't be read, is malformed, of an unknown type,
+     *                     or too large for the precision
+     */
+    public static Mesh load(Path path, BVH.Precision precision) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".obj")) return loadObj(path, precision);
+        if (name.endsWith(".ply")) return loadPly(path, precision);
+        throw new IOException("Unknown mesh file type: " + path);
+    }
+
+    /**
+     * Loads a mesh from a Wavefront OBJ file. Only the vertices ({@code v}), vertex normals
+     * ({@code vn}) and faces ({@code f}) are read, all the other statements are skipped.
+     * Face vertices may be given as {@code v}, {@code v/vt}, {@code v/vt/vn} or {@code v//vn},
+     * with negative indices relative to the end of the list.<br/>
+     * The mesh keeps a normal per vertex, so a vertex given different normals by its faces is
+     * split into a vertex per normal, and the faces without normals take the normal of their plane.
+     *
+     * @param path the path of the file
+     * @return the mesh
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static Mesh loadObj(Path path) throws IOException {
+        return loadObj(path, BVH.Precision.DOUBLE);
+    }
+
+    /**
+     * Loads a mesh from a Wavefront OBJ file as {@link #loadObj(Path)}, keeping it in the given precision.
+     *
+     * @param path      the path of the file
+     * @param precision the precision to keep the mesh in
+     * @return the mesh
+     * @throws IOException if the file can't be read, is malformed or too large for the precision
+     */
+    public static Mesh loadObj(Path path, BVH.Precision precision) throws IOException {
+        ObjParser parser = new ObjParser(map(path));
+        parser.parse();
+        try {
+            return parser.toMesh(precision);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed OBJ mesh: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a mesh from a binary (little or big endian) PLY file. The {@code x, y, z} and the
+     * optional {@code nx, ny, nz} properties of the vertices and the {@code vertex_indices}
+     * (or {@code vertex_index}) list of the faces are read, all the other elements and
+     * properties are skipped.
+     *
+     * @param path the path of the file
+     * @return the mesh
+     * @throws IOException if the file can't be read, is malformed or is an ASCII PLY file
+     */
+    public static Mesh loadPly(Path path) throws IOException {
+        return loadPly(path, BVH.Precision.DOUBLE);
+    }
+
+    /**
+     * Loads a mesh from a binary PLY file as {@link #loadPly(Path)}, keeping it in the given precision.
+     *
+     * @param path      the path of the file
+     * @param precision the precision to keep the mesh in
+     * @return the mesh
+     * @throws IOException if the file can't be read, is malformed, is an ASCII PLY file
+     *                     or is too large for the precision
+     */
+    public static Mesh loadPly(Path path, BVH.Precision precision) throws IOException {
+        return new PlyParser(map(path)).parse(precision);
+    }
+
+    /**
+     * Maps a whole file into memory for reading.
+     *
+     * @param path the path of the file
+     * @return the mapped buffer
+     * @throws IOException if the file can't be mapped
+     */
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Mesh file is too large to be mapped: " + path);
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Growing array of doubles
+     */
+    private static final class DoubleArray {
+        /** The values */
+        private double[] values = new double[INITIAL_CAPACITY];
+        /** The amount of values */
+        private int size = 0;
+
+        /**
+         * Adds a value.
+         *
+         * @param value the value
+         */
+        void add(double value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        /**
+         * Gets the values as an array of the exact size.
+         *
+         * @return the values
+         */
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Growing array of ints
+     */
+    private static final class IntArray {
+        /** The values */
+        private int[] values = new int[INITIAL_CAPACITY];
+        /** The amount of values */
+        private int size = 0;
+
+        /**
+         * Adds a value.
+         *
+         * @param value the value
+         */
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        /**
+         * Gets the values as an array of the exact size.
+         *
+         * @return the values
+         */
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Byte level parser of a Wavefront OBJ file
+     */
+    private static final class ObjParser {
+        /** The mapped file */
+        private final MappedByteBuffer buffer;
+        /** The size of the file */
+        private final int limit;
+        /** The current position in the file */
+        private int position = 0;
+
+        /** Vertex positions */
+        private final DoubleArray positions = new DoubleArray();
+        /** Vertex normals, in the order of the {@code vn} statements */
+        private final DoubleArray objNormals = new DoubleArray();
+        /** Faces - 3 vertex indices per face */
+        private final IntArray faces = new IntArray();
+        /** Normal index of every face vertex, -1 if none */
+        private final IntArray faceNormals = new IntArray();
+
+        /** Vertex indices of the current polygon */
+        private int[] polygon = new int[16];
+        /** Normal indices of the current polygon */
+        private int[] polygonNormals = new int[16];
+
+        /**
+         * Constructs a parser of a mapped file.
+         *
+         * @param buffer the mapped file
+         */
+        ObjParser(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+        }
+
+        /**
+         * Parses all the statements of the file.
+         *
+         * @throws IOException if the file is malformed
+         */
+        void parse() throws IOException {
+            while (position < limit) {
+                skipBlanks();
+                if (position >= limit) break;
+                byte first = buffer.get(position);
+                byte second = position + 1 < limit ? buffer.get(position + 1) : (byte) ' ';
+                if (first == 'v' && isBlank(second)) {
+                    ++position;
+                    for (int i = 0; i < 3; ++i) positions.add(parseDouble());
+                } else if (first == 'v' && second == 'n' && position + 2 < limit && isBlank(buffer.get(position + 2))) {
+                    position += 2;
+                    for (int i = 0; i < 3; ++i) objNormals.add(parseDouble());
+                } else if (first == 'f' && isBlank(second)) {
+                    ++position;
+                    parseFace();
+                }
+                skipLine();
+            }
+        }
+
+        /**
+         * Parses the vertices of a face statement and splits the polygon into a triangle fan.
+         *
+         * @throws IOException if the face is malformed
+         */
+        private void parseFace() throws IOException {
+            int count = 0;
+            int vertexCount = positions.size / 3;
+            int normalCount = objNormals.size / 3;
+            while (true) {
+                skipBlanks();
+                if (position >= limit || isLineEnd(buffer.get(position))) break;
+                if (count == polygon.length) {
+                    polygon = Arrays.copyOf(polygon, 2 * count);
+                    polygonNormals = Arrays.copyOf(polygonNormals, 2 * count);
+                }
+                polygon[count] = resolve(parseInt(), vertexCount);
+                polygonNormals[count] = -1;
+                if (position < limit && buffer.get(position) == '/') {
+                    ++position;
+                    // skip the texture coordinate index
+                    if (position < limit && buffer.get(position) != '/') parseInt();
+                    if (position < limit && buffer.get(position) == '/') {
+                        ++position;
+                        polygonNormals[count] = resolve(parseInt(), normalCount);
+                    }
+                }
+                ++count;
+            }
+            if (count < 3)
+                throw new IOException("A face must have at least 3 vertices, at byte " + position);
+            for (int i = 1; i < count - 1; ++i) {
+                addFaceVertex(0);
+                addFaceVertex(i);
+                addFaceVertex(i + 1);
+            }
+        }
+
+        /**
+         * Adds a vertex of the current polygon to the faces.
+         *
+         * @param index the index of the vertex in the polygon
+         */
+        private void addFaceVertex(int index) {
+            faces.add(polygon[index]);
+            faceNormals.add(polygonNormals[index]);
+        }
+
+        /**
+         * Turns a 1-based (or negative, relative to the end) OBJ index into a 0-based one.
+         *
+         * @param index the OBJ index
+         * @param count the amount of items defined so far
+         * @return the 0-based index
+         * @throws IOException if the index refers to an item that is not defined
+         */
+        private int resolve(int index, int count) throws IOException {
+            int resolved = index < 0 ? count + index : index - 1;
+            if (resolved < 0 || resolved >= count)
+                throw new IOException("Index " + index + " is out of range, at byte " + position);
+            return resolved;
+        }
+
+        /**
+         * Creates the mesh of the parsed statements. A vertex referred to with different normals
+         * (e.g. by the faces of a hard edge) is split into a vertex per normal, and a vertex
+         * referred to without a normal gets a zero normal, for which the mesh takes the normal
+         * of the face's plane.
+         *
+         * @param precision the precision to keep the mesh in
+         * @return the mesh
+         */
+        Mesh toMesh(BVH.Precision precision) {
+            int[] faceArray = faces.toArray();
+            if (objNormals.size == 0)
+                return new Mesh(positions.toArray(), faceArray, null, precision);
+
+            // the normal of every vertex, -2 while no face refers to it, and the copies
+            // of the vertices referred to with another normal, by their (vertex, normal) pair
+            int vertexCount = positions.size / 3;
+            int[] vertexNormals = new int[vertexCount];
+            Arrays.fill(vertexNormals, -2);
+            Map<Long, Integer> copies = new HashMap<>();
+            DoubleArray normals = new DoubleArray();
+            for (int i = 0; i < positions.size; ++i)
+                normals.add(0);
+            int[] normalIndices = faceNormals.toArray();
+            for (int i = 0; i < faceArray.length; ++i) {
+                int vertex = faceArray[i];
+                int normal = normalIndices[i];
+                if (vertexNormals[vertex] == -2) {
+                    vertexNormals[vertex] = normal;
+                    setNormal(normals, vertex, normal);
+                } else if (vertexNormals[vertex] != normal) {
+                    int copy = copies.computeIfAbsent(((long) vertex << 32) | (normal + 1), key -> {
+                        for (int axis = 0; axis < 3; ++axis) {
+                            positions.add(positions.values[3 * vertex + axis]);
+                            normals.add(0);
+                        }
+                        int added = positions.size / 3 - 1;
+                        setNormal(normals, added, normal);
+                        return added;
+                    });
+                    faceArray[i] = copy;
+                }
+            }
+            return new Mesh(positions.toArray(), faceArray, normals.toArray(), precision);
+        }
+
+        /**
+         * Sets the normal of a vertex to one of the {@code vn} statements.
+         *
+         * @param normals the vertex normals
+         * @param vertex  the index of the vertex
+         * @param normal  the index of the normal, -1 to keep the zero normal
+         */
+        private void setNormal(DoubleArray normals, int vertex, int normal) {
+            if (normal < 0) return;
+            for (int axis = 0; axis < 3; ++axis)
+                normals.values[3 * vertex + axis] = objNormals.values[3 * normal + axis];
+        }
+
+        /**
+         * Parses a decimal integer.
+         *
+         * @return the integer
+         * @throws IOException if there is no integer at the current position
+         */
+        private int parseInt() throws IOException {
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+                negative = buffer.get(position++) == '-';
+            int start = position;
+            int value = 0;
+            while (position < limit && isDigit(buffer.get(position)))
+                value = 10 * value + buffer.get(position++) - '0';
+            if (position == start)
+                throw new IOException("Expected an integer at byte " + position);
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a decimal floating point number, after skipping the blanks before it.
+         * Up to 18 significant digits are accumulated in a long and scaled by the exponent.
+         *
+         * @return the number
+         * @throws IOException if there is no number at the current position
+         */
+        private double parseDouble() throws IOException {
+            skipBlanks();
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+                negative = buffer.get(position++) == '-';
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            boolean fraction = false;
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (isDigit(b)) {
+                    any = true;
+                    if (digits < 18) {
+                        mantissa = 10 * mantissa + b - '0';
+                        if (mantissa != 0) ++digits;
+                        if (fraction) --exponent;
+                    } else if (!fraction) {
+                        // digits beyond the precision of the mantissa only scale it
+                        ++exponent;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+                ++position;
+            }
+            if (!any)
+                throw new IOException("Expected a number at byte " + position);
+
+            if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+                ++position;
+                exponent += parseInt();
+            }
+            double value = exponent == 0 ? mantissa
+                    : exponent > 0 ? mantissa * Math.pow(10, exponent) : mantissa / Math.pow(10, -exponent);
+            return negative ? -value : value;
+        }
+
+        /**
+         * Skips spaces and tabs.
+         */
+        private void skipBlanks() {
+            while (position < limit && isBlank(buffer.get(position)))
+                ++position;
+        }
+
+        /**
+         * Skips to the beginning of the next line.
+         */
+        private void skipLine() {
+            while (position < limit && buffer.get(position) != '\n')
+                ++position;
+            ++position;
+        }
+
+        /**
+         * Checks whether a byte separates the words of a line.
+         *
+         * @param b the byte
+         * @return true for a space or a tab
+         */
+        private static boolean isBlank(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        /**
+         * Checks whether a byte ends a line or starts a comment.
+         *
+         * @param b the byte
+         * @return true for a carriage return, new line or '#'
+         */
+        private static boolean isLineEnd(byte b) {
+            return b == '\r' || b == '\n' || b == '#';
+        }
+
+        /**
+         * Checks whether a byte is a decimal digit.
+         *
+         * @param b the byte
+         * @return true for '0' to '9'
+         */
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+    }
+
+    /**
+     * Parser of a binary PLY file
+     */
+    private static final class PlyParser {
+        /** PLY type names, indexed by their type codes */
+        private static final List<List<String>> TYPES = List.of(
+                List.of("char", "int8"), List.of("uchar", "uint8"),
+                List.of("short", "int16"), List.of("ushort", "uint16"),
+                List.of("int", "int32"), List.of("uint", "uint32"),
+                List.of("float", "float32"), List.of("double", "float64"));
+        /** Type code of a property that is not a list */
+        private static final int NOT_A_LIST = -1;
+
+        /** The mapped file */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * A property of a PLY element
+         *
+         * @param name      the name of the property
+         * @param type      the type code of the value (of the items, for a list)
+         * @param countType the type code of the list's length, {@link #NOT_A_LIST} if the property is not a list
+         */
+        private record Property(String name, int type, int countType) {
+        }
+
+        /**
+         * An element of a PLY file
+         *
+         * @param name       the name of the element
+         * @param count      the amount of items of the element
+         * @param properties the properties of every item
+         */
+        private record Element(String name, int count, List<Property> properties) {
+        }
+
+        /**
+         * Constructs a parser of a mapped file.
+         *
+         * @param buffer the mapped file
+         */
+        PlyParser(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Parses the header and the data of the file.
+         *
+         * @param precision the precision to keep the mesh in
+         * @return the mesh
+         * @throws IOException if the file is malformed or is not a binary PLY file
+         */
+        Mesh parse(BVH.Precision precision) throws IOException {
+            List<Element> elements = parseHeader();
+
+            double[] positions = null;
+            double[] normals = null;
+            IntArray faces = new IntArray();
+            try {
+                for (Element element : elements) {
+                    if (element.name().equals("vertex")) {
+                        // every property of a vertex takes a byte at least
+                        if (element.count() > buffer.remaining() / Math.max(element.properties().size(), 1))
+                            throw new IOException("PLY file is truncated");
+                        positions = new double[3 * element.count()];
+                        boolean hasNormals = indexOf(element, "nx") >= 0;
+                        if (hasNormals) normals = new double[3 * element.count()];
+                        readVertices(element, positions, normals);
+                    } else if (element.name().equals("face")) {
+                        readFaces(element, faces);
+                    } else {
+                        for (int i = 0; i < element.count(); ++i)
+                            for (Property property : element.properties())
+                                readProperty(property);
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("PLY file is truncated", e);
+            }
+            if (positions == null)
+                throw new IOException("PLY file has no vertex element");
+            try {
+                return new Mesh(positions, faces.toArray(), normals, precision);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed PLY mesh: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Parses the ASCII header, leaving the buffer at the start of the data.
+         *
+         * @return the elements declared in the header
+         * @throws IOException if the header is malformed or the format is not binary
+         */
+        private List<Element> parseHeader() throws IOException {
+            if (!"ply".equals(readHeaderLine()))
+                throw new IOException("Not a PLY file");
+            List<Element> elements = new ArrayList<>();
+            String line;
+            while (!(line = readHeaderLine()).equals("end_header"))
+                try {
+                    parseHeaderLine(line.trim().split("\\s+"), elements);
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    throw new IOException("Malformed PLY header line: " + line, e);
+                }
+            return elements;
+        }
+
+        /**
+         * Parses a line of the header.
+         *
+         * @param words    the words of the line
+         * @param elements the elements declared so far, to add an element or a property to
+         * @throws IOException if the line is malformed or the format is not binary
+         */
+        private void parseHeaderLine(String[] words, List<Element> elements) throws IOException {
+            switch (words[0]) {
+                case "format" -> {
+                    if (words[1].equals("binary_little_endian")) buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    else if (words[1].equals("binary_big_endian")) buffer.order(ByteOrder.BIG_ENDIAN);
+                    else throw new IOException("Unsupported PLY format: " + words[1]);
+                }
+                case "element" -> {
+                    int count = Integer.parseInt(words[2]);
+                    if (count < 0)
+                        throw new IOException("Negative PLY element count: " + count);
+                    elements.add(new Element(words[1], count, new ArrayList<>()));
+                }
+                case "property" -> {
+                    if (elements.isEmpty())
+                        throw new IOException("PLY property before any element");
+                    Property property = words[1].equals("list")
+                            ? new Property(words[4], typeOf(words[3]), typeOf(words[2]))
+                            : new Property(words[2], typeOf(words[1]), NOT_A_LIST);
+                    elements.get(elements.size() - 1).properties().add(property);
+                }
+                default -> {
+                    // comments and object information
+                }
+            }
+        }
+
+        /**
+         * Finds the code of a PLY type.
+         *
+         * @param name the PLY type name
+         * @return the type code
+         * @throws IOException if the type is unknown
+         */
+        private static int typeOf(String name) throws IOException {
+            for (int type = 0; type < TYPES.size(); ++type)
+                if (TYPES.get(type).contains(name)) return type;
+            throw new IOException("Unknown PLY type: " + name);
+        }
+
+        /**
+         * Reads a line of the header - the header is small, so it is read as text.
+         *
+         * @return the line, without its end
+         * @throws IOException if the file ends within the header
+         */
+        private String readHeaderLine() throws IOException {
+            int start = buffer.position();
+            while (buffer.hasRemaining())
+                if (buffer.get() == '\n') {
+                    byte[] bytes = new byte[buffer.position() - start - 1];
+                    buffer.get(start, bytes);
+                    return new String(bytes, StandardCharsets.US_ASCII).replace("\r", "");
+                }
+            throw new IOException("PLY header is not terminated");
+        }
+
+        /**
+         * Reads the vertex positions and normals.
+         *
+         * @param element   the vertex element
+         * @param positions the array of the positions to fill
+         * @param normals   the array of the normals to fill, {@code null} if there are none
+         */
+        private void readVertices(Element element, double[] positions, double[] normals) {
+            List<Property> properties = element.properties();
+            // the destination of every property: 0-2 positions, 3-5 normals, -1 skipped
+            int[] targets = new int[properties.size()];
+            for (int p = 0; p < targets.length; ++p)
+                targets[p] = switch (properties.get(p).name()) {
+                    case "x" -> 0;
+                    case "y" -> 1;
+                    case "z" -> 2;
+                    case "nx" -> 3;
+                    case "ny" -> 4;
+                    case "nz" -> 5;
+                    default -> -1;
+                };
+            for (int i = 0; i < element.count(); ++i) {
+                for (int p = 0; p < targets.length; ++p) {
+                    Property property = properties.get(p);
+                    if (property.countType() != NOT_A_LIST || targets[p] < 0) {
+                        readProperty(property);
+                        continue;
+                    }
+                    double value = read(property.type());
+                    if (targets[p] < 3) positions[3 * i + targets[p]] = value;
+                    else if (normals != null) normals[3 * i + targets[p] - 3] = value;
+                }
+            }
+        }
+
+        /**
+         * Reads the faces and splits the polygons into triangle fans.
+         *
+         * @param element the face element
+         * @param faces   the array of the triangles' vertex indices to fill
+         * @throws IOException if a face has less than 3 vertices
+         */
+        private void readFaces(Element element, IntArray faces) throws IOException {
+            for (int i = 0; i < element.count(); ++i) {
+                for (Property property : element.properties()) {
+                    boolean indices = property.countType() != NOT_A_LIST
+                            && (property.name().equals("vertex_indices") || property.name().equals("vertex_index"));
+                    if (!indices) {
+                        readProperty(property);
+                        continue;
+                    }
+                    int count = (int) read(property.countType());
+                    if (count < 3)
+                        throw new IOException("A face must have at least 3 vertices, face " + i);
+                    int first = (int) read(property.type());
+                    int previous = (int) read(property.type());
+                    for (int k = 2; k < count; ++k) {
+                        int current = (int) read(property.type());
+                        faces.add(first);
+                        faces.add(previous);
+                        faces.add(current);
+                        previous = current;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads (and discards) the value of a property.
+         *
+         * @param property the property
+         */
+        private void readProperty(Property property) {
+            int count = property.countType() == NOT_A_LIST ? 1 : (int) read(property.countType());
+            for (int i = 0; i < count; ++i)
+                read(property.type());
+        }
+
+        /**
+         * Reads a binary value of a PLY type.
+         *
+         * @param type the type code
+         * @return the value
+         */
+        private double read(int type) {
+            return switch (type) {
+                case 0 -> buffer.get();
+                case 1 -> buffer.get() & 0xFF;
+                case 2 -> buffer.getShort();
+                case 3 -> buffer.getShort() & 0xFFFF;
+                case 4 -> buffer.getInt();
+                case 5 -> buffer.getInt() & 0xFFFFFFFFL;
+                case 6 -> buffer.getFloat();
+                default -> buffer.getDouble();
+            };
+        }
+
+        /**
+         * Finds a property of an element by its name.
+         *
+         * @param element the element
+         * @param name    the name of the property
+         * @return the index of the property, -1 if there is none
+         */
+        private static int indexOf(Element element, String name) {
+            for (int i = 0; i < element.properties().size(); ++i)
+                if (element.properties().get(i).name().equals(name)) return i;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package scene.io;
+
+import geometries.BVH;
+import geometries.CBR;
+import geometries.Cylinder;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Mesh;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import geometries.Tube;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import lighting.SpotLight;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import renderer.Camera;
+import scene.Scene;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary snapshot of a {@link Scene} - its geometries, materials and lights - and
+ * optionally of the view of a {@link Camera}.<br/>
+ * The acceleration structures are written as they are built: a built {@link BVH} keeps its
+ * flattened tree and a {@link Mesh} its arrays and hierarchy, so loading a snapshot maps the
+ * file and copies the arrays out of it in bulk, without rebuilding any hierarchy.
+ * Materials shared by several geometries are written once and shared again after loading.
+ */
+public final class SceneSnapshot {
+    /** The first bytes of a snapshot file - "RTSS" */
+    private static final int MAGIC = 0x52545353;
+    /** The version of the format */
+    private static final int VERSION = 1;
+
+    /** Tags of the light sources */
+    private static final byte DIRECTIONAL_LIGHT = 0, POINT_LIGHT = 1, SPOT_LIGHT = 2;
+    /** Tags of the geometries */
+    private static final byte GEOMETRIES = 0, CBR_NODE = 1, BVH_NODE = 2, SPHERE = 3, TRIANGLE = 4,
+            POLYGON = 5, PLANE = 6, TUBE = 7, CYLINDER = 8, MESH = 9;
+
+    /** The size of a material in the table - 4 triads of coefficients and the shininess */
+    private static final int MATERIAL_BYTES = 12 * Double.BYTES + Integer.BYTES;
+    /**
+     * The deepest nesting of collections read - the collections are read recursively, so a
+     * corrupt file must not nest them until the stack overflows
+     */
+    private static final int MAX_DEPTH = 512;
+
+    /** The loaded scene */
+    private final Scene scene;
+    /** The builder of the loaded camera, {@code null} if no camera was written */
+    private final Camera.Builder camera;
+
+    /**
+     * Constructs a loaded snapshot.
+     *
+     * @param scene  the scene
+     * @param camera the builder of the camera, may be {@code null}
+     */
+    private SceneSnapshot(Scene scene, Camera.Builder camera) {
+        this.scene = scene;
+        this.camera = camera;
+    }
+
+    /**
+     * Gets the loaded scene.
+     *
+     * @return the scene
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Gets a builder of the loaded camera, with its location, direction and view plane set.
+     * The ray tracer, the image writer and the rendering options are to be set by the caller.
+     *
+     * @return the builder, {@code null} if the snapshot has no camera
+     */
+    public Camera.Builder getCamera() {
+        return camera;
+    }
+
+    /**
+     * Writes a scene and the view of a camera to a snapshot file.
+     * Hierarchies which are built are written with their trees, the others with their geometries.
+     *
+     * @param path   the path of the file
+     * @param scene  the scene
+     * @param camera the camera, may be {@code null}
+     * @throws IOException              if the file can't be written
+     * @throws IllegalArgumentException if the scene has a geometry or a light of an unknown type
+     */
+    public static void write(Path path, Scene scene, Camera camera) throws IOException {
+        // the materials the geometries share are collected first, to write their table before them
+        Writer writer = new Writer();
+        writer.collectMaterials(scene.geometries);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] name = scene.sceneName.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            writeColor(out, scene.background);
+            writeColor(out, scene.ambientLight.getIntensity());
+
+            out.writeInt(writer.materials.size());
+            for (Material material : writer.materials) {
+                writeDouble3(out, material.kD);
+                writeDouble3(out, material.kS);
+                writeDouble3(out, material.kT);
+                writeDouble3(out, material.kR);
+                out.writeInt(material.shininess);
+            }
+
+            out.writeInt(scene.lights.size());
+            for (LightSource light : scene.lights)
+                writeLight(out, light);
+
+            out.writeBoolean(camera != null);
+            if (camera != null) {
+                writePoint(out, camera.getLocation());
+                writePoint(out, camera.getvTo());
+                writePoint(out, camera.getvUp());
+                out.writeDouble(camera.getWidth());
+                out.writeDouble(camera.getHeight());
+                out.writeDouble(camera.getDistance());
+            }
+
+            writer.writeGeometry(out, scene.geometries);
+        } catch (IllegalArgumentException e) {
+            // a scene which can't be written leaves no partial snapshot behind
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a snapshot file. The file is memory-mapped and its arrays copied out in bulk.
+     *
+     * @param path the path of the file
+     * @return the loaded snapshot
+     * @throws IOException if the file can't be read or is not a valid snapshot
+     */
+    public static SceneSnapshot read(Path path) throws IOException {
+        ByteBuffer in = map(path);
+        try {
+            if (in.getInt() != MAGIC)
+                throw new IOException("Not a scene snapshot: " + path);
+            int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported scene snapshot version " + version + ": " + path);
+
+            byte[] name = new byte[readCount(in, 1)];
+            in.get(name);
+            Scene scene = new Scene(new String(name, StandardCharsets.UTF_8))
+                    .setBackground(readColor(in))
+                    .setAmbientLight(new AmbientLight(readColor(in), 1d));
+
+            Material[] materials = new Material[readCount(in, MATERIAL_BYTES)];
+            for (int i = 0; i < materials.length; ++i)
+                materials[i] = new Material()
+                        .setkD(readDouble3(in))
+                        .setkS(readDouble3(in))
+                        .setkT(readDouble3(in))
+                        .setkR(readDouble3(in))
+                        .setShininess(in.getInt());
+
+            int lightCount = readCount(in, 1);
+            List<LightSource> lights = new ArrayList<>(lightCount);
+            for (int i = 0; i < lightCount; ++i)
+                lights.add(readLight(in));
+            scene.setLights(lights);
+
+            Camera.Builder camera = null;
+            if (in.get() != 0)
+                camera = Camera.getBuilder()
+                        .setLocation(readPoint(in))
+                        .setDirection(readVector(in), readVector(in))
+                        .setVpSize(in.getDouble(), in.getDouble())
+                        .setVpDistance(in.getDouble());
+
+            Intersectable geometries = readGeometry(in, materials, 0);
+            if (!(geometries instanceof Geometries collection))
+                throw new IOException("Malformed scene snapshot, the root is not a collection: " + path);
+            scene.setGeometries(collection);
+            return new SceneSnapshot(scene, camera);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed scene snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Maps a file to memory.
+     *
+     * @param path the path of the file
+     * @return the mapped buffer
+     * @throws IOException if the file can't be mapped
+     */
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Scene snapshot is too large to be mapped: " + path);
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Writes a light source.
+     *
+     * @param out   the output
+     * @param light the light source
+     * @throws IOException if the output fails
+     */
+    private static void writeLight(DataOutput out, LightSource light) throws IOException {
+        if (light instanceof DirectionalLight directional) {
+            out.writeByte(DIRECTIONAL_LIGHT);
+            writeColor(out, directional.getIntensity());
+            writePoint(out, directional.getDirection());
+            return;
+        }
+        if (light.getClass() != PointLight.class && light.getClass() != SpotLight.class)
+            throw new IllegalArgumentException("Unsupported light source: " + light.getClass().getName());
+
+        PointLight point = (PointLight) light;
+        out.writeByte(point instanceof SpotLight ? SPOT_LIGHT : POINT_LIGHT);
+        writeColor(out, point.getIntensity());
+        writePoint(out, point.getPosition());
+        if (point instanceof SpotLight spot)
+            writePoint(out, spot.getDirection());
+        out.writeDouble(point.getKc());
+        out.writeDouble(point.getKl());
+        out.writeDouble(point.getKq());
+    }
+
+    /**
+     * Reads a light source written by {@link #writeLight(DataOutput, LightSource)}.
+     *
+     * @param in the buffer
+     * @return the light source
+     */
+    private static LightSource readLight(ByteBuffer in) {
+        byte tag = in.get();
+        Color intensity = readColor(in);
+        if (tag == DIRECTIONAL_LIGHT)
+            return new DirectionalLight(intensity, readVector(in));
+
+        PointLight light = switch (tag) {
+            case POINT_LIGHT -> new PointLight(intensity, readPoint(in));
+            case SPOT_LIGHT -> new SpotLight(intensity, readPoint(in), readVector(in));
+            default -> throw new IllegalArgumentException("Unknown light source tag " + tag);
+        };
+        return light.setKc(in.getDouble()).setKl(in.getDouble()).setKq(in.getDouble());
+    }
+
+    /**
+     * Reads a geometry written by {@link Writer#writeGeometry(DataOutput, Intersectable)}.
+     *
+     * @param in        the buffer
+     * @param materials the material table
+     * @param depth     the amount of collections the geometry is nested in
+     * @return the geometry
+     * @throws IllegalArgumentException if the collections are nested deeper than {@link #MAX_DEPTH}
+     */
+    private static Intersectable readGeometry(ByteBuffer in, Material[] materials, int depth) {
+        byte tag = in.get();
+        switch (tag) {
+            case GEOMETRIES -> {
+                return new Geometries(readGeometries(in, materials, depth));
+            }
+            case CBR_NODE -> {
+                Intersectable[] children = readGeometries(in, materials, depth);
+                // a box around a single geometry is kept as it is rather than wrapped again
+                if (children.length == 1 && !(children[0] instanceof CBR))
+                    return new CBR(children[0]);
+                CBR cbr = new CBR();
+                cbr.add(children);
+                return cbr;
+            }
+            case BVH_NODE -> {
+                BVH.SplitMethod splitMethod = BVH.SplitMethod.values()[in.get()];
+                BVH.Precision precision = BVH.Precision.values()[in.get()];
+                BVH.Layout layout = BVH.Layout.values()[in.get()];
+                if (in.get() == 0)
+                    return new BVH(readGeometries(in, materials, depth))
+                            .setSplitMethod(splitMethod).setPrecision(precision).setLayout(layout);
+                Intersectable[] primitives = readGeometries(in, materials, depth);
+                Intersectable[] unbounded = readGeometries(in, materials, depth);
+                return BVH.readHierarchy(in, primitives, unbounded);
+            }
+            default -> {
+                Geometry geometry = switch (tag) {
+                    case SPHERE -> new Sphere(in.getDouble(), readPoint(in));
+                    case TRIANGLE -> new Triangle(readPoint(in), readPoint(in), readPoint(in));
+                    case POLYGON -> {
+                        Point[] vertices = new Point[readCount(in, 3 * Double.BYTES)];
+                        for (int i = 0; i < vertices.length; ++i)
+                            vertices[i] = readPoint(in);
+                        yield new Polygon(vertices);
+                    }
+                    case PLANE -> new Plane(readPoint(in), readVector(in));
+                    case TUBE -> new Tube(in.getDouble(), new Ray(readPoint(in), readVector(in)));
+                    case CYLINDER -> new Cylinder(in.getDouble(), new Ray(readPoint(in), readVector(in)),
+                            in.getDouble());
+                    case MESH -> Mesh.read(in);
+                    default -> throw new IllegalArgumentException("Unknown geometry tag " + tag);
+                };
+                return geometry.setMaterial(materials[in.getInt()]).setEmission(readColor(in));
+            }
+        }
+    }
+
+    /**
+     * Reads a counted array of the geometries of a collection.
+     *
+     * @param in        the buffer
+     * @param materials the material table
+     * @param depth     the amount of collections the collection is nested in
+     * @return the geometries
+     * @throws IllegalArgumentException if the collections are nested deeper than {@link #MAX_DEPTH}
+     */
+    private static Intersectable[] readGeometries(ByteBuffer in, Material[] materials, int depth) {
+        if (depth >= MAX_DEPTH)
+            throw new IllegalArgumentException("Geometries nested deeper than " + MAX_DEPTH);
+        // every geometry takes at least its tag
+        int count = readCount(in, 1);
+        Intersectable[] geometries = new Intersectable[count];
+        for (int i = 0; i < count; ++i)
+            geometries[i] = readGeometry(in, materials, depth + 1);
+        return geometries;
+    }
+
+    /**
+     * Reads an amount of elements, and checks it against the rest of the buffer before the
+     * elements are allocated - a corrupt amount must not allocate a huge array.
+     *
+     * @param in    the buffer
+     * @param bytes the least size of an element
+     * @return the amount
+     * @throws IllegalArgumentException if the elements can't fit in the rest of the buffer
+     */
+    private static int readCount(ByteBuffer in, int bytes) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / bytes)
+            throw new IllegalArgumentException("Wrong amount of elements " + count);
+        return count;
+    }
+
+    /**
+     * Writes the coordinates of a point or a vector.
+     *
+     * @param out   the output
+     * @param point the point
+     * @throws IOException if the output fails
+     */
+    private static void writePoint(DataOutput out, Point point) throws IOException {
+        out.writeDouble(point.getX());
+        out.writeDouble(point.getY());
+        out.writeDouble(point.getZ());
+    }
+
+    /**
+     * Reads a point.
+     *
+     * @param in the buffer
+     * @return the point
+     */
+    private static Point readPoint(ByteBuffer in) {
+        return new Point(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Reads a vector.
+     *
+     * @param in the buffer
+     * @return the vector
+     */
+    private static Vector readVector(ByteBuffer in) {
+        return new Vector(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Writes a color.
+     *
+     * @param out   the output
+     * @param color the color
+     * @throws IOException if the output fails
+     */
+    private static void writeColor(DataOutput out, Color color) throws IOException {
+        out.writeDouble(color.getRed());
+        out.writeDouble(color.getGreen());
+        out.writeDouble(color.getBlue());
+    }
+
+    /**
+     * Reads a color.
+     *
+     * @param in the buffer
+     * @return the color
+     */
+    private static Color readColor(ByteBuffer in) {
+        return new Color(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Writes a triad of numbers.
+     *
+     * @param out     the output
+     * @param numbers the numbers
+     * @throws IOException if the output fails
+     */
+    private static void writeDouble3(DataOutput out, Double3 numbers) throws IOException {
+        out.writeDouble(numbers.getD1());
+        out.writeDouble(numbers.getD2());
+        out.writeDouble(numbers.getD3());
+    }
+
+    /**
+     * Reads a triad of numbers.
+     *
+     * @param in the buffer
+     * @return the numbers
+     */
+    private static Double3 readDouble3(ByteBuffer in) {
+        return new Double3(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Writes the geometry tree, with the indices of the materials of the geometries in a table
+     * collected before.
+     */
+    private static final class Writer {
+        /** The materials, in the order of the table */
+        private final List<Material> materials = new ArrayList<>();
+        /** The indices of the materials in the table */
+        private final Map<Material, Integer> indices = new IdentityHashMap<>();
+
+        /**
+         * Collects the materials of a geometry or of the geometries of a collection into the table,
+         * in the order they are written.
+         *
+         * @param geometry the geometry
+         */
+        void collectMaterials(Intersectable geometry) {
+            if (geometry instanceof BVH bvh && bvh.isBuilt()) {
+                for (Intersectable primitive : bvh.getPrimitives())
+                    collectMaterials(primitive);
+                for (Intersectable unbounded : bvh.getUnbounded())
+                    collectMaterials(unbounded);
+            } else if (geometry instanceof Geometries collection) {
+                for (Intersectable child : collection.getGeometries())
+                    collectMaterials(child);
+            } else if (geometry instanceof Geometry shape && !indices.containsKey(shape.getMaterial())) {
+                indices.put(shape.getMaterial(), materials.size());
+                materials.add(shape.getMaterial());
+            }
+        }
+
+        /**
+         * Writes a geometry or a collection of geometries.
+         *
+         * @param out      the output
+         * @param geometry the geometry
+         * @throws IOException if the output fails
+         */
+        void writeGeometry(DataOutput out, Intersectable geometry) throws IOException {
+            Class<?> type = geometry.getClass();
+            if (type == Geometries.class) {
+                out.writeByte(GEOMETRIES);
+                writeGeometries(out, ((Geometries) geometry).getGeometries());
+            } else if (type == CBR.class) {
+                out.writeByte(CBR_NODE);
+                writeGeometries(out, ((CBR) geometry).getGeometries());
+            } else if (type == BVH.class) {
+                BVH bvh = (BVH) geometry;
+                out.writeByte(BVH_NODE);
+                out.writeByte(bvh.getSplitMethod().ordinal());
+                out.writeByte(bvh.getPrecision().ordinal());
+                out.writeByte(bvh.getLayout().ordinal());
+                out.writeBoolean(bvh.isBuilt());
+                if (!bvh.isBuilt())
+                    writeGeometries(out, bvh.getGeometries());
+                else {
+                    writeGeometries(out, bvh.getPrimitives());
+                    writeGeometries(out, bvh.getUnbounded());
+                    bvh.writeHierarchy(out);
+                }
+            } else if (type == Sphere.class) {
+                Sphere sphere = (Sphere) geometry;
+                out.writeByte(SPHERE);
+                out.writeDouble(sphere.getRadius());
+                writePoint(out, sphere.getCenter());
+                writeShading(out, sphere);
+            } else if (type == Triangle.class || type == Polygon.class) {
+                Polygon polygon = (Polygon) geometry;
+                List<Point> vertices = polygon.getVertices();
+                out.writeByte(type == Triangle.class ? TRIANGLE : POLYGON);
+                if (type == Polygon.class) out.writeInt(vertices.size());
+                for (Point vertex : vertices)
+                    writePoint(out, vertex);
+                writeShading(out, polygon);
+            } else if (type == Plane.class) {
+                Plane plane = (Plane) geometry;
+                out.writeByte(PLANE);
+                writePoint(out, plane.getPoint());
+                writePoint(out, plane.getNormal());
+                writeShading(out, plane);
+            } else if (type == Tube.class || type == Cylinder.class) {
+                Tube tube = (Tube) geometry;
+                out.writeByte(type == Tube.class ? TUBE : CYLINDER);
+                out.writeDouble(tube.getRadius());
+                writePoint(out, tube.getAxis().getHead());
+                writePoint(out, tube.getAxis().getDirection());
+                if (tube instanceof Cylinder cylinder) out.writeDouble(cylinder.getHeight());
+                writeShading(out, tube);
+            } else if (type == Mesh.class) {
+                Mesh mesh = (Mesh) geometry;
+                out.writeByte(MESH);
+                mesh.write(out);
+                writeShading(out, mesh);
+            } else
+                throw new IllegalArgumentException("Unsupported geometry: " + type.getName());
+        }
+
+        /**
+         * Writes a counted list of geometries.
+         *
+         * @param out        the output
+         * @param geometries the geometries
+         * @throws IOException if the output fails
+         */
+        private void writeGeometries(DataOutput out, List<Intersectable> geometries) throws IOException {
+            out.writeInt(geometries.size());
+            for (Intersectable geometry : geometries)
+                writeGeometry(out, geometry);
+        }
+
+        /**
+         * Writes the index of the material of a geometry and its emission.
+         *
+         * @param out      the output
+         * @param geometry the geometry
+         * @throws IOException if the output fails
+         */
+        private void writeShading(DataOutput out, Geometry geometry) throws IOException {
+            out.writeInt(indices.get(geometry.getMaterial()));
+            writeColor(out, geometry.getEmission());
+        }
+    }
+}
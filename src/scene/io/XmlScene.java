@@ -0,0 +1,550 @@
+package scene.io;
+
+import geometries.BVH;
+import geometries.CBR;
+import geometries.Cylinder;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import geometries.Tube;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import lighting.SpotLight;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import renderer.Camera;
+import scene.Scene;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads a scene and a camera from an XML scene description.<br/>
+ * The file is read by a streaming (StAX) parser - every element is turned straight into its
+ * geometry, light or material, without building a document tree first. Since the file is read
+ * in one pass, a material must be defined before the geometries referring to it.
+ * Vectors, points and colors are written as three numbers separated by spaces or commas, and the
+ * coefficients of materials and of the ambient light as either one number or three. For example:
+ * <pre>{@code
+ * <scene name="two colors" background="75 127 90">
+ *     <ambient-light color="255 191 191" k="1"/>
+ *     <camera location="0 0 0" to="0 0 -1" up="0 1 0" vp-size="500 500" vp-distance="100"/>
+ *     <materials>
+ *         <material id="shiny" kd="0.5" ks="0.5" shininess="60"/>
+ *     </materials>
+ *     <lights>
+ *         <spot-light intensity="400 240 0" position="-100 50 0" direction="1 -1 -2" kl="0.001"/>
+ *     </lights>
+ *     <bvh split="sah">
+ *         <sphere center="0 0 -100" radius="50" material="shiny" emission="30 10 10"/>
+ *         <triangle p0="-100 0 -100" p1="0 100 -100" p2="-100 100 -100"/>
+ *         <mesh file="bunny.obj"/>
+ *     </bvh>
+ * </scene>
+ * }</pre>
+ * The geometries are given as one collection - {@code <geometries>}, {@code <cbr>} or a
+ * {@code <bvh>} (which is built on loading) - and these may be nested. The other geometries are
+ * {@code <polygon vertices="..."/>}, {@code <plane point normal/>}, {@code <tube radius head direction/>},
+ * {@code <cylinder radius head direction height/>} and {@code <mesh file precision/>}, the file of a
+ * mesh being relative to the scene file. The lights are {@code <directional-light intensity direction/>},
+ * {@code <point-light intensity position kc kl kq/>} and {@code <spot-light intensity position direction kc kl kq/>}.
+ */
+public final class XmlScene {
+    /** The loaded scene */
+    private final Scene scene;
+    /** The builder of the loaded camera, {@code null} if the file has no camera */
+    private final Camera.Builder camera;
+
+    /**
+     * Constructs a loaded scene description.
+     *
+     * @param scene  the scene
+     * @param camera the builder of the camera, may be {@code null}
+     */
+    private XmlScene(Scene scene, Camera.Builder camera) {
+        this.scene = scene;
+        this.camera = camera;
+    }
+
+    /**
+     * Gets the loaded scene.
+     *
+     * @return the scene
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Gets a builder of the loaded camera, with its location, direction and view plane set.
+     * The ray tracer, the image writer and the rendering options are to be set by the caller.
+     *
+     * @return the builder, {@code null} if the file has no camera
+     */
+    public Camera.Builder getCamera() {
+        return camera;
+    }
+
+    /**
+     * Reads a scene description file.
+     *
+     * @param path the path of the file
+     * @return the loaded scene description
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public static XmlScene read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return read(in, path.toAbsolutePath().getParent());
+        }
+    }
+
+    /**
+     * Reads a scene description from a stream.
+     *
+     * @param in        the stream, which is not closed
+     * @param directory the directory the files of the meshes are relative to
+     * @return the loaded scene description
+     * @throws IOException if the stream can't be read or is malformed
+     */
+    public static XmlScene read(InputStream in, Path directory) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // a scene has no use of document types, and must not reach out to external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                return new Parser(reader, directory).parse();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed scene file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the elements of a scene description one after another.
+     */
+    private static final class Parser {
+        /** The streaming reader */
+        private final XMLStreamReader reader;
+        /** The directory the files of the meshes are relative to */
+        private final Path directory;
+        /** The materials defined so far, by their identifiers */
+        private final Map<String, Material> materials = new HashMap<>();
+
+        /**
+         * Constructs a parser.
+         *
+         * @param reader    the streaming reader
+         * @param directory the directory the files of the meshes are relative to
+         */
+        Parser(XMLStreamReader reader, Path directory) {
+            this.reader = reader;
+            this.directory = directory;
+        }
+
+        /**
+         * Parses the scene element.
+         *
+         * @return the loaded scene description
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if the scene is malformed or a mesh can't be loaded
+         */
+        XmlScene parse() throws XMLStreamException, IOException {
+            try {
+                reader.nextTag();
+                if (!reader.getLocalName().equals("scene"))
+                    throw error("The root element should be <scene>");
+
+                Scene scene = new Scene(optional("name", "scene"));
+                String background = reader.getAttributeValue(null, "background");
+                if (background != null) scene.setBackground(color(background));
+
+                Camera.Builder camera = null;
+                boolean geometries = false;
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "ambient-light" -> {
+                            scene.setAmbientLight(new AmbientLight(color(required("color")),
+                                    coefficients(optional("k", "1"))));
+                            end();
+                        }
+                        case "camera" -> camera = camera();
+                        case "materials" -> materials();
+                        case "lights" -> lights(scene.lights);
+                        case "geometries", "cbr", "bvh" -> {
+                            if (geometries) throw error("The scene has more than one geometry collection");
+                            geometries = true;
+                            scene.setGeometries((Geometries) geometry());
+                        }
+                        default -> throw unknownElement();
+                    }
+                }
+                return new XmlScene(scene, camera);
+            } catch (IllegalArgumentException e) {
+                // wrong numbers, names of options, and geometries rejected by their constructors
+                throw error(e.getMessage());
+            }
+        }
+
+        /**
+         * Parses a camera element.
+         *
+         * @return the builder of the camera
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if the camera is malformed
+         */
+        private Camera.Builder camera() throws XMLStreamException, IOException {
+            double[] size = numbers(required("vp-size"), 2);
+            Camera.Builder camera = Camera.getBuilder()
+                    .setLocation(point(required("location")))
+                    .setDirection(vector(required("to")), vector(required("up")))
+                    .setVpSize(size[0], size[1])
+                    .setVpDistance(number(required("vp-distance")));
+            end();
+            return camera;
+        }
+
+        /**
+         * Parses the material elements of a materials element.
+         *
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if a material is malformed
+         */
+        private void materials() throws XMLStreamException, IOException {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if (!reader.getLocalName().equals("material")) throw unknownElement();
+                String id = required("id");
+                Material material = new Material()
+                        .setkD(coefficients(optional("kd", "0")))
+                        .setkS(coefficients(optional("ks", "0")))
+                        .setkT(coefficients(optional("kt", "0")))
+                        .setkR(coefficients(optional("kr", "0")))
+                        .setShininess(Integer.parseInt(optional("shininess", "1").trim()));
+                if (materials.put(id, material) != null)
+                    throw error("The material \"" + id + "\" is defined twice");
+                end();
+            }
+        }
+
+        /**
+         * Parses the light elements of a lights element.
+         *
+         * @param lights the list to add the light sources to
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if a light is malformed
+         */
+        private void lights(List<LightSource> lights) throws XMLStreamException, IOException {
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                lights.add(switch (reader.getLocalName()) {
+                    case "directional-light" -> new DirectionalLight(color(required("intensity")),
+                            vector(required("direction")));
+                    case "point-light" -> attenuation(new PointLight(color(required("intensity")),
+                            point(required("position"))));
+                    case "spot-light" -> attenuation(new SpotLight(color(required("intensity")),
+                            point(required("position")), vector(required("direction"))));
+                    default -> throw unknownElement();
+                });
+                end();
+            }
+        }
+
+        /**
+         * Sets the attenuation factors of a point light by the attributes of the current element.
+         *
+         * @param light the light
+         * @return the light
+         */
+        private PointLight attenuation(PointLight light) {
+            return light.setKc(number(optional("kc", "1")))
+                    .setKl(number(optional("kl", "0")))
+                    .setKq(number(optional("kq", "0")));
+        }
+
+        /**
+         * Parses a geometry element, or a collection of them with all its children.
+         *
+         * @return the geometry
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if a geometry is malformed or a mesh can't be loaded
+         */
+        private Intersectable geometry() throws XMLStreamException, IOException {
+            String name = reader.getLocalName();
+            switch (name) {
+                case "geometries" -> {
+                    return new Geometries(children());
+                }
+                case "cbr" -> {
+                    return new CBR(children());
+                }
+                case "bvh" -> {
+                    BVH.SplitMethod splitMethod = option(BVH.SplitMethod.class, optional("split", "median"));
+                    BVH.Precision precision = option(BVH.Precision.class, optional("precision", "double"));
+                    BVH.Layout layout = option(BVH.Layout.class, optional("layout", "binary"));
+                    return new BVH(children())
+                            .setSplitMethod(splitMethod).setPrecision(precision).setLayout(layout)
+                            .build();
+                }
+                default -> {
+                    Geometry geometry = switch (name) {
+                        case "sphere" -> new Sphere(number(required("radius")), point(required("center")));
+                        case "triangle" -> new Triangle(point(required("p0")), point(required("p1")),
+                                point(required("p2")));
+                        case "polygon" -> new Polygon(points(required("vertices")));
+                        case "plane" -> new Plane(point(required("point")), vector(required("normal")));
+                        case "tube" -> new Tube(number(required("radius")),
+                                new Ray(point(required("head")), vector(required("direction"))));
+                        case "cylinder" -> new Cylinder(number(required("radius")),
+                                new Ray(point(required("head")), vector(required("direction"))),
+                                number(required("height")));
+                        case "mesh" -> MeshLoader.load(resolve(required("file")),
+                                option(BVH.Precision.class, optional("precision", "double")));
+                        default -> throw unknownElement();
+                    };
+                    String material = reader.getAttributeValue(null, "material");
+                    if (material != null) {
+                        Material defined = materials.get(material);
+                        if (defined == null) throw error("Undefined material \"" + material + "\"");
+                        geometry.setMaterial(defined);
+                    }
+                    String emission = reader.getAttributeValue(null, "emission");
+                    if (emission != null) geometry.setEmission(color(emission));
+                    end();
+                    return geometry;
+                }
+            }
+        }
+
+        /**
+         * Parses the child geometries of a collection element, up to its end.
+         *
+         * @return the geometries
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if a geometry is malformed or a mesh can't be loaded
+         */
+        private Intersectable[] children() throws XMLStreamException, IOException {
+            List<Intersectable> children = new ArrayList<>();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+                children.add(geometry());
+            return children.toArray(new Intersectable[0]);
+        }
+
+        /**
+         * Resolves the path of a file relative to the scene file.
+         *
+         * @param file the path of the file
+         * @return the resolved path
+         */
+        private Path resolve(String file) {
+            return directory == null ? Path.of(file) : directory.resolve(file);
+        }
+
+        /**
+         * Skips to the end of an element which should have no children.
+         *
+         * @throws XMLStreamException if the XML is malformed
+         * @throws IOException        if the element has a child
+         */
+        private void end() throws XMLStreamException, IOException {
+            if (reader.nextTag() != XMLStreamConstants.END_ELEMENT)
+                throw error("Unexpected element <" + reader.getLocalName() + ">");
+        }
+
+        /**
+         * Gets a required attribute of the current element.
+         *
+         * @param name the name of the attribute
+         * @return the value of the attribute
+         * @throws IOException if the element has no such attribute
+         */
+        private String required(String name) throws IOException {
+            String value = reader.getAttributeValue(null, name);
+            if (value == null)
+                throw error("Missing attribute \"" + name + "\" of <" + reader.getLocalName() + ">");
+            return value;
+        }
+
+        /**
+         * Gets an optional attribute of the current element.
+         *
+         * @param name         the name of the attribute
+         * @param defaultValue the value if the element has no such attribute
+         * @return the value of the attribute
+         */
+        private String optional(String name, String defaultValue) {
+            String value = reader.getAttributeValue(null, name);
+            return value == null ? defaultValue : value;
+        }
+
+        /**
+         * Creates the exception of an unknown element.
+         *
+         * @return the exception
+         */
+        private IOException unknownElement() {
+            return error("Unknown element <" + reader.getLocalName() + ">");
+        }
+
+        /**
+         * Creates the exception of a malformed scene, at the current line of the file.
+         *
+         * @param message the description of the problem
+         * @return the exception
+         */
+        private IOException error(String message) {
+            return new IOException("Malformed scene file, line " + reader.getLocation().getLineNumber()
+                    + ": " + message);
+        }
+    }
+
+    /**
+     * Parses the name of an option, ignoring its case.
+     *
+     * @param type  the enumeration of the options
+     * @param value the name
+     * @param <E>   the type of the enumeration
+     * @return the option
+     * @throws IllegalArgumentException if there is no such option
+     */
+    private static <E extends Enum<E>> E option(Class<E> type, String value) {
+        return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Parses a number.
+     *
+     * @param value the text
+     * @return the number
+     * @throws NumberFormatException if the text is not a number
+     */
+    private static double number(String value) {
+        return Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Parses a point.
+     *
+     * @param value the three coordinates
+     * @return the point
+     */
+    private static Point point(String value) {
+        double[] xyz = numbers(value, 3);
+        return new Point(xyz[0], xyz[1], xyz[2]);
+    }
+
+    /**
+     * Parses a vector.
+     *
+     * @param value the three coordinates
+     * @return the vector
+     */
+    private static Vector vector(String value) {
+        double[] xyz = numbers(value, 3);
+        return new Vector(xyz[0], xyz[1], xyz[2]);
+    }
+
+    /**
+     * Parses a list of points.
+     *
+     * @param value the coordinates of the points one after another
+     * @return the points
+     */
+    private static Point[] points(String value) {
+        double[] xyz = numbers(value, -1);
+        if (xyz.length % 3 != 0)
+            throw new IllegalArgumentException("The amount of coordinates " + xyz.length + " is not a multiple of 3");
+        Point[] points = new Point[xyz.length / 3];
+        for (int i = 0; i < points.length; ++i)
+            points[i] = new Point(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+        return points;
+    }
+
+    /**
+     * Parses a color.
+     *
+     * @param value the red, green and blue components
+     * @return the color
+     */
+    private static Color color(String value) {
+        double[] rgb = numbers(value, 3);
+        return new Color(rgb[0], rgb[1], rgb[2]);
+    }
+
+    /**
+     * Parses coefficients - either one for all the components of a color or one per component.
+     *
+     * @param value one or three numbers
+     * @return the coefficients
+     */
+    private static Double3 coefficients(String value) {
+        double[] k = numbers(value, -1);
+        if (k.length == 1) return new Double3(k[0]);
+        if (k.length == 3) return new Double3(k[0], k[1], k[2]);
+        throw new IllegalArgumentException("Expected 1 or 3 numbers rather than " + k.length);
+    }
+
+    /**
+     * Parses numbers separated by spaces or commas, without splitting the text by a regular expression.
+     *
+     * @param value the text
+     * @param count the expected amount of numbers, -1 for any
+     * @return the numbers
+     * @throws IllegalArgumentException if a number is malformed or the amount of numbers is wrong
+     */
+    private static double[] numbers(String value, int count) {
+        double[] numbers = new double[count < 0 ? 4 : count];
+        int size = 0;
+        int length = value.length();
+        int index = 0;
+        while (true) {
+            while (index < length && isSeparator(value.charAt(index))) ++index;
+            if (index == length) break;
+            int start = index;
+            while (index < length && !isSeparator(value.charAt(index))) ++index;
+            if (size == numbers.length) {
+                if (count >= 0) break;
+                numbers = Arrays.copyOf(numbers, 2 * size);
+            }
+            numbers[size++] = Double.parseDouble(value.substring(start, index));
+        }
+        if (count >= 0 ? size != count || index != length : size == 0)
+            throw new IllegalArgumentException("Expected " + (count < 0 ? "numbers" : count + " numbers")
+                    + " in \"" + value + "\"");
+        return count < 0 ? Arrays.copyOf(numbers, size) : numbers;
+    }
+
+    /**
+     * Checks whether a character separates numbers.
+     *
+     * @param c the character
+     * @return true if the character is a space or a comma
+     */
+    private static boolean isSeparator(char c) {
+        return c == ',' || Character.isWhitespace(c);
+    }
+}
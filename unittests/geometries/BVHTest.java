@@ -0,0 +1,352 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.BVH class.
+ * The results of the hierarchy are compared against a plain (linear) collection of the same geometries.
+ */
+class BVHTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Creates a pseudo-random collection of spheres and triangles.
+     *
+     * @param random the random generator
+     * @param count  the amount of geometries
+     * @return the geometries
+     */
+    private Intersectable[] randomGeometries(Random random, int count) {
+        Intersectable[] geometries = new Intersectable[count];
+        for (int i = 0; i < count; ++i) {
+            Point p = new Point(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50);
+            if (i % 2 == 0)
+                geometries[i] = new Sphere(1 + random.nextDouble() * 3, p)
+                        .setMaterial(new Material().setkT(i % 4 == 0 ? 0.5 : 0));
+            else
+                geometries[i] = new Triangle(p, p.add(new Vector(3, 0, 1)), p.add(new Vector(0, 3, 2)));
+        }
+        return geometries;
+    }
+
+    /**
+     * Creates a ray from a random point in a random direction.
+     *
+     * @param random the random generator
+     * @return the ray
+     */
+    private Ray randomRay(Random random) {
+        Point head = new Point(random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70);
+        Vector direction = new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+        return new Ray(head, direction);
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#findClosestHit(primitives.Ray, Intersectable.Hit)}.
+     */
+    @Test
+    void testFindClosestHit() {
+        Random random = new Random(7);
+        Intersectable[] geometries = randomGeometries(random, 300);
+        Geometries linear = new Geometries(geometries);
+        BVH bvh = new BVH(geometries).build();
+        BVH sah = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).build();
+        BVH sahFloat = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).setPrecision(BVH.Precision.FLOAT).build();
+        BVH wide = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).setLayout(BVH.Layout.WIDE).build();
+        BVH wideFloat = new BVH(geometries).setLayout(BVH.Layout.WIDE).setPrecision(BVH.Precision.FLOAT).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Median, SAH, single precision and wide hierarchies find the same closest geometry as a linear search
+        for (int i = 0; i < 2000; ++i) {
+            Ray ray = randomRay(random);
+            Intersectable.Hit expected = new Intersectable.Hit();
+            boolean found = linear.findClosestHit(ray, expected);
+            for (BVH tree : new BVH[]{bvh, sah, sahFloat, wide, wideFloat}) {
+                Intersectable.Hit result = new Intersectable.Hit();
+                assertEquals(found, tree.findClosestHit(ray, result), "Wrong hit for " + ray);
+                assertSame(expected.geometry, result.geometry, "Wrong closest geometry for " + ray);
+                assertEquals(expected.t, result.t, DELTA, "Wrong closest distance for " + ray);
+            }
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: Axis aligned rays (parallel to the slabs of the boxes) find the same closest geometry
+        for (int i = 0; i < 300; ++i) {
+            Ray ray = randomRay(random);
+            double[] axis = new double[3];
+            axis[i % 3] = i % 2 == 0 ? 1 : -1;
+            ray = new Ray(ray.getHead(), new Vector(axis[0], axis[1], axis[2]));
+            Intersectable.Hit expected = new Intersectable.Hit();
+            boolean found = linear.findClosestHit(ray, expected);
+            for (BVH tree : new BVH[]{sah, wide}) {
+                Intersectable.Hit result = new Intersectable.Hit();
+                assertEquals(found, tree.findClosestHit(ray, result), "Wrong hit for " + ray);
+                assertSame(expected.geometry, result.geometry, "Wrong closest geometry for " + ray);
+            }
+        }
+
+        // TC11: An empty hierarchy is never hit
+        assertFalse(new BVH().build().findClosestHit(randomRay(random), new Intersectable.Hit()), "Expected no hit");
+        assertFalse(new BVH().setLayout(BVH.Layout.WIDE).build().findClosestHit(randomRay(random), new Intersectable.Hit()),
+                "Expected no hit");
+
+        // TC12: Geometries added after the build are found as well
+        Sphere added = new Sphere(1, new Point(200, 0, 0));
+        bvh.add(added);
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(bvh.findClosestHit(new Ray(new Point(190, 0, 0), new Vector(1, 0, 0)), hit), "Expected a hit");
+        assertSame(added, hit.geometry, "Wrong closest geometry");
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#build()} of a hierarchy large enough to be built in parallel.
+     */
+    @Test
+    void testBuildParallel() {
+        Random random = new Random(5);
+        Intersectable[] geometries = randomGeometries(random, 10000);
+        Geometries linear = new Geometries(geometries);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Both median and SAH hierarchies built in parallel find the same closest geometry as a linear search
+        for (BVH.SplitMethod splitMethod : BVH.SplitMethod.values()) {
+            BVH bvh = new BVH(geometries).setSplitMethod(splitMethod).build();
+            for (int i = 0; i < 300; ++i) {
+                Ray ray = randomRay(random);
+                Intersectable.Hit expected = new Intersectable.Hit();
+                Intersectable.Hit result = new Intersectable.Hit();
+                assertEquals(linear.findClosestHit(ray, expected), bvh.findClosestHit(ray, result), "Wrong hit for " + ray);
+                assertSame(expected.geometry, result.geometry, "Wrong closest geometry for " + ray);
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#findTransmittance(primitives.Ray, double)}
+     * and {@link geometries.BVH#findIntersections(primitives.Ray)}.
+     */
+    @Test
+    void testFindTransmittanceAndIntersections() {
+        Random random = new Random(11);
+        Intersectable[] geometries = randomGeometries(random, 300);
+        Geometries linear = new Geometries(geometries);
+        BVH bvh = new BVH(new CBR(geometries)).build();
+        BVH wide = new BVH(new CBR(geometries)).setLayout(BVH.Layout.WIDE).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The binary and wide hierarchies (built over nested CBRs) accumulate the same transmittance
+        // and find the same amount of intersections as a linear search
+        for (int i = 0; i < 2000; ++i) {
+            Ray ray = randomRay(random);
+            double distance = random.nextDouble() * 100;
+            Double3 transmittance = linear.findTransmittance(ray, distance);
+            var expected = linear.findIntersections(ray);
+            for (BVH tree : new BVH[]{bvh, wide}) {
+                assertEquals(transmittance, tree.findTransmittance(ray, distance), "Wrong transmittance for " + ray);
+                var result = tree.findIntersections(ray);
+                assertEquals(expected == null ? 0 : expected.size(), result == null ? 0 : result.size(),
+                        "Wrong amount of intersections for " + ray);
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#build()} with unbounded geometries.
+     */
+    @Test
+    void testBuildUnbounded() {
+        Random random = new Random(13);
+        Intersectable[] bounded = randomGeometries(random, 200);
+        Plane ground = new Plane(new Point(0, 0, -40), new Vector(0, 0, 1));
+        Plane wall = (Plane) new Plane(new Point(-60, 0, 0), new Vector(1, 0, 0))
+                .setMaterial(new Material().setkT(0.5));
+        Tube tube = new Tube(2, new Ray(new Point(0, 0, 0), new Vector(1, 1, 0)));
+        Geometries linear = new Geometries(bounded);
+        linear.add(ground, wall, tube);
+        BVH bvh = new BVH(new CBR(bounded), ground, wall, tube).setSplitMethod(BVH.SplitMethod.SAH).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The unbounded geometries are kept outside the tree, so the tree's cost is finite
+        assertEquals(3, bvh.getUnboundedCount(), "Wrong amount of unbounded geometries");
+        assertTrue(Double.isFinite(bvh.getCost()), "The tree is unbounded");
+
+        // TC02: The hierarchy finds the same closest geometry and transmittance as a linear search
+        for (int i = 0; i < 1000; ++i) {
+            Ray ray = randomRay(random);
+            Intersectable.Hit expected = new Intersectable.Hit();
+            Intersectable.Hit result = new Intersectable.Hit();
+            assertEquals(linear.findClosestHit(ray, expected), bvh.findClosestHit(ray, result), "Wrong hit for " + ray);
+            assertSame(expected.geometry, result.geometry, "Wrong closest geometry for " + ray);
+            double distance = random.nextDouble() * 100;
+            assertEquals(linear.findTransmittance(ray, distance), bvh.findTransmittance(ray, distance),
+                    "Wrong transmittance for " + ray);
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#getCost()}.
+     */
+    @Test
+    void testGetCost() {
+        // Clusters of small spheres along the x axis - badly split by the median of the longest axis
+        Random random = new Random(3);
+        Intersectable[] geometries = new Intersectable[400];
+        for (int i = 0; i < geometries.length; ++i) {
+            double cluster = (i % 4) * 1000 + (i % 4 == 3 ? 5000 : 0);
+            geometries[i] = new Sphere(0.5, new Point(cluster + random.nextDouble() * 20,
+                    random.nextDouble() * 20, random.nextDouble() * 20));
+        }
+        BVH median = new BVH(geometries).build();
+        BVH sah = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The SAH hierarchy is estimated to be cheaper than the median one
+        assertTrue(sah.getCost() < median.getCost(), "SAH cost " + sah.getCost() + " is not lower than " + median.getCost());
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The cost is unknown before the hierarchy is built
+        assertTrue(Double.isNaN(new BVH(geometries).getCost()), "Expected an unknown cost");
+        // TC12: A single geometry costs a single intersection
+        assertEquals(1, new BVH(geometries[0]).setSplitMethod(BVH.SplitMethod.SAH).build().getCost(), DELTA,
+                "Wrong cost of a single geometry");
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#setLayout(BVH.Layout)}.
+     */
+    @Test
+    void testWideLayout() {
+        Random random = new Random(17);
+        Intersectable[] geometries = randomGeometries(random, 2000);
+        BVH binary = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).build();
+        BVH wide = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).setLayout(BVH.Layout.WIDE).build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The wide hierarchy is shallower, has fewer nodes and takes fewer traversal steps
+        assertTrue(wide.getDepth() < binary.getDepth(), "The wide hierarchy is not shallower");
+        assertTrue(wide.getNodeCount() < binary.getNodeCount() / 2, "The wide hierarchy has too many nodes");
+        assertTrue(wide.getCost() < binary.getCost(), "Wide cost " + wide.getCost() + " is not lower than " + binary.getCost());
+        // TC02: Both hierarchies have the same bounding box
+        assertEquals(binary.minMaxPoints(), wide.minMaxPoints(), "Wrong bounding box");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single geometry is a wide root with a single leaf
+        Sphere sphere = new Sphere(1, new Point(5, 5, 5));
+        BVH single = new BVH(sphere).setLayout(BVH.Layout.WIDE).build();
+        assertEquals(1, single.getNodeCount(), "Wrong amount of nodes");
+        assertEquals(sphere.minMaxPoints(), single.minMaxPoints(), "Wrong bounding box");
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(single.findClosestHit(new Ray(new Point(5, 5, 10), new Vector(0, 0, -1)), hit), "Expected a hit");
+        assertSame(sphere, hit.geometry, "Wrong closest geometry");
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#copy()}.
+     */
+    @Test
+    void testCopy() {
+        Random random = new Random(19);
+        Intersectable[] geometries = randomGeometries(random, 200);
+        BVH bvh = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH).setLayout(BVH.Layout.WIDE);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A copy of an unbuilt hierarchy has the settings and is built on its own
+        BVH copy = bvh.copy();
+        assertFalse(copy.isBuilt(), "The copy is built");
+        assertEquals(BVH.SplitMethod.SAH, copy.getSplitMethod(), "Wrong split method");
+        assertEquals(BVH.Layout.WIDE, copy.getLayout(), "Wrong layout");
+        copy.build();
+        assertFalse(bvh.isBuilt(), "The original is built with the copy");
+
+        // TC02: A copy of a built hierarchy finds the same hits, and is not changed by adding to the original
+        bvh.build();
+        copy = bvh.copy();
+        assertTrue(copy.isBuilt(), "The copy is not built");
+        assertEquals(bvh.getNodeCount(), copy.getNodeCount(), "Wrong amount of nodes");
+        for (int i = 0; i < 100; ++i) {
+            Ray ray = randomRay(random);
+            Intersectable.Hit expected = new Intersectable.Hit();
+            Intersectable.Hit actual = new Intersectable.Hit();
+            assertEquals(bvh.findClosestHit(ray, expected), copy.findClosestHit(ray, actual), "Wrong hit");
+            assertSame(expected.geometry, actual.geometry, "Wrong closest geometry");
+        }
+        bvh.add(new Sphere(1, Point.ZERO));
+        assertTrue(copy.isBuilt(), "The copy is changed by adding to the original");
+        assertEquals(geometries.length, copy.getPrimitives().size(), "The copy sees a new geometry");
+    }
+
+    /**
+     * Writes the hierarchy of a built BVH to bytes.
+     *
+     * @param bvh the built BVH
+     * @return the written hierarchy
+     * @throws IOException if the writing fails
+     */
+    private byte[] writeHierarchy(BVH bvh) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        bvh.writeHierarchy(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test method for {@link geometries.BVH#readHierarchy(ByteBuffer, Intersectable[], Intersectable[])}.
+     */
+    @Test
+    void testReadHierarchy() throws IOException {
+        Random random = new Random(23);
+        Intersectable[] geometries = randomGeometries(random, 300);
+        for (BVH.Layout layout : BVH.Layout.values()) {
+            BVH bvh = new BVH(geometries).setLayout(layout).build();
+            Intersectable[] primitives = bvh.getPrimitives().toArray(new Intersectable[0]);
+            byte[] bytes = writeHierarchy(bvh);
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The restored hierarchy finds the same closest hits
+            BVH restored = BVH.readHierarchy(ByteBuffer.wrap(bytes), primitives, new Intersectable[0]);
+            assertEquals(bvh.getNodeCount(), restored.getNodeCount(), "Wrong amount of nodes of " + layout);
+            for (int i = 0; i < 200; ++i) {
+                Ray ray = randomRay(random);
+                Intersectable.Hit expected = new Intersectable.Hit();
+                Intersectable.Hit actual = new Intersectable.Hit();
+                assertEquals(bvh.findClosestHit(ray, expected), restored.findClosestHit(ray, actual),
+                        "Wrong hit of " + layout);
+                assertSame(expected.geometry, actual.geometry, "Wrong closest geometry of " + layout);
+            }
+
+            // =============== Boundary Values Tests ==================
+            // the header of 4 bytes is followed by the boxes, the single precision boxes (none) and the links
+            int boxes = ByteBuffer.wrap(bytes).getInt(4);
+            int links = 4 + 4 + Double.BYTES * boxes + 4;
+
+            // TC11: A corrupt length of an array is rejected before allocating it
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(4, Integer.MAX_VALUE);
+            assertThrows(IllegalArgumentException.class,
+                    () -> BVH.readHierarchy(ByteBuffer.wrap(corrupt), primitives, new Intersectable[0]),
+                    "A huge array of " + layout + " should be rejected");
+
+            // TC12: A corrupt link is rejected on loading rather than on traversal
+            byte[] corruptLink = bytes.clone();
+            ByteBuffer.wrap(corruptLink).putInt(links + 4 + Integer.BYTES, -7);
+            assertThrows(IllegalArgumentException.class,
+                    () -> BVH.readHierarchy(ByteBuffer.wrap(corruptLink), primitives, new Intersectable[0]),
+                    "A corrupt link of " + layout + " should be rejected");
+
+            // TC13: A primitive index beyond the geometries is rejected
+            assertThrows(IllegalArgumentException.class,
+                    () -> BVH.readHierarchy(ByteBuffer.wrap(bytes), new Intersectable[1], new Intersectable[0]),
+                    "A missing geometry of " + layout + " should be rejected");
+        }
+    }
+}
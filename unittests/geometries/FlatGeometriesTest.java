@@ -0,0 +1,72 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.FlatGeometries class.
+ * The results of the snapshot are compared against the collection it is flattened from.
+ */
+class FlatGeometriesTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Test method for {@link geometries.FlatGeometries#findClosestHit(primitives.Ray, Intersectable.Hit)}
+     * and {@link geometries.FlatGeometries#findTransmittance(primitives.Ray, double)}.
+     */
+    @Test
+    void testFindClosestHit() {
+        // Spheres and triangles in nested collections, with a plane and a hierarchy among them
+        Random random = new Random(29);
+        Geometries collection = new Geometries(new Plane(new Point(0, 0, -60), new Vector(0, 0, 1)));
+        for (int group = 0; group < 6; ++group) {
+            Intersectable[] geometries = new Intersectable[40];
+            for (int i = 0; i < geometries.length; ++i) {
+                Point p = new Point(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50);
+                geometries[i] = i % 2 == 0
+                        ? new Sphere(1 + random.nextDouble() * 3, p).setMaterial(new Material().setkT(i % 4 == 0 ? 0.5 : 0))
+                        : new Triangle(p, p.add(new Vector(3, 0, 1)), p.add(new Vector(0, 3, 2)));
+            }
+            collection.add(group % 3 == 0 ? new CBR(geometries) : new Geometries(geometries));
+        }
+        FlatGeometries flat = new FlatGeometries(collection);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The nested plain collections are flattened, the hierarchies are kept whole
+        assertEquals(1 + 4 * 40 + 2, flat.size(), "Wrong amount of flattened geometries");
+
+        // TC02: The snapshot finds the same closest geometry, transmittance and intersections as the collection
+        for (int i = 0; i < 2000; ++i) {
+            Ray ray = new Ray(
+                    new Point(random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            Intersectable.Hit expected = new Intersectable.Hit();
+            Intersectable.Hit result = new Intersectable.Hit();
+            assertEquals(collection.findClosestHit(ray, expected), flat.findClosestHit(ray, result), "Wrong hit for " + ray);
+            assertSame(expected.geometry, result.geometry, "Wrong closest geometry for " + ray);
+            assertEquals(expected.t, result.t, DELTA, "Wrong closest distance for " + ray);
+            assertEquals(expected.u, result.u, DELTA, "Wrong barycentric coordinate for " + ray);
+            double distance = random.nextDouble() * 100;
+            assertEquals(collection.findTransmittance(ray, distance), flat.findTransmittance(ray, distance),
+                    "Wrong transmittance for " + ray);
+            var expectedPoints = collection.findIntersections(ray);
+            var resultPoints = flat.findIntersections(ray);
+            assertEquals(expectedPoints == null ? 0 : expectedPoints.size(), resultPoints == null ? 0 : resultPoints.size(),
+                    "Wrong amount of intersections for " + ray);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Geometries added to the collection later are not in the snapshot
+        Sphere added = new Sphere(1, new Point(200, 0, 0));
+        collection.add(added);
+        assertFalse(flat.findClosestHit(new Ray(new Point(190, 0, 0), new Vector(1, 0, 0)), new Intersectable.Hit()),
+                "Expected no hit");
+        // TC12: An empty collection is never hit
+        assertFalse(new FlatGeometries(new Geometries()).findClosestHit(new Ray(Point.ZERO, new Vector(1, 0, 0)),
+                new Intersectable.Hit()), "Expected no hit");
+    }
+}
@@ -1,6 +1,8 @@
 package geometries;
 
 import org.junit.jupiter.api.Test;
+import primitives.Double3;
+import primitives.Material;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
@@ -41,4 +43,53 @@ class GeometriesTest {
         assertNotNull(intersections5, "Expected intersections with all shapes");
         assertEquals(2, intersections5.size(), "Expected 2 intersection points");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindClosestHit() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(1, 0, 0));
+        Sphere near = new Sphere(1, new Point(3, 0, 0));
+        Sphere far = new Sphere(1, new Point(10, 0, 0));
+        Plane plane = new Plane(new Point(6, 0, 0), new Vector(-1, 0, 0));
+        Geometries geometries = new Geometries(far, plane, near);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Several geometries are intersected - the closest one is recorded
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(geometries.findClosestHit(ray, hit), "Expected a closest hit");
+        assertSame(near, hit.geometry, "Wrong closest geometry");
+        assertEquals(2, hit.t, 0.000001, "Wrong distance to the closest hit");
+        assertEquals(new Point(2, 0, 0), hit.toGeoPoint(ray).point, "Wrong closest point");
+
+        // TC02: No geometry is intersected
+        Ray missRay = new Ray(new Point(0, 0, 0), new Vector(-1, 0, 0));
+        assertFalse(geometries.findClosestHit(missRay, hit.reset(Double.POSITIVE_INFINITY)), "Expected no hit");
+        assertNull(hit.toGeoPoint(missRay), "Expected an empty hit record");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: All intersections are farther than the current closest distance
+        assertFalse(geometries.findClosestHit(ray, hit.reset(2)), "Expected no hit closer than the bound");
+        assertEquals(2, hit.t, 0.000001, "The bound must stay unchanged");
+    }
+
+    @Test
+    void testFindTransmittance() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(1, 0, 0));
+        Geometry glass = new Sphere(1, new Point(3, 0, 0)).setMaterial(new Material().setkT(0.5));
+        Geometry wall = new Plane(new Point(6, 0, 0), new Vector(-1, 0, 0));
+        Geometries geometries = new Geometries(glass, wall);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Only a transparent geometry is before the light - both of its surfaces attenuate
+        assertEquals(new Double3(0.25), geometries.findTransmittance(ray, 5), "Wrong transmittance");
+
+        // TC02: An opaque geometry blocks the light
+        assertEquals(Double3.ZERO, geometries.findTransmittance(ray, 10), "Expected a blocked ray");
+
+        // TC03: Nothing is between the point and the light
+        assertEquals(Double3.ONE, geometries.findTransmittance(ray, 1), "Expected an unblocked ray");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The light is inside the transparent geometry - only one surface attenuates
+        assertEquals(new Double3(0.5), geometries.findTransmittance(ray, 3), "Wrong transmittance");
+    }
+}
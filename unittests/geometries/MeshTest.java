@@ -0,0 +1,178 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the geometries.Mesh class.
+ * The results of the mesh are compared against separate triangles of the same faces.
+ */
+class MeshTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * A unit square in the xy plane made of two faces, with normals tilted towards x at x = 1.
+     */
+    private final Mesh square = new Mesh(
+            new double[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0},
+            new int[]{0, 1, 2, 0, 2, 3},
+            new double[]{0, 0, 1, 1, 0, 1, 1, 0, 1, 0, 0, 1});
+
+    /**
+     * Test method for {@link geometries.Mesh#Mesh(double[], int[], double[])}.
+     */
+    @Test
+    void testConstructor() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Correct mesh
+        assertDoesNotThrow(() -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[]{0, 1, 2}),
+                "Failed constructing a correct mesh");
+        // TC02: Coordinates not in triplets
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1}, new int[]{0, 1, 2}),
+                "Constructed a mesh with a partial vertex");
+        // TC03: A face refers to a missing vertex
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[]{0, 1, 3}),
+                "Constructed a mesh with a missing vertex");
+        // TC04: Not a normal per vertex
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[]{0, 1, 2}, new double[]{0, 0, 1}),
+                "Constructed a mesh with missing normals");
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#findClosestHit(primitives.Ray, Intersectable.Hit)}.
+     */
+    @Test
+    void testFindClosestHit() {
+        // A random soup of triangles, as a mesh and as separate triangles
+        Random random = new Random(17);
+        int count = 500;
+        double[] positions = new double[9 * count];
+        int[] faces = new int[3 * count];
+        Intersectable[] triangles = new Intersectable[count];
+        for (int i = 0; i < count; ++i) {
+            Point[] vertices = new Point[3];
+            double x = random.nextDouble() * 100 - 50, y = random.nextDouble() * 100 - 50, z = random.nextDouble() * 100 - 50;
+            for (int j = 0; j < 3; ++j) {
+                vertices[j] = new Point(x + random.nextDouble() * 5, y + random.nextDouble() * 5, z + random.nextDouble() * 5);
+                positions[9 * i + 3 * j] = vertices[j].getX();
+                positions[9 * i + 3 * j + 1] = vertices[j].getY();
+                positions[9 * i + 3 * j + 2] = vertices[j].getZ();
+                faces[3 * i + j] = 3 * i + j;
+            }
+            triangles[i] = new Triangle(vertices);
+        }
+        Mesh mesh = new Mesh(positions, faces);
+        Geometries linear = new Geometries(triangles);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The mesh finds the same closest distance and normal as the separate triangles
+        for (int i = 0; i < 2000; ++i) {
+            Point head = new Point(random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70);
+            Ray ray = new Ray(head, new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            Intersectable.Hit expected = new Intersectable.Hit();
+            Intersectable.Hit result = new Intersectable.Hit();
+            boolean found = linear.findClosestHit(ray, expected);
+            assertEquals(found, mesh.findClosestHit(ray, result), "Wrong hit for " + ray);
+            if (!found) continue;
+            assertSame(mesh, result.geometry, "Wrong intersected geometry");
+            assertEquals(expected.t, result.t, DELTA, "Wrong closest distance for " + ray);
+            Vector expectedNormal = expected.toGeoPoint(ray).getNormal();
+            Vector resultNormal = result.toGeoPoint(ray).getNormal();
+            assertEquals(1, Math.abs(expectedNormal.dotProduct(resultNormal)), DELTA, "Wrong normal for " + ray);
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.Intersectable.GeoPoint#getNormal()} of a mesh.
+     */
+    @Test
+    void testGetNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The normal is interpolated from the vertex normals
+        Ray ray = new Ray(new Point(0.5, 0.25, 1), new Vector(0, 0, -1));
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(square.findClosestHit(ray, hit), "Expected an intersection");
+        Vector expected = new Vector(0.5, 0, 1).normalize();
+        assertEquals(expected, hit.toGeoPoint(ray).getNormal(), "Wrong interpolated normal");
+
+        // TC02: The normal of a point without an intersection is searched among the faces
+        assertEquals(expected, square.getNormal(new Point(0.5, 0.25, 0)), "Wrong normal of a point");
+
+        // TC03: The intersections of the list based search carry the normal as well
+        var geoPoints = square.findGeoIntersections(ray);
+        assertEquals(1, geoPoints.size(), "Wrong number of intersections");
+        assertNotNull(geoPoints.get(0).normal, "The normal should be carried rather than searched");
+        assertEquals(expected, geoPoints.get(0).getNormal(), "Wrong normal of an intersection");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A point above a face is not on the mesh
+        assertThrows(IllegalArgumentException.class, () -> square.getNormal(new Point(0.5, 0.25, 0.1)),
+                "A point off the mesh should be rejected");
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#findTransmittance(primitives.Ray, double)}.
+     */
+    @Test
+    void testFindTransmittance() {
+        Mesh glass = (Mesh) new Mesh(
+                new double[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0, 0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1},
+                new int[]{0, 1, 2, 0, 2, 3, 4, 5, 6, 4, 6, 7})
+                .setMaterial(new Material().setkT(0.5));
+        Ray ray = new Ray(new Point(0.5, 0.25, -1), new Vector(0, 0, 1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The ray passes through both layers
+        assertEquals(new Double3(0.25), glass.findTransmittance(ray, 5), "Wrong transmittance of two layers");
+        // TC02: The light is before the second layer
+        assertEquals(new Double3(0.5), glass.findTransmittance(ray, 1.5), "Wrong transmittance of one layer");
+        // TC03: An opaque mesh blocks the ray
+        assertEquals(Double3.ZERO, square.findTransmittance(ray, 5), "Expected a blocked ray");
+    }
+
+    /**
+     * Test method for {@link geometries.Mesh#Mesh(double[], int[], double[], BVH.Precision)}.
+     */
+    @Test
+    void testFloatPrecision() {
+        // A random soup of triangles whose coordinates are exact in single precision
+        Random random = new Random(23);
+        int count = 500;
+        double[] positions = new double[9 * count];
+        int[] faces = new int[3 * count];
+        for (int i = 0; i < count; ++i) {
+            float x = random.nextFloat() * 100 - 50, y = random.nextFloat() * 100 - 50, z = random.nextFloat() * 100 - 50;
+            for (int j = 0; j < 9; ++j)
+                positions[9 * i + j] = (j % 3 == 0 ? x : j % 3 == 1 ? y : z) + random.nextFloat() * 5;
+            for (int j = 0; j < 3; ++j)
+                faces[3 * i + j] = 3 * i + j;
+        }
+        Mesh mesh = new Mesh(positions, faces);
+        Mesh floatMesh = new Mesh(positions, faces, null, BVH.Precision.FLOAT);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The single precision mesh (with its conservatively rounded hierarchy) finds the same hits
+        assertEquals(BVH.Precision.FLOAT, floatMesh.getPrecision(), "Wrong precision");
+        for (int i = 0; i < 2000; ++i) {
+            Point head = new Point(random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70);
+            Ray ray = new Ray(head, new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+            Intersectable.Hit expected = new Intersectable.Hit();
+            Intersectable.Hit result = new Intersectable.Hit();
+            assertEquals(mesh.findClosestHit(ray, expected), floatMesh.findClosestHit(ray, result), "Wrong hit for " + ray);
+            assertEquals(expected.t, result.t, DELTA, "Wrong closest distance for " + ray);
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A mesh whose single precision rounding is not well below the ray offset
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(new double[]{0, 0, 0, 1e6, 0, 0, 0, 1, 0}, new int[]{0, 1, 2}, null, BVH.Precision.FLOAT),
+                "Constructed a mesh too large for single precision");
+    }
+}
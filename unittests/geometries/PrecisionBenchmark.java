@@ -0,0 +1,174 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of the single precision data against the double precision one - of the vertices of
+ * a mesh and of the boxes of a BVH. It traces the same rays through both precisions and reports
+ * the memory, the tracing time and the difference of the hits.
+ * It is slow, so it is skipped unless run with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PrecisionBenchmark {
+
+    /**
+     * Compares tracing rays through a mesh of a million faces in both precisions.
+     *
+     * @param reporter the reporter of the measurements
+     */
+    @Test
+    void benchmarkMesh(TestReporter reporter) {
+        // A heightfield over a 1000x500 grid of cells - a million faces
+        int columns = 1001, rows = 501;
+        Random random = new Random(29);
+        double[] positions = new double[3 * columns * rows];
+        for (int row = 0; row < rows; ++row)
+            for (int column = 0; column < columns; ++column) {
+                int vertex = 3 * (row * columns + column);
+                positions[vertex] = column * 0.1;
+                positions[vertex + 1] = row * 0.1;
+                positions[vertex + 2] = Math.sin(column * 0.05) * Math.cos(row * 0.07) * 5 + random.nextDouble() * 0.1;
+            }
+        int[] faces = new int[6 * (columns - 1) * (rows - 1)];
+        int f = 0;
+        for (int row = 0; row < rows - 1; ++row)
+            for (int column = 0; column < columns - 1; ++column) {
+                int v = row * columns + column;
+                faces[f++] = v;
+                faces[f++] = v + 1;
+                faces[f++] = v + columns + 1;
+                faces[f++] = v;
+                faces[f++] = v + columns + 1;
+                faces[f++] = v + columns;
+            }
+
+        Ray[] rays = new Ray[500000];
+        for (int i = 0; i < rays.length; ++i)
+            rays[i] = new Ray(new Point(random.nextDouble() * 100, random.nextDouble() * 50, 20),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+
+        double[] distances = new double[rays.length];
+        long start = System.nanoTime();
+        Mesh mesh = new Mesh(positions, faces);
+        long built = System.nanoTime();
+        trace(mesh, rays, distances); // warm up
+        long traced = System.nanoTime();
+        int hits = trace(mesh, rays, distances);
+        long end = System.nanoTime();
+        reporter.publishEntry("double", String.format("build %d ms, trace %d ms, %d hits, vertices %d KB",
+                (built - start) / 1000000, (end - traced) / 1000000, hits, 8L * positions.length / 1024));
+
+        double[] floatDistances = new double[rays.length];
+        start = System.nanoTime();
+        Mesh floatMesh = new Mesh(positions, faces, null, BVH.Precision.FLOAT);
+        built = System.nanoTime();
+        trace(floatMesh, rays, floatDistances); // warm up
+        traced = System.nanoTime();
+        int floatHits = trace(floatMesh, rays, floatDistances);
+        end = System.nanoTime();
+        reporter.publishEntry("float", String.format("build %d ms, trace %d ms, %d hits, vertices %d KB",
+                (built - start) / 1000000, (end - traced) / 1000000, floatHits, 4L * positions.length / 1024));
+
+        double maxError = 0;
+        int mismatches = 0;
+        for (int i = 0; i < rays.length; ++i) {
+            if (Double.isInfinite(distances[i]) != Double.isInfinite(floatDistances[i])) ++mismatches;
+            else if (!Double.isInfinite(distances[i]))
+                maxError = Math.max(maxError, Math.abs(distances[i] - floatDistances[i]));
+        }
+        reporter.publishEntry("float error", String.format("max distance error %g, %d of %d rays hit differently",
+                maxError, mismatches, rays.length));
+        assertTrue(maxError < Ray.DELTA, "The single precision error reaches the ray offset");
+    }
+
+    /**
+     * Compares tracing rays through a BVH of 200,000 spheres and triangles with boxes in both
+     * precisions, in both layouts. The single precision boxes are rounded outwards, so the
+     * closest hits are the same.
+     *
+     * @param reporter the reporter of the measurements
+     */
+    @Test
+    void benchmarkBVH(TestReporter reporter) {
+        Random random = new Random(31);
+        Intersectable[] geometries = new Intersectable[200000];
+        for (int i = 0; i < geometries.length; ++i) {
+            Point p = new Point(random.nextDouble() * 1000, random.nextDouble() * 1000, random.nextDouble() * 1000);
+            geometries[i] = i % 2 == 0 ? new Sphere(0.5 + random.nextDouble(), p)
+                    : new Triangle(p, p.add(new Vector(2, 0, 0.5)), p.add(new Vector(0, 2, 1)));
+        }
+        Ray[] rays = new Ray[500000];
+        for (int i = 0; i < rays.length; ++i)
+            rays[i] = new Ray(new Point(random.nextDouble() * 1000, random.nextDouble() * 1000, 1100),
+                    new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+
+        for (BVH.Layout layout : BVH.Layout.values()) {
+            Intersectable[] closest = null;
+            for (BVH.Precision precision : BVH.Precision.values()) {
+                long start = System.nanoTime();
+                BVH bvh = new BVH(geometries).setSplitMethod(BVH.SplitMethod.SAH)
+                        .setLayout(layout).setPrecision(precision).build();
+                long built = System.nanoTime();
+                Intersectable[] found = new Intersectable[rays.length];
+                trace(bvh, rays, found); // warm up
+                long traced = System.nanoTime();
+                int hits = trace(bvh, rays, found);
+                long end = System.nanoTime();
+                int bytes = precision == BVH.Precision.FLOAT ? 4 : 8;
+                int boxValues = 6 * (layout == BVH.Layout.WIDE ? 4 : 1);
+                reporter.publishEntry(layout + " " + precision, String.format(
+                        "build %d ms, trace %d ms, %d hits, boxes %d KB", (built - start) / 1000000,
+                        (end - traced) / 1000000, hits, (long) bytes * boxValues * bvh.getNodeCount() / 1024));
+                if (closest == null) closest = found;
+                else assertArrayEquals(closest, found, "The closest hits differ by the precision of " + layout);
+            }
+        }
+    }
+
+    /**
+     * Traces rays through a BVH.
+     *
+     * @param bvh   the BVH
+     * @param rays  the rays
+     * @param found the closest geometries to fill, {@code null} for a miss
+     * @return the amount of hits
+     */
+    private int trace(BVH bvh, Ray[] rays, Intersectable[] found) {
+        int hits = 0;
+        for (int i = 0; i < rays.length; ++i) {
+            Intersectable.Hit hit = new Intersectable.Hit();
+            found[i] = bvh.findClosestHit(rays[i], hit) ? hit.geometry : null;
+            if (found[i] != null) ++hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Traces rays through a mesh.
+     *
+     * @param mesh      the mesh
+     * @param rays      the rays
+     * @param distances the distances to the closest hits to fill, infinite for a miss
+     * @return the amount of hits
+     */
+    private int trace(Mesh mesh, Ray[] rays, double[] distances) {
+        int hits = 0;
+        for (int i = 0; i < rays.length; ++i) {
+            Intersectable.Hit hit = new Intersectable.Hit();
+            if (mesh.findClosestHit(rays[i], hit)) {
+                ++hits;
+                distances[i] = hit.t;
+            } else distances[i] = Double.POSITIVE_INFINITY;
+        }
+        return hits;
+    }
+}
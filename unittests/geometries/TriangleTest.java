@@ -85,4 +85,35 @@ class TriangleTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Test method for {@link geometries.Triangle#findClosestHit(primitives.Ray, Intersectable.Hit)}.
+     */
+    @Test
+    void testFindClosestHit() {
+        Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(2, 0, 0), new Point(0, 4, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The distance and the barycentric coordinates of an inside intersection
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(triangle.findClosestHit(new Ray(new Point(0.5, 1, 3), new Vector(0, 0, -1)), hit),
+                "Expected an intersection");
+        assertSame(triangle, hit.geometry, "Wrong intersected geometry");
+        assertEquals(3, hit.t, DELTA, "Wrong distance");
+        assertEquals(0.25, hit.u, DELTA, "Wrong weight of the second vertex");
+        assertEquals(0.25, hit.v, DELTA, "Wrong weight of the third vertex");
+
+        // TC02: An intersection beyond the recorded hit is ignored
+        hit.reset(2);
+        assertFalse(triangle.findClosestHit(new Ray(new Point(0.5, 1, 3), new Vector(0, 0, -1)), hit),
+                "Expected no intersection nearer than the recorded one");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The ray is parallel to the triangle
+        hit.reset(Double.POSITIVE_INFINITY);
+        assertFalse(triangle.findClosestHit(new Ray(new Point(0.5, 1, 3), new Vector(1, 0, 0)), hit),
+                "Expected no intersection for a parallel ray");
+        // TC12: The ray starts behind the triangle
+        assertFalse(triangle.findClosestHit(new Ray(new Point(0.5, 1, -3), new Vector(0, 0, -1)), hit),
+                "Expected no intersection behind the ray's head");
+    }
+}
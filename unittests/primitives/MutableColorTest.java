@@ -0,0 +1,56 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the primitives.MutableColor class.
+ * The accumulated components are compared with the same chains of {@link Color} operations.
+ */
+class MutableColorTest {
+    private final Color color = new Color(10.3, 20.7, 30.1);
+    private final Double3 k = new Double3(0.3, 0.7, 0.11);
+
+    /**
+     * Checks that two colors have exactly the same components.
+     *
+     * @param expected the expected color
+     * @param result   the result color
+     */
+    private void assertSameColor(Color expected, Color result) {
+        assertEquals(expected.getRed(), result.getRed(), 0, "Wrong red component");
+        assertEquals(expected.getGreen(), result.getGreen(), 0, "Wrong green component");
+        assertEquals(expected.getBlue(), result.getBlue(), 0, "Wrong blue component");
+    }
+
+    /**
+     * Test method for {@link primitives.MutableColor#add(Color, Double3)}
+     * and {@link primitives.MutableColor#add(MutableColor, Double3)}.
+     */
+    @Test
+    void testAdd() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Adding scaled colors
+        MutableColor accumulator = new MutableColor().set(color).add(color, k);
+        assertSameColor(color.add(color.scale(k)), accumulator.toColor());
+        // TC02: Adding a scaled accumulator
+        accumulator.add(new MutableColor().set(color), k).add(color);
+        assertSameColor(color.add(color.scale(k)).add(color.scale(k)).add(color), accumulator.toColor());
+    }
+
+    /**
+     * Test method for {@link primitives.MutableColor#addLight(Color, Double3, Double3, double, Double3, double)}.
+     */
+    @Test
+    void testAddLight() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The diffuse and specular reflections of a partially blocked light
+        Double3 ktr = new Double3(0.5, 0.25, 1);
+        Double3 kD = new Double3(0.4, 0.6, 0.8);
+        Double3 kS = new Double3(0.9, 0.1, 0.3);
+        Color iL = color.scale(ktr);
+        Color expected = color.add(iL.scale(kD.scale(0.37)), iL.scale(kS.scale(0.81)));
+        assertSameColor(expected, new MutableColor().set(color).addLight(color, ktr, kD, 0.37, kS, 0.81).toColor());
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class RayTest {
 
@@ -40,5 +41,22 @@ class RayTest {
         List<Point> l4 = List.of(new Point(1, 5, 0), new Point(1, 4, 0), new Point(1, 3, 0), new Point(1, 2, 0), new Point(1, 1, 0));
         assertEquals(new Point(1, 1, 0), ray.findClosestPoint(l4), "Error: findClosestPoint() for the last point is the closest does not work correctly");
     }
-}
 
+    @Test
+    void testInverseDirection() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The reciprocals and signs of a general direction
+        Ray ray = new Ray(new Point(1, 0, 0), new Vector(2, -3, 6));
+        assertEquals(7d / 2, ray.getInverseX(), 0.00001, "Error: wrong reciprocal of x");
+        assertEquals(-7d / 3, ray.getInverseY(), 0.00001, "Error: wrong reciprocal of y");
+        assertEquals(7d / 6, ray.getInverseZ(), 0.00001, "Error: wrong reciprocal of z");
+        assertEquals(0, ray.getSignX(), "Error: wrong sign of x");
+        assertEquals(1, ray.getSignY(), "Error: wrong sign of y");
+        assertEquals(0, ray.getSignZ(), "Error: wrong sign of z");
+        // ================= Boundary Values Tests ==================
+        // TC02: A zero coordinate has an infinite reciprocal
+        ray = new Ray(new Point(1, 0, 0), new Vector(0, 1, 0));
+        assertTrue(Double.isInfinite(ray.getInverseX()), "Error: the reciprocal of zero is not infinite");
+        assertEquals(1, ray.getInverseY(), 0.00001, "Error: wrong reciprocal of y");
+    }
+}
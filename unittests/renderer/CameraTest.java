@@ -1,12 +1,17 @@
 package renderer;
 
+import geometries.Sphere;
 import org.junit.jupiter.api.Test;
+import primitives.Color;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 import scene.Scene;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Testing Camera Class
@@ -66,4 +71,81 @@ class CameraTest {
 
     }
 
+    /**
+     * Test method for {@link renderer.Camera.Builder#setAdaptiveSuperSampling(int, double)}.
+     */
+    @Test
+    void testAdaptiveSuperSampling() {
+        Scene scene = new Scene("Test");
+        AtomicInteger rays = new AtomicInteger();
+        SimpleRayTracer tracer = new SimpleRayTracer(scene) {
+            @Override
+            Color traceRay(Ray ray, Context context) {
+                rays.incrementAndGet();
+                return super.traceRay(ray, context);
+            }
+        };
+        Camera camera = Camera.getBuilder()
+                .setRayTracer(tracer)
+                .setImageWriter(new ImageWriter("Test", 32, 32))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setVpDistance(10).setVpSize(8, 8)
+                .setAdaptiveSuperSampling(3, 4)
+                .build();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A smooth image costs a ray per pixel corner - shared between the neighboring pixels
+        camera.renderImage();
+        assertEquals(33 * 33, rays.get(), "Wrong amount of rays of a smooth image");
+
+        // TC02: The edges of a sphere are refined up to 9x9 rays, but most of the pixels are smooth
+        scene.geometries.add(new Sphere(3, new Point(0, 0, -20)).setEmission(new Color(200, 0, 0)));
+        rays.set(0);
+        camera.renderImage();
+        assertTrue(rays.get() > 33 * 33 + 64, "The edges were not refined: " + rays.get());
+        assertTrue(rays.get() < 32 * 32 * 81 / 4, "The smooth pixels were refined: " + rays.get());
+    }
+
+    /**
+     * Test method for {@link renderer.Camera.Builder#setDepthOfFieldSamples(int, int, double)}.
+     */
+    @Test
+    void testDepthOfFieldSamples() {
+        Scene scene = new Scene("Test");
+        AtomicInteger rays = new AtomicInteger();
+        SimpleRayTracer tracer = new SimpleRayTracer(scene) {
+            @Override
+            Color traceRay(Ray ray, Context context) {
+                rays.incrementAndGet();
+                return super.traceRay(ray, context);
+            }
+        };
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(tracer)
+                .setImageWriter(new ImageWriter("Test", 8, 8))
+                .setLocation(Point.ZERO)
+                .setDirection(new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setVpDistance(10).setVpSize(8, 8)
+                .setUseDepthOfField(true).setFocalLength(100).setApertureSize(2)
+                .setDepthOfFieldSamples(4, 64, 1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A uniform image converges after the minimal amount of rays
+        builder.build().renderImage();
+        assertEquals(8 * 8 * 4, rays.get(), "Wrong amount of rays of a uniform image");
+
+        // TC02: Blurred edges of an out of focus sphere get more rays, up to the maximum
+        scene.geometries.add(new Sphere(3, new Point(0, 0, -20)).setEmission(new Color(200, 0, 0)));
+        rays.set(0);
+        builder.build().renderImage();
+        assertTrue(rays.get() > 8 * 8 * 4 + 60, "The blurred pixels were not refined: " + rays.get());
+        assertTrue(rays.get() < 8 * 8 * 64, "All the pixels reached the maximum: " + rays.get());
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Equal minimum and maximum cast a fixed amount of rays
+        rays.set(0);
+        builder.setDepthOfFieldSamples(10, 10, 1).build().renderImage();
+        assertEquals(8 * 8 * 10, rays.get(), "Wrong amount of fixed rays");
+    }
 }
@@ -6,6 +6,7 @@ import primitives.Color;
 
 import static java.awt.Color.RED;
 import static java.awt.Color.YELLOW;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * ImageWriter class unit tests
@@ -38,4 +39,51 @@ public class ImageWriterTests {
 
         imageWriter.writeToImage();
     }
+
+    /**
+     * Test method for {@link renderer.ImageWriter#writePixel(int, int, Color)} and the tone mapping
+     */
+    @Test
+    public void testToneMapping() {
+        ImageWriter imageWriter = new ImageWriter("toneMappingTest", 2, 2);
+        imageWriter.writePixel(0, 0, new Color(100.9, 0, 1000));
+        imageWriter.writePixel(1, 0, new Color(255, 510, 0));
+        imageWriter.writePixel(0, 1, new Color(50.99999999999999, 0, 0));
+        imageWriter.addPixel(1, 1, new Color(100, 100, 100));
+        imageWriter.addPixel(1, 1, new Color(0.5, 200, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The colors are kept in high dynamic range and clamped by default, truncating the levels
+        assertEquals(1000, imageWriter.getPixel(0, 0).getBlue(), 0.001, "The framebuffer lost the high range");
+        int[] raster = imageWriter.toneMap();
+        assertEquals(100 << 16 | 255, raster[0], "Wrong clamped pixel");
+        assertEquals(255 << 16 | 255 << 8, raster[1], "Wrong clamped pixel");
+
+        // TC02: The colors are accumulated
+        assertEquals(100 << 16 | 255 << 8 | 100, raster[3], "Wrong accumulated pixel");
+
+        // TC03: The exposure scales the colors before tone mapping
+        raster = imageWriter.setExposure(0.5).toneMap();
+        assertEquals(50 << 16 | 255, raster[0], "Wrong exposed pixel");
+        assertEquals(127 << 16 | 255 << 8, raster[1], "Wrong exposed pixel");
+
+        // TC04: Reinhard maps a color to x / (1 + x) of the range, never clamping
+        raster = imageWriter.setExposure(1).setToneMapping(ImageWriter.ToneMapping.REINHARD).toneMap();
+        assertEquals(127 << 16 | 170 << 8, raster[1], "Wrong Reinhard pixel");
+        assertEquals(255.0 * 1000 / 1255, raster[0] & 255, 1, "Wrong Reinhard pixel");
+
+        // TC05: ACES compresses the highest colors by its curve and keeps black
+        raster = imageWriter.setToneMapping(ImageWriter.ToneMapping.ACES).toneMap();
+        double x = 1000 / 255.0;
+        assertEquals(255 * x * (2.51 * x + 0.03) / (x * (2.43 * x + 0.59) + 0.14), raster[0] & 255, 1,
+                "Wrong ACES pixel");
+        assertEquals(0, raster[1] & 255, "Wrong ACES pixel");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A component just below a level is not rounded up by the single precision
+        raster = imageWriter.setToneMapping(ImageWriter.ToneMapping.CLAMP).toneMap();
+        assertEquals(50 << 16, raster[2], "A component was rounded up into the next level");
+        // TC12: A non positive exposure
+        assertThrows(IllegalArgumentException.class, () -> imageWriter.setExposure(0), "Zero exposure");
+    }
 }
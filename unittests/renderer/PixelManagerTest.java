@@ -0,0 +1,100 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the renderer.PixelManager class.
+ */
+class PixelManagerTest {
+
+    /**
+     * Test method for {@link renderer.PixelManager#nextTile()}.
+     */
+    @Test
+    void testNextTile() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The tiles of a non-square image not divisible by the tile size cover each pixel exactly once
+        int rows = 100, cols = 150;
+        PixelManager manager = new PixelManager(rows, cols);
+        int[][] covered = new int[rows][cols];
+        PixelManager.Tile tile;
+        int count = 0;
+        while ((tile = manager.nextTile()) != null) {
+            ++count;
+            assertTrue(tile.toCol() - tile.fromCol() <= PixelManager.TILE_SIZE, "Tile is too wide");
+            assertTrue(tile.toRow() - tile.fromRow() <= PixelManager.TILE_SIZE, "Tile is too high");
+            for (int i = tile.fromRow(); i < tile.toRow(); ++i)
+                for (int j = tile.fromCol(); j < tile.toCol(); ++j)
+                    ++covered[i][j];
+        }
+        assertEquals(manager.tileCount(), count, "Wrong amount of tiles");
+        for (int i = 0; i < rows; ++i)
+            for (int j = 0; j < cols; ++j)
+                assertEquals(1, covered[i][j], "Pixel (" + i + "," + j + ") is not covered once");
+
+        // TC02: The tiles are handed out in Morton order - the first four make a 2x2 square
+        manager = new PixelManager(rows, cols);
+        int size = PixelManager.TILE_SIZE;
+        assertEquals(new PixelManager.Tile(0, 0, size, size), manager.nextTile(), "Wrong first tile");
+        assertEquals(new PixelManager.Tile(size, 0, 2 * size, size), manager.nextTile(), "Wrong second tile");
+        assertEquals(new PixelManager.Tile(0, size, size, 2 * size), manager.nextTile(), "Wrong third tile");
+        assertEquals(new PixelManager.Tile(size, size, 2 * size, 2 * size), manager.nextTile(), "Wrong fourth tile");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An image smaller than a tile is a single clipped tile
+        manager = new PixelManager(1, 1);
+        assertEquals(new PixelManager.Tile(0, 0, 1, 1), manager.nextTile(), "Wrong single tile");
+        assertNull(manager.nextTile(), "Expected no more tiles");
+    }
+
+    /**
+     * Test method for {@link renderer.PixelManager#tileDone(PixelManager.Tile)}.
+     */
+    @Test
+    void testTileDone() throws InterruptedException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The progress is reported once per interval, increasing up to the whole image
+        List<Double> reported = new ArrayList<>();
+        PixelManager manager = new PixelManager(64, 64, 25, reported::add);
+        PixelManager.Tile tile;
+        while ((tile = manager.nextTile()) != null) manager.tileDone(tile);
+        assertEquals(List.of(0d, 25d, 50d, 75d, 100d), reported, "Wrong reported progress");
+
+        // TC02: The completion is reported even if it is less than an interval after the last report
+        reported.clear();
+        manager = new PixelManager(64, 64, 30, reported::add);
+        while ((tile = manager.nextTile()) != null) manager.tileDone(tile);
+        assertEquals(List.of(0d, 50d, 100d), reported, "Wrong reported progress");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Without an interval the progress is reported on each tile
+        reported.clear();
+        manager = new PixelManager(64, 64, 0, reported::add);
+        while ((tile = manager.nextTile()) != null) manager.tileDone(tile);
+        assertEquals(List.of(0d, 25d, 50d, 75d, 100d), reported, "Wrong reported progress");
+
+        // TC12: Threads racing on the progress report each percentage once, and the completion once
+        for (int run = 0; run < 20; ++run) {
+            List<Double> concurrent = Collections.synchronizedList(new ArrayList<>());
+            PixelManager shared = new PixelManager(512, 512, 0, concurrent::add);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; ++i) {
+                threads[i] = new Thread(() -> {
+                    PixelManager.Tile next;
+                    while ((next = shared.nextTile()) != null) shared.tileDone(next);
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) thread.join();
+            assertEquals(1, Collections.frequency(concurrent, 100d), "The completion is not reported once");
+            assertEquals(concurrent.size(), new HashSet<>(concurrent).size(), "A progress is reported twice");
+        }
+    }
+}
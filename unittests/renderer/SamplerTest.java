@@ -0,0 +1,71 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the renderer.Sampler class.
+ */
+class SamplerTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Test method for {@link renderer.Sampler#next2D(double[])}.
+     */
+    @Test
+    void testNext2D() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Samplers of the same seed and tile generate the same samples in the unit square
+        for (Sampler.Sequence sequence : Sampler.Sequence.values()) {
+            Sampler sampler1 = Sampler.forTile(sequence, 42, 32, 64).startPixel();
+            Sampler sampler2 = Sampler.forTile(sequence, 42, 32, 64).startPixel();
+            double[] sample1 = new double[2], sample2 = new double[2];
+            for (int i = 0; i < 100; ++i) {
+                sampler1.next2D(sample1);
+                sampler2.next2D(sample2);
+                assertArrayEquals(sample1, sample2, "Different samples of " + sequence);
+                for (double coordinate : sample1)
+                    assertTrue(coordinate >= 0 && coordinate < 1, "Sample out of the unit square " + coordinate);
+            }
+        }
+
+        // TC02: Samplers of different tiles generate different samples
+        double[] sample1 = new double[2], sample2 = new double[2];
+        Sampler.forTile(Sampler.Sequence.RANDOM, 42, 0, 0).startPixel().next2D(sample1);
+        Sampler.forTile(Sampler.Sequence.RANDOM, 42, 32, 0).startPixel().next2D(sample2);
+        assertFalse(Arrays.equals(sample1, sample2), "Same samples of different tiles");
+
+        // TC03: The first 4 samples of a pixel from the low-discrepancy sequences are stratified
+        // in both coordinates - one sample in each quarter (up to the pixel's rotation)
+        for (Sampler.Sequence sequence : new Sampler.Sequence[]{Sampler.Sequence.HALTON, Sampler.Sequence.SOBOL}) {
+            Sampler sampler = new Sampler(sequence, 7).startPixel();
+            double[] xs = new double[4], ys = new double[4];
+            double[] sample = new double[2];
+            for (int i = 0; i < 4; ++i) {
+                sampler.next2D(sample);
+                xs[i] = sample[0];
+                ys[i] = sample[1];
+            }
+            assertStratified(xs, 4, sequence + " x");
+            if (sequence == Sampler.Sequence.SOBOL) assertStratified(ys, 4, sequence + " y");
+            else assertStratified(Arrays.copyOf(ys, 3), 3, sequence + " y");
+        }
+    }
+
+    /**
+     * Checks that values are evenly spaced around the unit circle.
+     *
+     * @param values the values in [0,1)
+     * @param count  the amount of strata
+     * @param name   the name of the values for the messages
+     */
+    private void assertStratified(double[] values, int count, String name) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < count; ++i)
+            assertEquals(1d / count, sorted[i] - sorted[i - 1], DELTA, "Not stratified " + name);
+    }
+}
@@ -0,0 +1,175 @@
+package renderer;
+
+import geometries.Intersectable;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the renderer.SimpleRayTracer class.
+ * A ray passes through a glass sphere (two surfaces, each transmitting half the light) to a grey background.
+ */
+class SimpleRayTracerTest {
+    private final double DELTA = 0.000001;
+
+    /** A scene of a glass sphere in front of a grey background */
+    private final Scene scene = new Scene("Test").setBackground(new Color(100, 100, 100));
+
+    /** A ray through the center of the sphere */
+    private final Ray ray = new Ray(new Point(0, 0, 10), new Vector(0, 0, -1));
+
+    /**
+     * Creates a scene of a glass sphere in front of a grey background.
+     */
+    SimpleRayTracerTest() {
+        scene.geometries.add(new Sphere(1, Point.ZERO).setMaterial(new Material().setkT(0.5)));
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setMaxLevel(int)}.
+     */
+    @Test
+    void testSetMaxLevel() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The background is seen through both surfaces of the sphere
+        assertEquals(25, new SimpleRayTracer(scene).traceRay(ray).getRed(), DELTA, "Wrong transmitted color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Only the first surface is shaded
+        assertEquals(0, new SimpleRayTracer(scene).setMaxLevel(1).traceRay(ray).getRed(), DELTA,
+                "Expected no refraction");
+        // TC12: The refracted ray reaches the second surface but not the background
+        assertEquals(0, new SimpleRayTracer(scene).setMaxLevel(2).traceRay(ray).getRed(), DELTA,
+                "Expected no refraction beyond the second surface");
+        // TC13: The refracted ray reaches the background
+        assertEquals(25, new SimpleRayTracer(scene).setMaxLevel(3).traceRay(ray).getRed(), DELTA,
+                "Wrong transmitted color");
+        // TC14: Illegal level
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setMaxLevel(0),
+                "Expected an illegal level");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setMinK(double)}.
+     */
+    @Test
+    void testSetMinK() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The ray weighted a quarter beyond the sphere is cut off
+        assertEquals(0, new SimpleRayTracer(scene).setMinK(0.3).traceRay(ray).getRed(), DELTA,
+                "Expected the weak ray to be cut off");
+        // TC02: The ray weighted a quarter beyond the sphere is traced
+        assertEquals(25, new SimpleRayTracer(scene).setMinK(0.2).traceRay(ray).getRed(), DELTA,
+                "Wrong transmitted color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The weight at the cutoff of the shadow transmittance
+        assertEquals(25, new SimpleRayTracer(scene).setMinK(Intersectable.MIN_TRANSMITTANCE).traceRay(ray).getRed(),
+                DELTA, "Wrong transmitted color");
+        // TC12: A weight below the cutoff of the shadow transmittance
+        assertThrows(IllegalArgumentException.class,
+                () -> new SimpleRayTracer(scene).setMinK(Intersectable.MIN_TRANSMITTANCE / 2),
+                "Expected a weight below the transmittance cutoff");
+        // TC13: Negative weight
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setMinK(-1),
+                "Expected a negative weight");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setRussianRoulette(double)}.
+     */
+    @Test
+    void testSetRussianRoulette() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Each ray is either terminated or fully weighted, but the average color is kept
+        SimpleRayTracer tracer = new SimpleRayTracer(scene).setRussianRoulette(1);
+        int count = 20000;
+        double sum = 0;
+        for (int i = 0; i < count; ++i) {
+            double red = tracer.traceRay(ray).getRed();
+            assertTrue(isZeroOr(red, 100), "Expected a terminated or fully weighted ray, got " + red);
+            sum += red;
+        }
+        assertEquals(25, sum / count, 1.5, "Wrong average transmitted color");
+
+        // TC02: A rendered image is the same in every render of the same seed, regardless of the threads
+        Camera.Builder builder = Camera.getBuilder()
+                .setRayTracer(tracer)
+                .setLocation(new Point(0, 0, 10))
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpDistance(10).setVpSize(3, 3)
+                .setSeed(7);
+        ImageWriter first = new ImageWriter("Test", 16, 16);
+        builder.setImageWriter(first).setMultithreading(0).build().renderImage();
+        ImageWriter second = new ImageWriter("Test", 16, 16);
+        builder.setImageWriter(second).setMultithreading(2).build().renderImage();
+        boolean terminated = false;
+        for (int i = 0; i < 16; ++i)
+            for (int j = 0; j < 16; ++j) {
+                double red = first.getPixel(j, i).getRed();
+                assertEquals(red, second.getPixel(j, i).getRed(), DELTA, "Different pixel " + j + "," + i);
+                terminated |= isZeroOr(red, 0);
+            }
+        assertTrue(terminated, "Expected rays terminated by the roulette");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Illegal threshold
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setRussianRoulette(2),
+                "Expected an illegal threshold");
+    }
+
+    /**
+     * Checks whether a value is zero or another value.
+     *
+     * @param value    the value
+     * @param expected the other value
+     * @return true if the value is zero or the other value
+     */
+    private boolean isZeroOr(double value, double expected) {
+        return Math.abs(value) < DELTA || Math.abs(value - expected) < DELTA;
+    }
+
+    /**
+     * Test method for {@link geometries.Intersectable.GeoPoint} of the closest hits shaded by the tracer.
+     */
+    @Test
+    void testShadingData() {
+        // A reflecting glass sphere counting its conversions of hits into GeoPoints and its normal calculations
+        int[] counts = new int[2];
+        Material material = new Material().setkD(0.3).setkT(0.5).setkR(0.4);
+        Sphere sphere = (Sphere) new Sphere(1, Point.ZERO) {
+            @Override
+            public Vector getNormal(Point point) {
+                ++counts[1];
+                return super.getNormal(point);
+            }
+
+            @Override
+            protected Intersectable.GeoPoint toGeoPoint(Point point, Intersectable.Hit hit) {
+                ++counts[0];
+                return super.toGeoPoint(point, hit);
+            }
+        }.setMaterial(material);
+        Scene lit = new Scene("Test").setBackground(new Color(100, 100, 100));
+        lit.geometries.add(sphere);
+        lit.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 5, 10)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The GeoPoint of a hit carries the normal and the material of the geometry
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(sphere.findClosestHit(ray, hit), "Expected a hit");
+        Intersectable.GeoPoint gp = hit.toGeoPoint(ray);
+        assertEquals(new Vector(0, 0, 1), gp.normal, "Wrong normal");
+        assertSame(material, gp.material, "Wrong material");
+
+        // TC02: Every shaded surface calculates its normal only once
+        counts[0] = counts[1] = 0;
+        new SimpleRayTracer(lit).traceRay(ray);
+        assertTrue(counts[0] > 2, "Expected reflections and refractions inside the sphere");
+        assertEquals(counts[0], counts[1], "The normal was calculated more than once per surface");
+    }
+}
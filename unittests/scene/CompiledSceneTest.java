@@ -0,0 +1,69 @@
+package scene;
+
+import geometries.BVH;
+import geometries.FlatGeometries;
+import geometries.Geometries;
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scene.CompiledScene class.
+ */
+class CompiledSceneTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Test method for {@link scene.Scene#compile()}.
+     */
+    @Test
+    void testCompile() {
+        Color background = new Color(10, 20, 30);
+        Scene scene = new Scene("compiled")
+                .setAmbientLight(new AmbientLight(new Color(30, 30, 30), 0.5))
+                .setBackground(background);
+        scene.geometries.add(new Sphere(1, Point.ZERO));
+        PointLight light = new PointLight(new Color(100, 100, 100), new Point(0, 0, 10));
+        scene.lights.add(light);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A plain collection is flattened, and the lights and colors are kept
+        CompiledScene compiled = scene.compile();
+        assertEquals("compiled", compiled.getName(), "Wrong name");
+        assertInstanceOf(FlatGeometries.class, compiled.getGeometries(), "The geometries are not flattened");
+        assertEquals(15, compiled.getAmbientIntensity().getRed(), DELTA, "Wrong ambient intensity");
+        assertSame(background, compiled.getBackground(), "Wrong background");
+        assertEquals(1, compiled.getLightCount(), "Wrong amount of lights");
+        assertSame(light, compiled.getLight(0), "Wrong light");
+
+        // TC02: A hierarchy is built into a private copy, and the scene's hierarchy is left as it is
+        BVH bvh = new BVH(new Sphere(1, Point.ZERO));
+        scene.setGeometries(bvh);
+        CompiledScene hierarchy = scene.compile();
+        BVH copy = assertInstanceOf(BVH.class, hierarchy.getGeometries(), "The hierarchy is not kept");
+        assertNotSame(bvh, copy, "The scene's hierarchy is rendered");
+        assertTrue(copy.isBuilt(), "The hierarchy is not built");
+        assertFalse(bvh.isBuilt(), "The scene's hierarchy is built");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Later changes of the scene are not reflected in a compiled snapshot
+        scene.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 10, 0)));
+        scene.setBackground(Color.BLACK).setGeometries(new Geometries());
+        assertEquals(1, compiled.getLightCount(), "The snapshot sees a new light");
+        assertSame(background, compiled.getBackground(), "The snapshot sees a new background");
+        assertInstanceOf(FlatGeometries.class, compiled.getGeometries(), "The snapshot sees new geometries");
+
+        // TC12: Geometries added to the scene's built hierarchy are not seen by a compiled snapshot
+        bvh.build();
+        hierarchy = scene.setGeometries(bvh).compile();
+        bvh.add(new Sphere(1, new Point(5, 0, 0)));
+        copy = (BVH) hierarchy.getGeometries();
+        assertTrue(copy.isBuilt(), "The snapshot's hierarchy is discarded");
+        assertEquals(1, copy.getPrimitives().size(), "The snapshot sees a new geometry");
+    }
+}
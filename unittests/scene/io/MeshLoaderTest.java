@@ -0,0 +1,179 @@
+package scene.io;
+
+import geometries.Intersectable;
+import geometries.Mesh;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scene.io.MeshLoader class.
+ */
+class MeshLoaderTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Writes bytes into a temporary file which is deleted when the tests end.
+     *
+     * @param suffix the file name suffix
+     * @param bytes  the content
+     * @return the path of the file
+     * @throws IOException if the file can't be written
+     */
+    private Path write(String suffix, byte[] bytes) throws IOException {
+        Path path = Files.createTempFile("mesh", suffix);
+        path.toFile().deleteOnExit();
+        return Files.write(path, bytes);
+    }
+
+    /**
+     * Checks that a ray from above the unit square at (0.25, 0.5) hits the mesh at the height of z.
+     *
+     * @param mesh   the mesh
+     * @param z      the expected height of the intersection
+     * @param normal the expected normal at the intersection
+     */
+    private void assertHit(Mesh mesh, double z, Vector normal) {
+        Ray ray = new Ray(new Point(0.25, 0.5, 10), new Vector(0, 0, -1));
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(mesh.findClosestHit(ray, hit), "Expected an intersection with the loaded mesh");
+        assertEquals(10 - z, hit.t, DELTA, "Wrong distance to the loaded mesh");
+        assertEquals(normal, hit.toGeoPoint(ray).getNormal(), "Wrong normal of the loaded mesh");
+    }
+
+    /**
+     * Test method for {@link scene.io.MeshLoader#loadObj(java.nio.file.Path)}.
+     */
+    @Test
+    void testLoadObj() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A quad given with comments, texture coordinates, scientific notation and relative indices
+        String obj = """
+                # a unit square
+                o square
+                v 0 0 1.5
+                v 1.0 0 1.5e0
+                v  1 1 15E-1
+                v\t0 1 +1.50
+                vt 0 0
+                vn 0 0 1
+                f -4//1 2//1 3/1/1 4//1 # a quad
+                """;
+        Mesh mesh = MeshLoader.load(write(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(4, mesh.getVertexCount(), "Wrong amount of vertices");
+        assertEquals(2, mesh.getFaceCount(), "Wrong amount of faces - the quad should be split");
+        assertHit(mesh, 1.5, new Vector(0, 0, 1));
+
+        // TC02: Faces without normals with Windows line ends
+        obj = "v 0 0 0\r\nv 1 0 0\r\nv 0 1 0\r\nf 1 2 3\r\n";
+        mesh = MeshLoader.loadObj(write(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(1, mesh.getFaceCount(), "Wrong amount of faces");
+        assertHit(mesh, 0, new Vector(0, 0, 1));
+
+        // TC03: A hard edge - the vertices shared by faces of different normals are split
+        String square = "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n";
+        obj = square + "vn 0 0 1\nvn 1 0 1\nf 1//1 3//1 4//1\nf 1//2 2//2 3//2\n";
+        mesh = MeshLoader.loadObj(write(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(6, mesh.getVertexCount(), "Wrong amount of vertices - the shared ones should be split");
+        assertHit(mesh, 0, new Vector(0, 0, 1));
+
+        // TC04: A face without normals in a file with normals takes the normal of its plane
+        obj = square + "vn 1 0 1\nf 1 3 4\nf 1//1 2//1 3//1\n";
+        mesh = MeshLoader.loadObj(write(".obj", obj.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(6, mesh.getVertexCount(), "Wrong amount of vertices - the shared ones should be split");
+        assertHit(mesh, 0, new Vector(0, 0, 1));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A face referring to a missing vertex
+        byte[] missing = "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 4\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadObj(write(".obj", missing)), "Loaded a missing vertex");
+        // TC12: A face of 2 vertices
+        byte[] line = "v 0 0 0\nv 1 0 0\nf 1 2\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadObj(write(".obj", line)), "Loaded a degenerate face");
+        // TC13: Normals cancelling out at the point take the normal of the plane
+        obj = square + "vn 0 0 1\nvn 0 0 -1\nf 1//1 3//2 4//2\n";
+        assertHit(MeshLoader.loadObj(write(".obj", obj.getBytes(StandardCharsets.US_ASCII))), 0, new Vector(0, 0, 1));
+    }
+
+    /**
+     * Creates a binary PLY file of the unit square at the height of 2, as a single quad.
+     * The vertices carry an extra property and there is an extra element to skip.
+     *
+     * @param order the byte order of the file
+     * @return the content of the file
+     */
+    private byte[] ply(ByteOrder order) {
+        String header = "ply\n"
+                + "format " + (order == ByteOrder.LITTLE_ENDIAN ? "binary_little_endian" : "binary_big_endian") + " 1.0\n"
+                + "comment a unit square\n"
+                + "element vertex 4\n"
+                + "property float x\nproperty float y\nproperty double z\nproperty uchar red\n"
+                + "element face 1\n"
+                + "property list uchar int vertex_indices\n"
+                + "element edge 1\n"
+                + "property list uchar ushort vertices\n"
+                + "end_header\n";
+        byte[] head = header.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(head.length + 4 * 17 + 17 + 5).order(order);
+        buffer.put(head);
+        float[][] vertices = {{0, 0}, {1, 0}, {1, 1}, {0, 1}};
+        for (float[] vertex : vertices)
+            buffer.putFloat(vertex[0]).putFloat(vertex[1]).putDouble(2).put((byte) 200);
+        buffer.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3);
+        buffer.put((byte) 2).putShort((short) 0).putShort((short) 1);
+        return buffer.array();
+    }
+
+    /**
+     * Test method for {@link scene.io.MeshLoader#loadPly(java.nio.file.Path)}.
+     */
+    @Test
+    void testLoadPly() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A little endian file
+        Mesh mesh = MeshLoader.load(write(".ply", ply(ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(4, mesh.getVertexCount(), "Wrong amount of vertices");
+        assertEquals(2, mesh.getFaceCount(), "Wrong amount of faces - the quad should be split");
+        assertHit(mesh, 2, new Vector(0, 0, 1));
+
+        // TC02: A big endian file
+        mesh = MeshLoader.loadPly(write(".ply", ply(ByteOrder.BIG_ENDIAN)));
+        assertHit(mesh, 2, new Vector(0, 0, 1));
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A truncated file
+        byte[] full = ply(ByteOrder.LITTLE_ENDIAN);
+        byte[] truncated = Arrays.copyOf(full, full.length - 10);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", truncated)), "Loaded a truncated file");
+        // TC12: An ASCII file
+        byte[] ascii = "ply\nformat ascii 1.0\nelement vertex 0\nend_header\n".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", ascii)), "Loaded an ASCII file");
+        // TC13: A header line missing a word
+        byte[] missing = "ply\nformat binary_little_endian 1.0\nelement vertex\nend_header\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", missing)), "Loaded a missing count");
+        // TC14: A count which is not a number
+        byte[] word = "ply\nformat binary_little_endian 1.0\nelement vertex four\nend_header\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", word)), "Loaded a word count");
+        // TC15: A negative count
+        byte[] negative = "ply\nformat binary_little_endian 1.0\nelement vertex -4\nend_header\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", negative)), "Loaded a negative count");
+        // TC16: A count larger than the file
+        byte[] huge = ("ply\nformat binary_little_endian 1.0\nelement vertex 2000000000\n"
+                + "property float x\nproperty float y\nproperty float z\nend_header\n").getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IOException.class, () -> MeshLoader.loadPly(write(".ply", huge)), "Loaded a huge count");
+    }
+}
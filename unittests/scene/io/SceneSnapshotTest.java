@@ -0,0 +1,177 @@
+package scene.io;
+
+import geometries.BVH;
+import geometries.Cylinder;
+import geometries.Geometry;
+import geometries.Mesh;
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.ImageWriter;
+import renderer.SimpleRayTracer;
+import scene.Scene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scene.io.SceneSnapshot class.
+ */
+class SceneSnapshotTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Creates a temporary file which is deleted when the tests end.
+     *
+     * @return the path of the file
+     * @throws IOException if the file can't be created
+     */
+    private Path createFile() throws IOException {
+        Path path = Files.createTempFile("scene", ".snapshot");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    /**
+     * Creates a scene of all the kinds of geometries and lights, in a built hierarchy.
+     *
+     * @return the scene
+     */
+    private Scene createScene() {
+        Material shared = new Material().setkD(0.5).setkS(0.3).setShininess(40).setkR(0.2);
+        Mesh mesh = new Mesh(new double[]{-3, -3, -2, 3, -3, -2, 0, 3, -2}, new int[]{0, 1, 2});
+        mesh.setMaterial(new Material().setkD(0.7).setkT(0.1));
+        Geometry[] geometries = {
+                new Sphere(1, new Point(0, 0, -1)).setMaterial(shared).setEmission(new Color(40, 0, 0)),
+                new Sphere(0.5, new Point(1.5, 1, -1.5)).setMaterial(shared),
+                new Triangle(new Point(-2, 1, -1), new Point(-1, 1, -1), new Point(-1.5, 2, -1))
+                        .setEmission(new Color(0, 30, 0)),
+                new Polygon(new Point(1, -2, -1), new Point(2, -2, -1), new Point(2, -1, -1), new Point(1, -1, -1)),
+                new Cylinder(0.3, new Ray(new Point(-2, -2, -2), new Vector(0, 0, 1)), 1),
+                mesh,
+                new Plane(new Point(0, 0, -3), new Vector(0, 0, 1)).setEmission(new Color(5, 5, 20))};
+        Scene scene = new Scene("snapshot")
+                .setBackground(new Color(10, 20, 30))
+                .setAmbientLight(new AmbientLight(new Color(40, 40, 40), 0.5))
+                .setGeometries(new BVH(geometries).setLayout(BVH.Layout.WIDE).build());
+        scene.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(1, -1, -1)));
+        scene.lights.add(new PointLight(new Color(200, 150, 100), new Point(0, 3, 3)).setKl(0.01).setKq(0.001));
+        scene.lights.add(new SpotLight(new Color(300, 300, 300), new Point(3, 0, 3), new Vector(-1, 0, -1))
+                .setKc(2));
+        return scene;
+    }
+
+    /**
+     * Test method for {@link scene.io.SceneSnapshot#write(Path, Scene, Camera)} and
+     * {@link scene.io.SceneSnapshot#read(Path)}.
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        Scene scene = createScene();
+        Camera camera = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 5))
+                .setDirection(new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setVpSize(6, 4).setVpDistance(5)
+                .setImageWriter(new ImageWriter("snapshot", 12, 8))
+                .setRayTracer(new SimpleRayTracer(scene))
+                .build();
+        Path path = createFile();
+        SceneSnapshot.write(path, scene, camera);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The loaded scene is traced exactly as the original one, without rebuilding the hierarchy
+        SceneSnapshot snapshot = SceneSnapshot.read(path);
+        Scene loaded = snapshot.getScene();
+        assertEquals("snapshot", loaded.sceneName, "Wrong name");
+        assertEquals(3, loaded.lights.size(), "Wrong amount of lights");
+        BVH bvh = assertInstanceOf(BVH.class, loaded.geometries, "The hierarchy is not restored");
+        BVH original = (BVH) scene.geometries;
+        assertTrue(bvh.isBuilt(), "The hierarchy is not restored built");
+        assertEquals(BVH.Layout.WIDE, bvh.getLayout(), "Wrong layout");
+        assertEquals(original.getNodeCount(), bvh.getNodeCount(), "Wrong amount of nodes");
+        assertEquals(original.getUnboundedCount(), bvh.getUnboundedCount(), "Wrong amount of unbounded geometries");
+        assertSame(((Geometry) bvh.getPrimitives().get(0)).getMaterial(),
+                ((Geometry) bvh.getPrimitives().get(1)).getMaterial(), "The shared material is not shared");
+
+        Camera loadedCamera = snapshot.getCamera()
+                .setImageWriter(new ImageWriter("snapshot", 12, 8))
+                .setRayTracer(new SimpleRayTracer(loaded))
+                .build();
+        SimpleRayTracer originalTracer = new SimpleRayTracer(scene);
+        SimpleRayTracer loadedTracer = new SimpleRayTracer(loaded);
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 12; ++j) {
+                Ray ray = camera.constructRay(12, 8, j, i);
+                assertEquals(ray, loadedCamera.constructRay(12, 8, j, i), "Wrong ray of the loaded camera");
+                Color expected = originalTracer.traceRay(ray);
+                Color actual = loadedTracer.traceRay(ray);
+                assertEquals(expected.getRed(), actual.getRed(), DELTA, "Wrong red at " + j + "," + i);
+                assertEquals(expected.getGreen(), actual.getGreen(), DELTA, "Wrong green at " + j + "," + i);
+                assertEquals(expected.getBlue(), actual.getBlue(), DELTA, "Wrong blue at " + j + "," + i);
+            }
+
+        // TC02: A hierarchy which is not built is restored with its geometries and without a camera
+        scene.setGeometries(new BVH(new Sphere(1, Point.ZERO)).setSplitMethod(BVH.SplitMethod.SAH));
+        SceneSnapshot.write(path, scene, null);
+        snapshot = SceneSnapshot.read(path);
+        assertNull(snapshot.getCamera(), "There should be no camera");
+        bvh = assertInstanceOf(BVH.class, snapshot.getScene().geometries, "The hierarchy is not restored");
+        assertFalse(bvh.isBuilt(), "The hierarchy should not be built");
+        assertEquals(BVH.SplitMethod.SAH, bvh.getSplitMethod(), "Wrong split method");
+        assertEquals(1, bvh.getGeometries().size(), "Wrong amount of geometries");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A truncated snapshot is rejected
+        SceneSnapshot.write(path, createScene(), camera);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> SceneSnapshot.read(path), "A truncated snapshot should be rejected");
+
+        // TC12: A corrupt length is rejected rather than allocated
+        bytes[8] = 0x7f;
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> SceneSnapshot.read(path), "A huge length should be rejected");
+
+        // TC13: A file of another format is rejected
+        Files.write(path, new byte[]{'v', ' ', '0', ' ', '0', ' ', '0', '\n'});
+        assertThrows(IOException.class, () -> SceneSnapshot.read(path), "Another format should be rejected");
+
+        // TC14: Collections nested without a bound are rejected rather than overflowing the stack
+        SceneSnapshot.write(path, new Scene("Nested"), null);
+        bytes = Files.readAllBytes(path);
+        // the root is an empty collection - a tag and an amount - which is nested in boxes of a geometry each
+        int nesting = 100000;
+        ByteBuffer nested = ByteBuffer.allocate(bytes.length + 5 * nesting);
+        nested.put(bytes, 0, bytes.length - 5);
+        for (int i = 0; i < nesting; ++i)
+            nested.put((byte) 1).putInt(1);
+        nested.put(bytes, bytes.length - 5, 5);
+        Files.write(path, nested.array());
+        assertThrows(IOException.class, () -> SceneSnapshot.read(path), "Unbounded nesting should be rejected");
+
+        // TC15: A scene of an unsupported geometry is rejected without leaving a partial snapshot
+        Scene unsupported = new Scene("Unsupported");
+        unsupported.geometries.add(new Sphere(1, Point.ZERO) {
+        });
+        assertThrows(IllegalArgumentException.class, () -> SceneSnapshot.write(path, unsupported, null),
+                "An unsupported geometry should be rejected");
+        assertFalse(Files.exists(path), "A partial snapshot is left");
+    }
+}
@@ -0,0 +1,151 @@
+package scene.io;
+
+import geometries.BVH;
+import geometries.CBR;
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Mesh;
+import geometries.Sphere;
+import lighting.DirectionalLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+import renderer.Camera;
+import renderer.ImageWriter;
+import renderer.SimpleRayTracer;
+import scene.Scene;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scene.io.XmlScene class.
+ */
+class XmlSceneTest {
+    private final double DELTA = 0.000001;
+
+    /**
+     * Reads a scene description from a text.
+     *
+     * @param xml the text
+     * @return the loaded scene description
+     * @throws IOException if the text is malformed
+     */
+    private XmlScene read(String xml) throws IOException {
+        return XmlScene.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    /**
+     * Test method for {@link scene.io.XmlScene#read(java.nio.file.Path)}.
+     */
+    @Test
+    void testRead() throws IOException {
+        Path directory = Files.createTempDirectory("scene");
+        directory.toFile().deleteOnExit();
+        Path obj = Files.writeString(directory.resolve("quad.obj"), "v 0 0 -5\nv 1 0 -5\nv 1 1 -5\nv 0 1 -5\nf 1 2 3 4\n");
+        obj.toFile().deleteOnExit();
+        Path file = Files.writeString(directory.resolve("scene.xml"), """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!-- every kind of element -->
+                <scene name="xml" background="75 127 90">
+                    <ambient-light color="255 191 191" k="0.2"/>
+                    <camera location="0 0 10" to="0 0 -1" up="0 1 0" vp-size="4 3" vp-distance="10"/>
+                    <materials>
+                        <material id="shiny" kd="0.5" ks="0.2 0.3 0.4" shininess="60"/>
+                    </materials>
+                    <lights>
+                        <directional-light intensity="100 100 100" direction="1, -1, -1"/>
+                        <spot-light intensity="400 240 0" position="-100 50 0" direction="1 -1 -2" kl="0.001" kq="1e-4"/>
+                    </lights>
+                    <bvh split="sah" layout="wide">
+                        <sphere center="0 0 -100" radius="50" material="shiny" emission="30 10 10"/>
+                        <cbr>
+                            <triangle p0="-100 0 -100" p1="0 100 -100" p2="-100 100 -100"/>
+                            <polygon vertices="1 -2 -1  2 -2 -1  2 -1 -1  1 -1 -1"/>
+                        </cbr>
+                        <mesh file="quad.obj" precision="float"/>
+                        <plane point="0 0 -200" normal="0 0 1" material="shiny"/>
+                        <cylinder radius="1" head="5 5 -5" direction="0 0 1" height="2"/>
+                    </bvh>
+                </scene>
+                """);
+        file.toFile().deleteOnExit();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: All the elements are loaded into the scene, the hierarchy built and the camera ready
+        XmlScene xml = XmlScene.read(file);
+        Scene scene = xml.getScene();
+        assertEquals("xml", scene.sceneName, "Wrong name");
+        assertEquals(127, scene.background.getGreen(), DELTA, "Wrong background");
+        assertEquals(51, scene.ambientLight.getIntensity().getRed(), DELTA, "Wrong ambient light");
+        assertEquals(2, scene.lights.size(), "Wrong amount of lights");
+        assertInstanceOf(DirectionalLight.class, scene.lights.get(0), "Wrong type of the first light");
+        SpotLight spot = assertInstanceOf(SpotLight.class, scene.lights.get(1), "Wrong type of the second light");
+        assertEquals(0.001, spot.getKl(), DELTA, "Wrong linear attenuation");
+        assertEquals(1e-4, spot.getKq(), DELTA, "Wrong quadratic attenuation");
+
+        BVH bvh = assertInstanceOf(BVH.class, scene.geometries, "The geometries should be a hierarchy");
+        assertTrue(bvh.isBuilt(), "The hierarchy should be built");
+        assertEquals(BVH.SplitMethod.SAH, bvh.getSplitMethod(), "Wrong split method");
+        assertEquals(BVH.Layout.WIDE, bvh.getLayout(), "Wrong layout");
+        assertEquals(5, bvh.getGeometries().size(), "Wrong amount of geometries");
+        assertInstanceOf(CBR.class, bvh.getGeometries().get(1), "The nested collection is not kept");
+        Mesh mesh = assertInstanceOf(Mesh.class, bvh.getGeometries().get(2), "The mesh is not loaded");
+        assertEquals(BVH.Precision.FLOAT, mesh.getPrecision(), "Wrong precision of the mesh");
+
+        Geometry sphere = (Geometry) bvh.getGeometries().get(0);
+        assertEquals(30, sphere.getEmission().getRed(), DELTA, "Wrong emission");
+        assertEquals(60, sphere.getMaterial().shininess, "Wrong shininess");
+        assertEquals(0.3, sphere.getMaterial().kS.getD2(), DELTA, "Wrong specular coefficient");
+        assertSame(sphere.getMaterial(), ((Geometry) bvh.getGeometries().get(3)).getMaterial(),
+                "The material is not shared");
+
+        Camera camera = xml.getCamera()
+                .setImageWriter(new ImageWriter("xml", 4, 3))
+                .setRayTracer(new SimpleRayTracer(scene))
+                .build();
+        assertEquals(new Point(0, 0, 10), camera.getLocation(), "Wrong location of the camera");
+        assertEquals(10, camera.getDistance(), DELTA, "Wrong distance of the camera");
+        Intersectable.Hit hit = new Intersectable.Hit();
+        assertTrue(scene.geometries.findClosestHit(new Ray(new Point(0, 0, 10), new Vector(0, -0.1, -1)), hit),
+                "The loaded geometries are not intersected");
+        assertInstanceOf(Sphere.class, hit.geometry, "Wrong closest geometry");
+
+        // TC02: A scene without a camera and geometries
+        xml = read("<scene/>");
+        assertNull(xml.getCamera(), "There should be no camera");
+        assertEquals(0, xml.getScene().geometries.getGeometries().size(), "There should be no geometries");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: An unknown element
+        assertThrows(IOException.class, () -> read("<scene><cube/></scene>"), "An unknown element");
+        // TC12: A missing attribute
+        assertThrows(IOException.class, () -> read("<scene><geometries><sphere radius='1'/></geometries></scene>"),
+                "A missing attribute");
+        // TC13: A point of two coordinates
+        assertThrows(IOException.class,
+                () -> read("<scene><geometries><sphere center='1 2' radius='1'/></geometries></scene>"),
+                "A point of two coordinates");
+        // TC14: A material used before it is defined
+        assertThrows(IOException.class,
+                () -> read("<scene><geometries><sphere center='1 2 3' radius='1' material='m'/></geometries></scene>"),
+                "An undefined material");
+        // TC15: A malformed document
+        assertThrows(IOException.class, () -> read("<scene><geometries></scene>"), "A malformed document");
+        // TC16: A second collection of geometries
+        IOException e = assertThrows(IOException.class,
+                () -> read("<scene><geometries/><bvh/></scene>"), "A second collection of geometries");
+        assertTrue(e.getMessage().contains("more than one geometry collection"), "Wrong error " + e.getMessage());
+        // TC17: An unknown light without an intensity
+        e = assertThrows(IOException.class, () -> read("<scene><lights><area-light/></lights></scene>"),
+                "An unknown light");
+        assertTrue(e.getMessage().contains("Unknown element <area-light>"), "Wrong error " + e.getMessage());
+    }
+}